@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Sends requests without waiting for their responses: each returns a future completed with the response, whose first
+// element is the request status, or failed with an InvalidSocketException. Any number of threads may send at once,
+// their requests are spread over a few shared connections. Requests on one connection are answered in order, requests
+// on different ones are not, so a read that has to see a write is sent once the write's future has completed.
+// Futures are completed on a connection's reader thread, work that may block belongs on another thread.
+public class AsyncClient {
+
+    private String hostAddress;
+    private int portNo;
+    private volatile boolean useBinaryProtocol; // Asked for on every new connection
+    private ClientConnection[] connections;
+    private int nextConnection;
+    private volatile NearCache nearCache; // Null unless enabled
+    private InvalidationListener invalidationListener;
+
+    private final int DEFAULT_CONNECTION_NO = 2;
+    private final int REQUEST_STATUS_INDEX = 0;
+
+    // Error Messages
+    private final String ERROR_STREAM = "Unable to maintain input/output streams from/to client socket.";
+
+    public AsyncClient(String hostAddress, int portNo) {
+        this(hostAddress, portNo, 0);
+    }
+
+    public AsyncClient(String hostAddress, int portNo, int connectionNo) {
+        this.hostAddress = hostAddress;
+        this.portNo = portNo;
+        this.connections = new ClientConnection[connectionNo > 0 ? connectionNo : DEFAULT_CONNECTION_NO];
+    }
+
+    // Queries answered by the near cache, when enabled, complete right away. Writes drop their words from it once
+    // answered, the server's invalidation reaches it later.
+    public CompletableFuture<ArrayList<String>> request(int actionCode, String inputText) {
+        NearCache cache = nearCache;
+        if (cache == null) {
+            return send(actionCode, inputText, null);
+        }
+        if (actionCode == ClientMessageHandler.QUERY_CODE || actionCode == ClientMessageHandler.SUGGEST_CODE) {
+            return cachedQuery(cache, actionCode, inputText);
+        }
+        List<String> changedWords = changedWords(actionCode, inputText);
+        if (changedWords.isEmpty()) {
+            return send(actionCode, inputText, null);
+        }
+        return send(actionCode, inputText, null).whenComplete((response, error) -> invalidate(cache, changedWords));
+    }
+
+    private CompletableFuture<ArrayList<String>> cachedQuery(NearCache cache, int actionCode, String word) {
+        ArrayList<String> cachedResponse = cache.get(word);
+        if (cachedResponse != null) {
+            return CompletableFuture.completedFuture(cachedResponse);
+        }
+        long cacheVersion = cache.version();
+        return send(actionCode, word, null).thenApply(response -> {
+            // A failed suggest request lists other words, only found words are cached
+            if (response.get(REQUEST_STATUS_INDEX).equals(ClientMessageHandler.REQUEST_SUCCESS)) {
+                cache.put(word, cacheVersion, response);
+            }
+            return response;
+        });
+    }
+
+    // The words a write request may change
+    private List<String> changedWords(int actionCode, String inputText) {
+        String[] fields = inputText.split(ClientMessageHandler.STRING_SEPARATOR);
+        switch (actionCode) {
+            case ClientMessageHandler.ADD_CODE:
+            case ClientMessageHandler.UPDATE_CODE:
+            case ClientMessageHandler.REMOVE_CODE:
+                // Request format -> actionCode:word:(definition)
+                return Collections.singletonList(fields[0]);
+
+            case ClientMessageHandler.BULK_REMOVE_CODE:
+                return Arrays.asList(fields);
+
+            case ClientMessageHandler.BULK_ADD_CODE:
+            case ClientMessageHandler.BULK_UPDATE_CODE:
+                // Request format -> actionCode:word:definitions:word:definitions...
+                ArrayList<String> words = new ArrayList<>();
+                for (int i = 0; i < fields.length; i += 2) {
+                    words.add(fields[i]);
+                }
+                return words;
+
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    // Bulk requests are applied completely or not at all, on failure the status is followed by the offending words
+    public CompletableFuture<ArrayList<String>> requestBulk(int actionCode, Map<String, List<String>> entries) {
+        // Request format -> actionCode:word:definitions:word:definitions...
+        ArrayList<String> fields = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            fields.add(entry.getKey());
+            fields.add(String.join(ClientMessageHandler.DEFINITION_SEPARATOR, entry.getValue()));
+        }
+        // Binary frames carry the entries as they are, definitions may contain the separators
+        byte[] frame = useBinaryProtocol ? ClientBinaryProtocol.encodeBulkRequest(actionCode, entries) : null;
+        CompletableFuture<ArrayList<String>> future =
+                send(actionCode, String.join(ClientMessageHandler.STRING_SEPARATOR, fields), frame);
+        NearCache cache = nearCache;
+        if (cache == null) {
+            return future;
+        }
+        return future.whenComplete((response, error) -> invalidate(cache, entries.keySet()));
+    }
+
+    private void invalidate(NearCache cache, Collection<String> words) {
+        for (String word : words) {
+            cache.invalidate(word);
+        }
+    }
+
+    // Pipelines the requests over one connection and flushes them together, the futures are in the order of the
+    // input texts. Queries in the near cache complete right away and are left out.
+    public List<CompletableFuture<ArrayList<String>>> requestBatch(int actionCode, List<String> inputTexts) {
+        NearCache cache = nearCache;
+        boolean isCachedQuery = cache != null && actionCode == ClientMessageHandler.QUERY_CODE;
+        long cacheVersion = isCachedQuery ? cache.version() : 0;
+        int index = nextConnection();
+        ArrayList<CompletableFuture<ArrayList<String>>> futures = new ArrayList<>(inputTexts.size());
+        ArrayList<ClientConnection.PendingRequest> requests = new ArrayList<>();
+        for (String inputText : inputTexts) {
+            ArrayList<String> cachedResponse = isCachedQuery ? cache.get(inputText) : null;
+            if (cachedResponse != null) {
+                futures.add(CompletableFuture.completedFuture(cachedResponse));
+                continue;
+            }
+            ClientConnection.PendingRequest request = new ClientConnection.PendingRequest(actionCode, inputText, null);
+            requests.add(request);
+            CompletableFuture<ArrayList<String>> future = request.getFuture();
+            if (isCachedQuery) {
+                future = future.thenApply(response -> {
+                    if (response.get(REQUEST_STATUS_INDEX).equals(ClientMessageHandler.REQUEST_SUCCESS)) {
+                        cache.put(inputText, cacheVersion, response);
+                    }
+                    return response;
+                });
+            } else if (cache != null) {
+                List<String> changedWords = changedWords(actionCode, inputText);
+                future = future.whenComplete((response, error) -> invalidate(cache, changedWords));
+            }
+            futures.add(future);
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            send(requests.get(i), index, i == requests.size() - 1);
+        }
+        return futures;
+    }
+
+    private CompletableFuture<ArrayList<String>> send(int actionCode, String inputText, byte[] frame) {
+        ClientConnection.PendingRequest request = new ClientConnection.PendingRequest(actionCode, inputText, frame);
+        send(request, nextConnection(), true);
+        return request.getFuture();
+    }
+
+    // A closed connection is replaced before the request is sent
+    private void send(ClientConnection.PendingRequest request, int index, boolean flush) {
+        while (!connection(index).send(request, flush)) {
+            // Closed since it was looked up
+        }
+    }
+
+    private synchronized int nextConnection() {
+        int index = nextConnection;
+        nextConnection = (nextConnection + 1) % connections.length;
+        return index;
+    }
+
+    private synchronized ClientConnection connection(int index) {
+        ClientConnection connection = connections[index];
+        if (connection == null || connection.isClosed()) {
+            connection = new ClientConnection(hostAddress, portNo, useBinaryProtocol,
+                    request -> resend(request, index));
+            connections[index] = connection;
+        }
+        return connection;
+    }
+
+    // The server may have closed a reused connection after its idle timeout, its requests are sent once more on a
+    // fresh one. A write that was already written may have been applied before the connection was lost, sent again it
+    // could be applied twice or answered with Failure, so it fails instead.
+    private void resend(ClientConnection.PendingRequest request, int index) {
+        if (request.isRetry() || (request.isWritten() && !request.isRead())) {
+            System.out.println(ERROR_STREAM);
+            request.getFuture().completeExceptionally(new InvalidSocketException(ERROR_STREAM));
+            return;
+        }
+        request.setRetry();
+        send(request, index, true);
+    }
+
+    // Keeps up to maxEntries query responses on the client, coherent through a subscription to the server's
+    // invalidations, or for at most ttlMs while the subscription is down. 0 entries turns the cache off.
+    public synchronized void setNearCache(int maxEntries, long ttlMs) {
+        if (invalidationListener != null) {
+            invalidationListener.shutdown();
+            invalidationListener = null;
+        }
+        nearCache = maxEntries > 0 ? new NearCache(maxEntries, ttlMs) : null;
+        startInvalidationListener();
+    }
+
+    private void startInvalidationListener() {
+        if (nearCache == null) {
+            return;
+        }
+        if (invalidationListener != null) {
+            invalidationListener.shutdown();
+        }
+        nearCache.setSubscribed(false);
+        invalidationListener = new InvalidationListener(hostAddress, portNo, nearCache);
+        invalidationListener.start();
+    }
+
+    public NearCache getNearCache() {return nearCache;}
+
+    public synchronized String getHostAddress() {return hostAddress;}
+
+    public synchronized int getPortNo() {return portNo;}
+
+    // Changing the server closes the current connections and fails their pending requests, the next requests connect
+    // to the new one
+    public synchronized void setHostAddress(String hostAddress) {
+        this.hostAddress = hostAddress;
+        closeConnections();
+        startInvalidationListener();
+    }
+
+    public synchronized void setPortNo(int portNo) {
+        this.portNo = portNo;
+        closeConnections();
+        startInvalidationListener();
+    }
+
+    public synchronized void setBinaryProtocol(boolean useBinaryProtocol) {
+        this.useBinaryProtocol = useBinaryProtocol;
+        closeConnections();
+    }
+
+    public synchronized void close() {
+        if (invalidationListener != null) {
+            invalidationListener.shutdown();
+            invalidationListener = null;
+        }
+        closeConnections();
+    }
+
+    private void closeConnections() {
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                connections[i].close();
+                connections[i] = null;
+            }
+        }
+    }
+}
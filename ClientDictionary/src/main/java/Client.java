@@ -3,8 +3,11 @@ public class Client {
 
     private int portNo;
     private String hostAddress;
-    private ClientMessageHandler clientMessageHandler;
+    private AsyncClient asyncClient;
     private boolean hasValidPort;
+    private boolean useBinaryProtocol;
+    private int nearCacheEntries; // No near cache unless set
+    private long nearCacheTtlMs = 5000;
 
     // Validity Constraints
     private final int PORT_NO_INDEX = 1;
@@ -12,10 +15,16 @@ public class Client {
     private final int PORT_NO_LOWER_LIMIT = 1024;
     private final int PORT_NO_UPPER_LIMIT = 65335;
     private final int REQUIRED_ARGS = 2;
+    private final int OPTIONS_INDEX = 2;
+    private final String BINARY_PROTOCOL_OPTION = "--binary";
+    private final String NEAR_CACHE_OPTION = "--near-cache"; // Query responses kept on the client
+    private final String NEAR_CACHE_TTL_OPTION = "--near-cache-ttl"; // Milliseconds, while invalidations are down
+    private final String OPTION_VALUE_SEPARATOR = "=";
 
     // Error Messages
     private final String REQUIRED_ARGS_ERROR = "Warning: Insufficient arguments entered. \n" +
-            "Usage: java -jar ClientDictionary.jar <server-address> <server-port>";
+            "Usage: java -jar ClientDictionary.jar <server-address> <server-port> [--binary]\n" +
+            "       [--near-cache=<entries>] [--near-cache-ttl=<ms>]";
     private final String INVALID_PORT_NO = "Warning: Invalid port number entered. Please input a port number between " +
             "1024 and 65335.";
 
@@ -34,14 +43,14 @@ public class Client {
         scanCommandArguments(args);
         if (hasValidPort) {
             System.out.println(APP_RUNNING);
-            startMessageHandler();
+            startAsyncClient();
             initializeGUI();
         }
     }
 
     private void scanCommandArguments(String[] args) {
         System.out.println(ARG_VERIFY);
-        if (args.length == REQUIRED_ARGS) {
+        if (args.length >= REQUIRED_ARGS && scanOptions(args)) {
             validatePort(Integer.parseInt(args[PORT_NO_INDEX]));
             hostAddress = args[ADDRESS_INDEX];
         } else {
@@ -50,12 +59,35 @@ public class Client {
         }
     }
 
-    private void startMessageHandler() {
-        this.clientMessageHandler = new ClientMessageHandler(hostAddress, portNo);
+    // Returns false if an option is unknown or its value is not a number
+    private boolean scanOptions(String[] args) {
+        for (int i = OPTIONS_INDEX; i < args.length; i++) {
+            String[] option = args[i].split(OPTION_VALUE_SEPARATOR, 2);
+            try {
+                if (args[i].equals(BINARY_PROTOCOL_OPTION)) {
+                    useBinaryProtocol = true;
+                } else if (option[0].equals(NEAR_CACHE_OPTION) && option.length > 1) {
+                    nearCacheEntries = Integer.parseInt(option[1]);
+                } else if (option[0].equals(NEAR_CACHE_TTL_OPTION) && option.length > 1) {
+                    nearCacheTtlMs = Long.parseLong(option[1]);
+                } else {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void startAsyncClient() {
+        this.asyncClient = new AsyncClient(hostAddress, portNo);
+        asyncClient.setBinaryProtocol(useBinaryProtocol);
+        asyncClient.setNearCache(nearCacheEntries, nearCacheTtlMs);
     }
 
     private void initializeGUI() {
-        ClientGUI clientGUI = new ClientGUI(this, clientMessageHandler);
+        ClientGUI clientGUI = new ClientGUI(this, asyncClient);
         clientGUI.initialize();
     }
 
@@ -71,6 +103,9 @@ public class Client {
     }
 
     public void exitProgram() {
+        if (asyncClient != null) {
+            asyncClient.close();
+        }
         System.out.println(APP_TERMINATING);
         System.exit(0);
     }
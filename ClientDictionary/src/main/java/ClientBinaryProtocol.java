@@ -0,0 +1,168 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Encodes requests and decodes responses of the server's length-prefixed binary protocol.
+// Responses are decoded into the same list a text response splits into, with the status first.
+public class ClientBinaryProtocol {
+
+    public final static byte[] HANDSHAKE = {(byte) 0xB1, '\n'};
+    public final static byte HANDSHAKE_ACK = (byte) 0xB1;
+
+    // Response Status, indexed by the status byte
+    private final static String[] REQUEST_STATUSES = {"Success", "Failure", "Error"};
+    private final static String REQUEST_ERROR = "Error";
+
+    private final static char STRING_SEPARATOR = ':';
+    private final static char DEFINITION_SEPARATOR = '*';
+
+    // Builds a frame from the text protocol's input (word:definition*definition, or word:word... for a
+    // multi-query and bulk remove). Only the first separator ends the word, so definitions may contain ':'.
+    public static byte[] encodeRequest(int actionCode, String inputText) {
+        switch (actionCode) {
+            case ClientMessageHandler.MULTI_QUERY_CODE:
+            case ClientMessageHandler.BULK_REMOVE_CODE:
+                return encodeFrame(actionCode, "", split(inputText, STRING_SEPARATOR));
+
+            case ClientMessageHandler.BULK_ADD_CODE:
+            case ClientMessageHandler.BULK_UPDATE_CODE:
+                // word:definitions:word:definitions...
+                List<String> fields = split(inputText, STRING_SEPARATOR);
+                ArrayList<Map.Entry<String, List<String>>> entries = new ArrayList<>();
+                for (int i = 0; i + 1 < fields.size(); i += 2) {
+                    entries.add(Map.entry(fields.get(i), split(fields.get(i + 1), DEFINITION_SEPARATOR)));
+                }
+                return encodeBulkFrame(actionCode, entries);
+
+            case ClientMessageHandler.SEARCH_CODE:
+                // terms:offset:limit, the page is carried as the definitions
+                List<String> searchFields = split(inputText, STRING_SEPARATOR);
+                return encodeFrame(actionCode, searchFields.get(0), searchFields.subList(1, searchFields.size()));
+
+            case ClientMessageHandler.SCAN_CODE:
+                // limit:afterWord, the word to continue after is carried whole as the only definition
+                int limitEnd = inputText.indexOf(STRING_SEPARATOR);
+                if (limitEnd == -1) {
+                    return encodeFrame(actionCode, inputText, new ArrayList<>());
+                }
+                return encodeFrame(actionCode, inputText.substring(0, limitEnd),
+                        List.of(inputText.substring(limitEnd + 1)));
+
+            default:
+                int separator = inputText.indexOf(STRING_SEPARATOR);
+                if (separator == -1) {
+                    return encodeFrame(actionCode, inputText, new ArrayList<>());
+                }
+                return encodeFrame(actionCode, inputText.substring(0, separator),
+                        split(inputText.substring(separator + 1), DEFINITION_SEPARATOR));
+        }
+    }
+
+    public static byte[] encodeBulkRequest(int actionCode, Map<String, List<String>> entries) {
+        return encodeBulkFrame(actionCode, new ArrayList<>(entries.entrySet()));
+    }
+
+    // Reads one response frame, a multi-query is flattened into Success:wordCount followed by
+    // status:definitionCount:definitions for every word, as in the text protocol
+    public static ArrayList<String> readResponse(DataInputStream in, int actionCode) throws IOException {
+        in.readInt(); // Frame length, the fields are read as they come
+        ArrayList<String> response = new ArrayList<>();
+        response.add(toStatus(in.readUnsignedByte()));
+        int valueCount = in.readInt();
+        if (actionCode != ClientMessageHandler.MULTI_QUERY_CODE) {
+            readStrings(in, valueCount, response);
+            return response;
+        }
+        response.add(Integer.toString(valueCount));
+        for (int i = 0; i < valueCount; i++) {
+            response.add(toStatus(in.readUnsignedByte()));
+            int definitionCount = in.readInt();
+            response.add(Integer.toString(definitionCount));
+            readStrings(in, definitionCount, response);
+        }
+        return response;
+    }
+
+    private static byte[] encodeFrame(int actionCode, String word, List<String> definitions) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(body);
+        try {
+            frame.writeByte(actionCode);
+            writeWord(frame, word);
+            writeStrings(frame, definitions);
+            return prependLength(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Writing to memory does not fail
+        }
+    }
+
+    private static byte[] encodeBulkFrame(int actionCode, List<Map.Entry<String, List<String>>> entries) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(body);
+        try {
+            frame.writeByte(actionCode);
+            writeWord(frame, "");
+            frame.writeInt(entries.size());
+            for (Map.Entry<String, List<String>> entry : entries) {
+                writeWord(frame, entry.getKey());
+                writeStrings(frame, entry.getValue());
+            }
+            return prependLength(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Writing to memory does not fail
+        }
+    }
+
+    private static void writeWord(DataOutputStream frame, String word) throws IOException {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        frame.writeShort(bytes.length);
+        frame.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream frame, List<String> strings) throws IOException {
+        frame.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            frame.writeInt(bytes.length);
+            frame.write(bytes);
+        }
+    }
+
+    private static byte[] prependLength(ByteArrayOutputStream body) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(body.size() + Integer.BYTES);
+        new DataOutputStream(frame).writeInt(body.size());
+        body.writeTo(frame);
+        return frame.toByteArray();
+    }
+
+    private static void readStrings(DataInputStream in, int count, ArrayList<String> strings) throws IOException {
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String toStatus(int statusByte) {
+        return statusByte < REQUEST_STATUSES.length ? REQUEST_STATUSES[statusByte] : REQUEST_ERROR;
+    }
+
+    // Splits on a literal character, keeping empty fields
+    private static List<String> split(String text, char separator) {
+        ArrayList<String> fields = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = text.indexOf(separator, start)) != -1) {
+            fields.add(text.substring(start, end));
+            start = end + 1;
+        }
+        fields.add(text.substring(start));
+        return fields;
+    }
+}
@@ -0,0 +1,289 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// One connection to the server shared by any number of threads. Requests are written as they are sent without
+// waiting for earlier responses, the server answers them in order, so a reader thread of its own completes the oldest
+// pending request with every response it reads. The connection is opened on that thread too, requests sent meanwhile
+// are written once it is up, so sending never waits for the network.
+public class ClientConnection extends Thread {
+
+    private String hostAddress;
+    private int portNo;
+    private boolean useBinaryProtocol;
+    private Consumer<PendingRequest> lostRequests; // Given the requests a reused connection lost, in order
+    private Socket socket;
+    private InputStream input;
+    private BufferedReader in;
+    private Writer out;
+    private DataInputStream binaryIn;
+    private OutputStream binaryOut;
+    private boolean isBinary;    // Agreed with the server once connected
+    private boolean isConnected;
+    private boolean isClosed;    // No more requests are accepted
+    private boolean isShutdown;  // Closed by the client rather than lost
+    private long answeredNo;
+    private ArrayDeque<PendingRequest> pendingRequests = new ArrayDeque<>(); // Written or waiting for the connection
+
+    // Error Messages
+    private final String CONNECT_FAIL = "Failed to connect to server.";
+    private final String ERROR_CLOSE_SOCKET = "Unable to close the server socket.";
+    private final String ERROR_STREAM = "Unable to maintain input/output streams from/to client socket.";
+
+    // A request and the future its response completes. The frame, when given, replaces the encoding of the input
+    // text on a binary connection.
+    public static class PendingRequest {
+        private final int actionCode;
+        private final String inputText;
+        private final byte[] frame;
+        private final CompletableFuture<ArrayList<String>> future = new CompletableFuture<>();
+        private boolean isRetry;
+        private boolean isWritten; // Its bytes may have reached the server
+
+        public PendingRequest(int actionCode, String inputText, byte[] frame) {
+            this.actionCode = actionCode;
+            this.inputText = inputText;
+            this.frame = frame;
+        }
+
+        public CompletableFuture<ArrayList<String>> getFuture() {return future;}
+
+        public boolean isRetry() {return isRetry;}
+
+        public void setRetry() {isRetry = true;}
+
+        public boolean isWritten() {return isWritten;}
+
+        // Sending it twice gives the same response as sending it once
+        public boolean isRead() {
+            switch (actionCode) {
+                case ClientMessageHandler.QUERY_CODE:
+                case ClientMessageHandler.MULTI_QUERY_CODE:
+                case ClientMessageHandler.PREFIX_CODE:
+                case ClientMessageHandler.SUGGEST_CODE:
+                case ClientMessageHandler.SEARCH_CODE:
+                case ClientMessageHandler.SCAN_CODE:
+                    return true;
+
+                default:
+                    return false;
+            }
+        }
+    }
+
+    public ClientConnection(String hostAddress, int portNo, boolean useBinaryProtocol,
+                            Consumer<PendingRequest> lostRequests) {
+        super("client-connection");
+        setDaemon(true);
+        this.hostAddress = hostAddress;
+        this.portNo = portNo;
+        this.useBinaryProtocol = useBinaryProtocol;
+        this.lostRequests = lostRequests;
+        start();
+    }
+
+    public void run() {
+        try {
+            connect();
+        } catch (IOException e) {
+            shutdown(CONNECT_FAIL);
+            return;
+        }
+        try {
+            if (isBinary) {
+                readBinaryResponses();
+            } else {
+                readTextResponses();
+            }
+        } catch (IOException e) {
+            // Closed by either side, the pending requests are handed back or failed below
+        }
+        loseConnection();
+    }
+
+    private void connect() throws IOException {
+        Socket openSocket = new Socket(hostAddress, portNo);
+        synchronized (this) {
+            socket = openSocket;
+            if (isClosed) {
+                throw new EOFException(); // Closed while connecting
+            }
+        }
+        input = new BufferedInputStream(socket.getInputStream());
+        OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+        boolean isBinaryConnection = useBinaryProtocol && negotiateBinary(input, output);
+        synchronized (this) {
+            isBinary = isBinaryConnection;
+            if (isBinary) {
+                binaryIn = new DataInputStream(input);
+                binaryOut = output;
+            } else {
+                in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+                out = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            }
+            isConnected = true;
+            for (PendingRequest request : pendingRequests) {
+                write(request);
+            }
+            flush();
+        }
+    }
+
+    // Servers without the binary protocol answer the handshake with an error line, the connection then stays text
+    private boolean negotiateBinary(InputStream input, OutputStream output) throws IOException {
+        output.write(ClientBinaryProtocol.HANDSHAKE);
+        output.flush();
+        int reply = input.read();
+        if (reply == (ClientBinaryProtocol.HANDSHAKE_ACK & 0xFF)) {
+            return true;
+        }
+        while (reply != -1 && reply != '\n') {
+            reply = input.read();
+        }
+        if (reply == -1) {
+            throw new EOFException(); // Connection closed by the server
+        }
+        return false;
+    }
+
+    // Returns false if the connection is closed, the request was not sent then. Requests written without a flush
+    // wait for a later one, which lets a batch leave in as few packets as possible.
+    public synchronized boolean send(PendingRequest request, boolean flush) {
+        if (isClosed) {
+            return false;
+        }
+        pendingRequests.add(request);
+        if (isConnected) {
+            try {
+                write(request);
+                if (flush) {
+                    flush();
+                }
+            } catch (IOException e) {
+                closeSocket(); // The reader sees the broken connection and hands the request back
+            }
+        }
+        return true;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (!isConnected) {
+            return;
+        }
+        if (isBinary) {
+            binaryOut.flush();
+        } else {
+            out.flush();
+        }
+    }
+
+    private void write(PendingRequest request) throws IOException {
+        request.isWritten = true; // Before the bytes go out, a failed write may still have sent part of them
+        if (isBinary) {
+            binaryOut.write(request.frame != null ? request.frame
+                    : ClientBinaryProtocol.encodeRequest(request.actionCode, request.inputText));
+        } else {
+            // Request format -> actionCode:word:(definition)
+            out.write(String.format("%d:%s\n", request.actionCode, request.inputText));
+        }
+    }
+
+    private void readTextResponses() throws IOException {
+        String response;
+        while ((response = in.readLine()) != null) {
+            // Response format -> requestStatus:definition(if applicable)
+            complete(new ArrayList<>(Arrays.asList(response.split(ClientMessageHandler.STRING_SEPARATOR))));
+        }
+    }
+
+    private void readBinaryResponses() throws IOException {
+        while (true) {
+            // Waits for a response to begin before looking up which request it answers
+            input.mark(1);
+            if (input.read() == -1) {
+                return; // Connection closed by the server
+            }
+            input.reset();
+            complete(ClientBinaryProtocol.readResponse(binaryIn, nextRequest().actionCode));
+        }
+    }
+
+    private void complete(ArrayList<String> response) throws IOException {
+        PendingRequest request = nextRequest();
+        synchronized (this) {
+            pendingRequests.poll();
+            answeredNo++;
+        }
+        request.future.complete(response);
+    }
+
+    private synchronized PendingRequest nextRequest() throws IOException {
+        PendingRequest request = pendingRequests.peek();
+        if (request == null) {
+            throw new EOFException(); // A response nothing was asked for
+        }
+        return request;
+    }
+
+    // Requests lost by a connection that has answered before, most likely closed by the server while idle, are
+    // handed back, to be sent again if that is safe. Those lost by a fresh connection would most likely be lost again.
+    private void loseConnection() {
+        ArrayDeque<PendingRequest> lost;
+        synchronized (this) {
+            if (isShutdown || answeredNo == 0) {
+                lost = null;
+            } else {
+                isClosed = true;
+                lost = pendingRequests;
+                pendingRequests = new ArrayDeque<>();
+            }
+        }
+        if (lost == null) {
+            shutdown(ERROR_STREAM);
+            return;
+        }
+        closeSocket();
+        for (PendingRequest request : lost) {
+            lostRequests.accept(request);
+        }
+    }
+
+    public synchronized boolean isClosed() {return isClosed;}
+
+    // Fails every pending request, the reader thread ends once the socket is closed
+    public void close() {
+        shutdown(ERROR_STREAM);
+    }
+
+    private void shutdown(String errorMessage) {
+        ArrayDeque<PendingRequest> failed;
+        synchronized (this) {
+            isClosed = true;
+            isShutdown = true;
+            failed = pendingRequests;
+            pendingRequests = new ArrayDeque<>();
+        }
+        closeSocket();
+        if (!failed.isEmpty()) {
+            System.out.println(errorMessage);
+        }
+        for (PendingRequest request : failed) {
+            request.future.completeExceptionally(new InvalidSocketException(errorMessage));
+        }
+    }
+
+    private synchronized void closeSocket() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.out.println(ERROR_CLOSE_SOCKET);
+            }
+        }
+    }
+}
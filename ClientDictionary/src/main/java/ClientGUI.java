@@ -2,6 +2,9 @@ import javax.swing.*;
 import java.awt.Dimension;
 import java.awt.Insets;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class ClientGUI extends JFrame{
 
@@ -19,7 +22,7 @@ public class ClientGUI extends JFrame{
     private JButton clearButton;
 
     private Client client;
-    private ClientMessageHandler clientMessageHandler;
+    private AsyncClient asyncClient;
     private String definitions;
 
     // GUI Properties
@@ -33,12 +36,15 @@ public class ClientGUI extends JFrame{
     private final String SETTING_ADDRESS_LABEL = "Host Address:";
     private final String SETTING_PORT_LABEL = "Port:";
     private final String EMPTY_FIELD = "";
+    private final int REQUEST_STATUS_INDEX = 0;
 
     // GUI Alert Messages
     private final String ADD_SUCCESS = "Added successfully!";
     private final String UPDATE_SUCCESS = "Updated successfully!";
     private final String REMOVE_SUCCESS = "Removed successfully!";
     private final String ACTION_FAIL = "Request unsuccessful! Please try another word.";
+    private final String DID_YOU_MEAN = "\nDid you mean: ";
+    private final String SUGGESTION_SEPARATOR = ", ";
     private final String SERVER_FAULTY = "Request unsuccessful! An error occurred at the server side, please try " +
             "again later!";
     private final String INVALID_PORT_NO = "Please enter a valid port number!";
@@ -51,19 +57,19 @@ public class ClientGUI extends JFrame{
             "(separate with a '*' to add more than one):";
     private final String SETTINGS = "\nPlease go to the settings and try a different server address and/or port.";
 
-    public ClientGUI (Client client, ClientMessageHandler clientMessageHandler) {
+    public ClientGUI (Client client, AsyncClient asyncClient) {
         this.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         this.setContentPane(mainPanel);
         this.setSize(GUI_WIDTH,GUI_HEIGHT);
         this.client = client;
-        this.clientMessageHandler = clientMessageHandler;
+        this.asyncClient = asyncClient;
 
         // Query
         queryButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (!clientMessageHandler.isEmptyInput(getText())) {
-                    sendRequest(ClientMessageHandler.QUERY_CODE);
+                if (!ClientMessageHandler.isEmptyInput(getText())) {
+                    sendRequest(ClientMessageHandler.SUGGEST_CODE);
                 } else {
                     // If empty word field
                     displayAlert(EMPTY_WORD);
@@ -75,12 +81,12 @@ public class ClientGUI extends JFrame{
         addButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (clientMessageHandler.isEmptyInput(getText())) {
+                if (ClientMessageHandler.isEmptyInput(getText())) {
                     // If empty word field
                     displayAlert(EMPTY_WORD);
                 } else {
                     definitions = JOptionPane.showInputDialog(mainPanel, INPUT_DEFINITION_PROMPT, null);
-                    if (!clientMessageHandler.isEmptyInput(definitions)) {
+                    if (!ClientMessageHandler.isEmptyInput(definitions)) {
                         // If definition field not empty
                         sendRequest(ClientMessageHandler.ADD_CODE);
                     } else {
@@ -94,7 +100,7 @@ public class ClientGUI extends JFrame{
         removeButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (!clientMessageHandler.isEmptyInput(getText())) {
+                if (!ClientMessageHandler.isEmptyInput(getText())) {
                     int choice = JOptionPane.showConfirmDialog(mainPanel,WARNING_REMOVE,
                             WARNING_TITLE,
                             JOptionPane.YES_NO_OPTION,
@@ -113,12 +119,12 @@ public class ClientGUI extends JFrame{
         updateButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                if (clientMessageHandler.isEmptyInput(getText())) {
+                if (ClientMessageHandler.isEmptyInput(getText())) {
                     // If empty word field
                     displayAlert(EMPTY_WORD);
                 } else {
                     definitions = JOptionPane.showInputDialog(mainPanel, INPUT_DEFINITION_PROMPT, null);
-                    if (!clientMessageHandler.isEmptyInput(definitions)) {
+                    if (!ClientMessageHandler.isEmptyInput(definitions)) {
                         // If definition field not empty
                         int choice = JOptionPane.showConfirmDialog(mainPanel, WARNING_UPDATE, WARNING_TITLE,
                                 JOptionPane.YES_NO_OPTION,
@@ -147,8 +153,8 @@ public class ClientGUI extends JFrame{
             public void actionPerformed(ActionEvent e) {
                 JTextField addressField = new JTextField(SETTING_ADDRESS_COLUMNS);
                 JTextField portField = new JTextField(SETTING_PORT_COLUMNS);
-                addressField.setText(clientMessageHandler.getHostAddress());
-                portField.setText(String.valueOf(clientMessageHandler.getPortNo()));
+                addressField.setText(asyncClient.getHostAddress());
+                portField.setText(String.valueOf(asyncClient.getPortNo()));
                 JPanel settingPanel = new JPanel();
                 settingPanel.add(new JLabel(SETTING_ADDRESS_LABEL));
                 settingPanel.add(addressField);
@@ -158,10 +164,10 @@ public class ClientGUI extends JFrame{
                         SETTINGS_TITLE, JOptionPane.OK_CANCEL_OPTION);
                 if (result == JOptionPane.OK_OPTION) {
                     // Updates Server Address and Port Number
-                    clientMessageHandler.setHostAddress(addressField.getText());
+                    asyncClient.setHostAddress(addressField.getText());
                     try {
                         // Check port number input is an integer
-                        clientMessageHandler.setPortNo(Integer.parseInt(portField.getText()));
+                        asyncClient.setPortNo(Integer.parseInt(portField.getText()));
                     } catch (Exception ex) {
                         displayAlert(INVALID_PORT_NO);
                     }
@@ -197,33 +203,37 @@ public class ClientGUI extends JFrame{
     private void sendRequest(int actionCode) {
         // Trim removes whitespaces from both ends of the string
         String inputText = getText().trim();
-        if (clientMessageHandler.isValidWord(inputText) && !clientMessageHandler.isEmptyInput(inputText)) {
+        if (ClientMessageHandler.isValidWord(inputText) && !ClientMessageHandler.isEmptyInput(inputText)) {
 
             if (actionCode == ClientMessageHandler.UPDATE_CODE || actionCode == ClientMessageHandler.ADD_CODE) {
                     // Update & Add requests requires definitions
                     // Format -> word:definition
                     inputText += ClientMessageHandler.STRING_SEPARATOR + definitions.trim();
             }
-            try {
-                // Send the request via message handler
-                clientMessageHandler.request(actionCode, inputText.toLowerCase());
-                displayRequestStatus(actionCode);
-            } catch (InvalidSocketException e) {
-                displayAlert(e.getMessage() + SETTINGS);
-            }
+            // The response is shown on the event thread once it arrives, the window stays responsive meanwhile
+            asyncClient.request(actionCode, inputText.toLowerCase()).whenComplete((response, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (error == null) {
+                            displayRequestStatus(actionCode, response);
+                        } else {
+                            Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                            displayAlert(cause.getMessage() + SETTINGS);
+                        }
+                    }));
         } else {
             // Invalid word inputted
             displayAlert(INVALID_WORD);
         }
     }
 
-    private void displayRequestStatus(int actionCode) {
-        String requestStatus = clientMessageHandler.getRequestStatus();
-        if (requestStatus.equals(clientMessageHandler.REQUEST_SUCCESS)) {
+    private void displayRequestStatus(int actionCode, ArrayList<String> response) {
+        String requestStatus = response.get(REQUEST_STATUS_INDEX);
+        if (requestStatus.equals(ClientMessageHandler.REQUEST_SUCCESS)) {
             switch (actionCode)
             {
                 case ClientMessageHandler.QUERY_CODE:
-                    outputField.setText(clientMessageHandler.getDefinition());
+                case ClientMessageHandler.SUGGEST_CODE:
+                    outputField.setText(ClientMessageHandler.formatDefinitions(response));
                     break;
 
                 case ClientMessageHandler.ADD_CODE:
@@ -238,8 +248,14 @@ public class ClientGUI extends JFrame{
                     displayAlert(UPDATE_SUCCESS);
                     break;
             }
-        } else if (requestStatus.equals(clientMessageHandler.REQUEST_FAILURE)){
-            displayAlert(ACTION_FAIL);
+        } else if (requestStatus.equals(ClientMessageHandler.REQUEST_FAILURE)){
+            // Similar words a failed suggest request was answered with, closest first
+            List<String> suggestions = response.subList(REQUEST_STATUS_INDEX + 1, response.size());
+            if (actionCode == ClientMessageHandler.SUGGEST_CODE && !suggestions.isEmpty()) {
+                displayAlert(ACTION_FAIL + DID_YOU_MEAN + String.join(SUGGESTION_SEPARATOR, suggestions) + "?");
+            } else {
+                displayAlert(ACTION_FAIL);
+            }
         } else {
             // Input output error at the server side
             displayAlert(SERVER_FAULTY);
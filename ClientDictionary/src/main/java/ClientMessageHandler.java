@@ -1,117 +1,233 @@
-import java.io.*;
-import java.net.Socket;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+// Sends one request at a time and waits for its response, over a single connection of an AsyncClient
 public class ClientMessageHandler {
 
-    private Socket socket;
-    private String hostAddress;
-    private int portNo;
+    private AsyncClient asyncClient;
     private ArrayList<String> response; // From server
 
     // Request Status
-    public final String REQUEST_SUCCESS = "Success";
-    public final String REQUEST_FAILURE = "Failure";
-    private final int REQUEST_STATUS_INDEX = 0;
+    public final static String REQUEST_SUCCESS = "Success";
+    public final static String REQUEST_FAILURE = "Failure";
+    private final static int REQUEST_STATUS_INDEX = 0;
 
     // Action Codes
     public final static int QUERY_CODE = 1;
     public final static int ADD_CODE = 2;
     public final static int REMOVE_CODE = 3;
     public final static int UPDATE_CODE = 4;
+    public final static int MULTI_QUERY_CODE = 5;
+    public final static int BULK_ADD_CODE = 6;
+    public final static int BULK_UPDATE_CODE = 7;
+    public final static int BULK_REMOVE_CODE = 8;
+    public final static int PREFIX_CODE = 9;
+    public final static int SUGGEST_CODE = 10; // A query whose failure lists similar words
+    public final static int SEARCH_CODE = 11;
+    public final static int SUBSCRIBE_CODE = 12; // Turns a connection into a stream of changed words
+    public final static int SCAN_CODE = 13; // Pages through every entry in dictionary order
 
     // Error Messages
-    private final String CONNECT_FAIL = "Failed to connect to server.";
-    private final String ERROR_CLOSE_SOCKET = "Unable to close the server socket.";
     private final String ERROR_STREAM = "Unable to maintain input/output streams from/to client socket.";
+    private final String ERROR_SCAN = "The server could not list its entries, try again later.";
+    private final String ERROR_SCAN_TEXT = "An entry contains the separator, scan over the binary protocol instead.";
 
-    private final int STARTING_DEFINITION_COUNTER = 1;
-    private final String CONTAINS_DIGITS_REGEX = ".*\\d+.*"; // Check for digits
-    private final String VALID_BODY_REGEX = "^[a-zA-Z](?:['\\\\\\-a-zA-Z]*[a-zA-Z])?$"; // Alphabet, Apostrophes, Hyphen
+    private final static int STARTING_DEFINITION_COUNTER = 1;
+    private final static String CONTAINS_DIGITS_REGEX = ".*\\d+.*"; // Check for digits
+    private final static String VALID_BODY_REGEX = "^[a-zA-Z](?:['\\\\\\-a-zA-Z]*[a-zA-Z])?$"; // Alphabet, Apostrophes, Hyphen
     public final static String STRING_SEPARATOR = ":";
+    public final static String DEFINITION_SEPARATOR = "*";
 
     public ClientMessageHandler(String hostAddress, int portNo) {
-        this.hostAddress = hostAddress;
-        this.portNo = portNo;
+        this.asyncClient = new AsyncClient(hostAddress, portNo, 1);
     }
 
-    public void request(int actionCode, String inputText) throws InvalidSocketException {
+    // Queries answered by the near cache, when enabled, do not go to the server
+    public synchronized void request(int actionCode, String inputText) throws InvalidSocketException {
+        response = await(asyncClient.request(actionCode, inputText));
+    }
+
+    private ArrayList<String> await(CompletableFuture<ArrayList<String>> future) throws InvalidSocketException {
         try {
-            connect();
-            interact(actionCode,inputText);
-        } catch (InvalidSocketException e) {
-            throw new InvalidSocketException(e.getMessage());
-        } catch (IOException e) {
-            System.out.println(ERROR_STREAM);
-        } finally {
-            if (socket != null) {
-                try {
-                    socket.close();
-                } catch (IOException e) {
-                    System.out.println(ERROR_CLOSE_SOCKET);
-                }
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof InvalidSocketException) {
+                throw (InvalidSocketException) e.getCause();
             }
+            System.out.println(ERROR_STREAM);
+            throw new InvalidSocketException(ERROR_STREAM);
         }
     }
 
-    private void connect() throws InvalidSocketException {
-        socket = null;
+    // Keeps up to maxEntries query responses on the client, coherent through a subscription to the server's
+    // invalidations, or for at most ttlMs while the subscription is down. 0 entries turns the cache off.
+    public void setNearCache(int maxEntries, long ttlMs) {
+        asyncClient.setNearCache(maxEntries, ttlMs);
+    }
+
+    public NearCache getNearCache() {return asyncClient.getNearCache();}
+
+    public synchronized void close() {
+        asyncClient.close();
+    }
+
+    // Looks up every word in a single request, returns a list per word whose first element is its status
+    public synchronized ArrayList<ArrayList<String>> multiQuery(List<String> words) throws InvalidSocketException {
+        request(MULTI_QUERY_CODE, String.join(STRING_SEPARATOR, words));
+        ArrayList<ArrayList<String>> results = new ArrayList<>();
+        if (!getRequestStatus().equals(REQUEST_SUCCESS)) {
+            return results;
+        }
+        // Response format -> Success:wordCount, then status:definitionCount:definitions for every word
+        int index = REQUEST_STATUS_INDEX + 1;
+        int wordCount = Integer.parseInt(response.get(index++));
+        for (int i = 0; i < wordCount; i++) {
+            ArrayList<String> result = new ArrayList<>();
+            result.add(response.get(index++));
+            int definitionCount = Integer.parseInt(response.get(index++));
+            result.addAll(response.subList(index, index + definitionCount));
+            index += definitionCount;
+            results.add(result);
+        }
+        return results;
+    }
+
+    // Bulk requests are applied completely or not at all, on failure the status is followed by the offending words
+    public synchronized ArrayList<String> bulkAdd(Map<String, List<String>> entries) throws InvalidSocketException {
+        response = await(asyncClient.requestBulk(BULK_ADD_CODE, entries));
+        return new ArrayList<>(response);
+    }
+
+    public synchronized ArrayList<String> bulkUpdate(Map<String, List<String>> entries) throws InvalidSocketException {
+        response = await(asyncClient.requestBulk(BULK_UPDATE_CODE, entries));
+        return new ArrayList<>(response);
+    }
+
+    public synchronized ArrayList<String> bulkRemove(List<String> words) throws InvalidSocketException {
+        request(BULK_REMOVE_CODE, String.join(STRING_SEPARATOR, words));
+        return new ArrayList<>(response);
+    }
+
+    // Up to limit words starting with the prefix, in dictionary order, empty if none match
+    public synchronized ArrayList<String> complete(String prefix, int limit) throws InvalidSocketException {
+        // Request format -> actionCode:prefix:limit
+        request(PREFIX_CODE, prefix + STRING_SEPARATOR + limit);
+        ArrayList<String> words = new ArrayList<>();
+        if (getRequestStatus().equals(REQUEST_SUCCESS)) {
+            words.addAll(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+        }
+        return words;
+    }
+
+    // Words whose definitions mention the terms, best match first. The first element is the total number of matching
+    // words, followed by the requested page; empty if none match.
+    public synchronized ArrayList<String> search(String terms, int offset, int limit) throws InvalidSocketException {
+        // Request format -> actionCode:terms:offset:limit, the separator is not part of any term
+        request(SEARCH_CODE, String.join(STRING_SEPARATOR, terms.replace(STRING_SEPARATOR, " "),
+                Integer.toString(offset), Integer.toString(limit)));
+        ArrayList<String> results = new ArrayList<>();
+        if (getRequestStatus().equals(REQUEST_SUCCESS)) {
+            results.addAll(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+        }
+        return results;
+    }
+
+    // Up to limit entries following the word in dictionary order, an empty word starts from the first one. Empty once
+    // every entry has been returned.
+    public synchronized LinkedHashMap<String, List<String>> scan(String afterWord, int limit)
+            throws InvalidSocketException {
+        // Request format -> actionCode:limit:afterWord
+        request(SCAN_CODE, afterWord.isEmpty() ? Integer.toString(limit) : limit + STRING_SEPARATOR + afterWord);
+        LinkedHashMap<String, List<String>> entries = new LinkedHashMap<>();
+        if (getRequestStatus().equals(REQUEST_FAILURE)) {
+            return entries;
+        }
+        if (!getRequestStatus().equals(REQUEST_SUCCESS)) {
+            throw new InvalidSocketException(ERROR_SCAN);
+        }
+        // Response format -> Success:word:definitionCount:definitions for every entry
+        int index = REQUEST_STATUS_INDEX + 1;
         try {
-            socket = new Socket(hostAddress, portNo);
-        } catch (Exception e) {
-            throw new InvalidSocketException(CONNECT_FAIL);
+            while (index < response.size()) {
+                String word = response.get(index++);
+                int definitionCount = Integer.parseInt(response.get(index++));
+                entries.put(word, new ArrayList<>(response.subList(index, index + definitionCount)));
+                index += definitionCount;
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // A definition containing the separator, only the binary protocol can carry it
+            throw new InvalidSocketException(ERROR_SCAN_TEXT);
         }
+        return entries;
     }
 
-    private void interact(int actionCode, String inputText) throws IOException {
-        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
-                StandardCharsets.UTF_8));
-        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
-                StandardCharsets.UTF_8));
-        // Request format -> actionCode:word:(definition)
-        out.write(String.format("%d:%s\n", actionCode, inputText));
-        out.flush();
-        String response = in.readLine();
-        process(response);
+    // Looks up many words in one round trip, returns the responses in the order of the words. Words in the near cache
+    // are answered from it and left out of the round trip.
+    public synchronized ArrayList<ArrayList<String>> queryBatch(List<String> words) throws InvalidSocketException {
+        return requestBatch(QUERY_CODE, words);
     }
 
-    private void process(String response) {
-        // Response format -> requestStatus:definition(if applicable)
-        String[] processedString = response.split(STRING_SEPARATOR);
-        this.response = new ArrayList<>(Arrays.asList(processedString));
+    // Pipelines the requests: all of them are written without waiting, then the responses are read in order.
+    // Each response is a list whose first element is the request status.
+    public synchronized ArrayList<ArrayList<String>> requestBatch(int actionCode, List<String> inputTexts)
+            throws InvalidSocketException {
+        ArrayList<ArrayList<String>> responses = new ArrayList<>(inputTexts.size());
+        for (CompletableFuture<ArrayList<String>> future : asyncClient.requestBatch(actionCode, inputTexts)) {
+            responses.add(await(future));
+        }
+        return responses;
     }
 
     // Retrieves a formatted list of definitions suitable for display on the GUI
     public String getDefinition() {
-        ArrayList<String> definitions = response;
+        return formatDefinitions(response);
+    }
+
+    // Numbers the definitions of a successful query response, one per line
+    public static String formatDefinitions(List<String> response) {
         StringBuilder formattedDefinitions = new StringBuilder();
         int definitionCounter =  STARTING_DEFINITION_COUNTER;
-        definitions.remove(REQUEST_STATUS_INDEX);
-        for (String definition: definitions) {
+        for (String definition: response.subList(REQUEST_STATUS_INDEX + 1, response.size())) {
             formattedDefinitions.append(String.format("%d: %s\n", definitionCounter, definition));
             definitionCounter++;
         }
         return formattedDefinitions.toString();
     }
 
-    public boolean isValidWord(String word) {
+    // Similar words a failed suggest request was answered with, closest first
+    public List<String> getSuggestions() {
+        return new ArrayList<>(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+    }
+
+    public static boolean isValidWord(String word) {
         // Word does not have digits and may contain hyphens, alphabets, apostrophes
         return (word.matches(VALID_BODY_REGEX) && !word.matches(CONTAINS_DIGITS_REGEX) && word.trim().length() != 0 );
     }
 
-    public boolean isEmptyInput(String input) {
-        return input.trim().length() == 0 || input == null;
+    public static boolean isEmptyInput(String input) {
+        return input == null || input.trim().length() == 0;
     }
 
     public String getRequestStatus() {return response.get(REQUEST_STATUS_INDEX);}
 
-    public String getHostAddress() {return hostAddress;}
+    public String getHostAddress() {return asyncClient.getHostAddress();}
 
-    public int getPortNo() {return portNo;}
+    public int getPortNo() {return asyncClient.getPortNo();}
 
-    public void setHostAddress(String hostAddress) {this.hostAddress = hostAddress;}
+    // Changing the server closes the current connection, the next request connects to the new one
+    public synchronized void setHostAddress(String hostAddress) {
+        asyncClient.setHostAddress(hostAddress);
+    }
+
+    public synchronized void setPortNo(int portNo) {
+        asyncClient.setPortNo(portNo);
+    }
 
-    public void setPortNo(int portNo) {this.portNo = portNo;}
+    public synchronized void setBinaryProtocol(boolean useBinaryProtocol) {
+        asyncClient.setBinaryProtocol(useBinaryProtocol);
+    }
 }
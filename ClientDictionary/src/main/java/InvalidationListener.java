@@ -0,0 +1,99 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// Keeps a NearCache coherent over a connection of its own: subscribes to the server's invalidations and drops every
+// word the server pushes (see InvalidationPublisher in the server). While the connection is down the cache falls back
+// to expiring its responses, and the listener keeps trying to subscribe again.
+public class InvalidationListener extends Thread {
+
+    private String hostAddress;
+    private int portNo;
+    private NearCache nearCache;
+    private volatile boolean isRunning = true;
+    private volatile Socket socket;
+
+    private final long RECONNECT_DELAY_MS = 1000;
+    private final long UNSUPPORTED_RETRY_DELAY_MS = 60000; // Servers without invalidations are asked again rarely
+    private final int MISSED_HEARTBEATS = 3; // Missed before the server is considered gone
+
+    // Pushed Lines
+    private final String SUBSCRIBED = "Success:"; // Followed by the server's heartbeat interval in milliseconds
+    private final String INVALIDATE_ALL = "Invalidate";
+    private final String INVALIDATE_WORD = INVALIDATE_ALL + ClientMessageHandler.STRING_SEPARATOR;
+
+    public InvalidationListener(String hostAddress, int portNo, NearCache nearCache) {
+        super("invalidation-listener");
+        setDaemon(true);
+        this.hostAddress = hostAddress;
+        this.portNo = portNo;
+        this.nearCache = nearCache;
+    }
+
+    public void run() {
+        while (isRunning) {
+            long retryDelayMs = RECONNECT_DELAY_MS;
+            try {
+                if (!listen()) {
+                    retryDelayMs = UNSUPPORTED_RETRY_DELAY_MS;
+                }
+            } catch (IOException | NumberFormatException e) {
+                // Server unreachable, gone quiet or closed the connection
+            } finally {
+                nearCache.setSubscribed(false);
+                closeSocket();
+            }
+            try {
+                Thread.sleep(retryDelayMs);
+            } catch (InterruptedException e) {
+                return; // Shut down
+            }
+        }
+    }
+
+    // Returns false if the server does not support subscriptions, otherwise listens until the connection is lost
+    private boolean listen() throws IOException {
+        socket = new Socket(hostAddress, portNo);
+        if (!isRunning) {
+            return true; // Shut down while connecting
+        }
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(ClientMessageHandler.SUBSCRIBE_CODE + "\n");
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null || !reply.startsWith(SUBSCRIBED)) {
+            return false;
+        }
+        long heartbeatIntervalMs = Long.parseLong(reply.substring(SUBSCRIBED.length()));
+        socket.setSoTimeout((int) Math.min(heartbeatIntervalMs * MISSED_HEARTBEATS, Integer.MAX_VALUE));
+        nearCache.setSubscribed(true);
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals(INVALIDATE_ALL)) {
+                nearCache.invalidateAll();
+            } else if (line.startsWith(INVALIDATE_WORD)) {
+                nearCache.invalidate(line.substring(INVALIDATE_WORD.length()));
+            }
+            // Anything else is a heartbeat
+        }
+        return true;
+    }
+
+    public void shutdown() {
+        isRunning = false;
+        interrupt();
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        Socket openSocket = socket;
+        if (openSocket != null) {
+            try {
+                openSocket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
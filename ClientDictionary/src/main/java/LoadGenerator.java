@@ -0,0 +1,390 @@
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless client that puts a server under load and reports its throughput and latency percentiles.
+// Usage: java -cp <jar-file> LoadGenerator <server-address> <server-port> [options]
+public class LoadGenerator {
+
+    private String hostAddress;
+    private int portNo;
+    private int connectionNo = 16;
+    private double rate;               // Requests per second over all connections, 0 runs a closed loop
+    private int durationS = UNSET;    // Defaults to 30 seconds, or the whole trace when replaying one
+    private int warmupS = 5;           // Requests sent during the warmup are not reported
+    private int[] mix = {90, 4, 4, 2}; // Weights of query, add, update and remove
+    private int mixTotal;
+    private String wordsFilePath = "sample-dictionary.json";
+    private String traceFilePath;
+    private boolean useBinaryProtocol;
+
+    private ArrayList<String> words;
+    private ConcurrentLinkedQueue<LoadRequest> trace;
+    private volatile boolean isRunning;
+    private volatile boolean isRecording;
+    private long startTime;
+    private String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private Recorder[] recorders = new Recorder[ClientMessageHandler.BULK_REMOVE_CODE + 1]; // Latency in us by action
+    private LongAdder successNo = new LongAdder();
+    private LongAdder failureNo = new LongAdder();
+    private LongAdder errorNo = new LongAdder();
+
+    // Validity Constraints
+    private final int ADDRESS_INDEX = 0;
+    private final int PORT_NO_INDEX = 1;
+    private final int OPTIONS_INDEX = 2;
+    private final int REQUIRED_ARGS = 2;
+    private final int MIX_ACTIONS = 4;
+    private final int[] MIX_ACTION_CODES = {ClientMessageHandler.QUERY_CODE, ClientMessageHandler.ADD_CODE,
+            ClientMessageHandler.UPDATE_CODE, ClientMessageHandler.REMOVE_CODE};
+    private final static int UNSET = -1;
+    private final int DEFAULT_DURATION_S = 30;
+    private final int SIGNIFICANT_DIGITS = 3;
+    private final long REPORT_INTERVAL_MS = 1000;
+
+    private final String CONNECTIONS_FLAG = "--connections"; // Concurrent connections, one worker thread each
+    private final String RATE_FLAG = "--rate"; // Requests per second, closed loop when left out
+    private final String DURATION_FLAG = "--duration"; // Seconds measured after the warmup
+    private final String WARMUP_FLAG = "--warmup"; // Seconds of load before measuring
+    private final String MIX_FLAG = "--mix"; // query:add:update:remove weights
+    private final String WORDS_FLAG = "--words"; // Dictionary JSON file whose words are queried
+    private final String TRACE_FLAG = "--trace"; // JSON lines file of requests to replay instead of the mix
+    private final String BINARY_FLAG = "--binary";
+    private final String FLAG_VALUE_SEPARATOR = "=";
+    private final String MIX_SEPARATOR = ":";
+
+    // Trace Fields, one request per line => {"actionCode":1,"word":"apple","definitions":["..."],"offsetMs":0}
+    private final String TRACE_ACTION_CODE = "actionCode";
+    private final String TRACE_WORD = "word";
+    private final String TRACE_DEFINITIONS = "definitions";
+    private final String TRACE_OFFSET = "offsetMs"; // Optional, replays the trace at its recorded pace
+
+    private final String REQUEST_SUCCESS = "Success";
+    private final String REQUEST_FAILURE = "Failure";
+
+    // Error Messages
+    private final String INVALID_ARG_NO = "Insufficient arguments entered.\n" +
+            "Usage: java -cp <jar-file> LoadGenerator <server-address> <server-port> [options]\n" +
+            "Options: --connections=<n> --rate=<requests/s> --duration=<s> --warmup=<s>\n" +
+            "         --mix=<query:add:update:remove> --words=<dictionary-file> --trace=<jsonl-file> --binary";
+    private final String INVALID_OPTION = "Invalid value for option: ";
+    private final String UNKNOWN_OPTION = "Ignoring unknown option: ";
+    private final String ERROR_READ_WORDS = "Unable to read any words from: ";
+    private final String ERROR_READ_TRACE = "Unable to read the request trace: ";
+
+    // Status Messages
+    private final String LOAD_STARTING = "Sending load to %s:%d over %d connections, %s%n";
+    private final String CLOSED_LOOP = "closed loop";
+    private final String FIXED_RATE = "%.0f requests/s";
+    private final String TRACE_REPLAY = "replaying %d requests from %s";
+    private final String INTERVAL_REPORT = "%6.1fs %10.0f req/s   p50 %8d us   p99 %8d us   max %8d us%n";
+    private final String SUMMARY_HEADER = "%nRequests: %d (success %d, failure %d, error %d) in %.1fs, %.0f req/s%n";
+    private final String LATENCY_HEADER = "%-8s %10s %10s %10s %10s %10s %10s%n";
+    private final String LATENCY_ROW = "%-8s %10d %10d %10d %10d %10d %10d%n";
+    private final String[] ACTION_NAMES = {"all", "query", "add", "remove", "update", "multi", "bulk-add",
+            "bulk-upd", "bulk-rem"};
+
+    public static void main(String[] args) {
+        LoadGenerator loadGenerator = new LoadGenerator();
+        loadGenerator.runProgram(args);
+    }
+
+    private void runProgram(String[] args) {
+        scanCommandArguments(args);
+        loadWorkload();
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(SIGNIFICANT_DIGITS);
+        }
+        generateLoad();
+    }
+
+    private void scanCommandArguments(String[] args) {
+        if (args.length < REQUIRED_ARGS) {
+            System.out.println(INVALID_ARG_NO);
+            System.exit(1);
+        }
+        hostAddress = args[ADDRESS_INDEX];
+        try {
+            portNo = Integer.parseInt(args[PORT_NO_INDEX]);
+        } catch (NumberFormatException e) {
+            System.out.println(INVALID_ARG_NO);
+            System.exit(1);
+        }
+        for (int i = OPTIONS_INDEX; i < args.length; i++) {
+            // Options are either a plain flag or flag=value
+            String[] option = args[i].split(FLAG_VALUE_SEPARATOR, 2);
+            String value = option.length > 1 ? option[1] : "";
+            try {
+                switch (option[0]) {
+                    case CONNECTIONS_FLAG:
+                        connectionNo = Integer.parseInt(value);
+                        break;
+
+                    case RATE_FLAG:
+                        rate = Double.parseDouble(value);
+                        break;
+
+                    case DURATION_FLAG:
+                        durationS = Integer.parseInt(value);
+                        break;
+
+                    case WARMUP_FLAG:
+                        warmupS = Integer.parseInt(value);
+                        break;
+
+                    case MIX_FLAG:
+                        String[] weights = value.split(MIX_SEPARATOR);
+                        if (weights.length != MIX_ACTIONS) {
+                            throw new IllegalArgumentException();
+                        }
+                        for (int j = 0; j < MIX_ACTIONS; j++) {
+                            mix[j] = Integer.parseInt(weights[j]);
+                        }
+                        break;
+
+                    case WORDS_FLAG:
+                        wordsFilePath = value;
+                        break;
+
+                    case TRACE_FLAG:
+                        traceFilePath = value;
+                        break;
+
+                    case BINARY_FLAG:
+                        useBinaryProtocol = true;
+                        break;
+
+                    default:
+                        System.out.println(UNKNOWN_OPTION + args[i]);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(INVALID_OPTION + args[i]);
+                System.exit(1);
+            }
+        }
+        mixTotal = 0;
+        for (int weight : mix) {
+            if (weight < 0) {
+                System.out.println(INVALID_OPTION + MIX_FLAG);
+                System.exit(1);
+            }
+            mixTotal += weight;
+        }
+        if (connectionNo < 1 || rate < 0 || mixTotal == 0) {
+            System.out.println(INVALID_ARG_NO);
+            System.exit(1);
+        }
+    }
+
+    private void loadWorkload() {
+        if (traceFilePath != null) {
+            trace = readTrace(traceFilePath);
+            warmupS = 0; // Every request of a trace is reported
+            durationS = durationS == UNSET ? Integer.MAX_VALUE : durationS;
+        } else {
+            words = readWords(wordsFilePath);
+            durationS = durationS == UNSET ? DEFAULT_DURATION_S : durationS;
+        }
+    }
+
+    private ArrayList<String> readWords(String filePath) {
+        try (Reader reader = new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8)) {
+            JSONObject dictionary = (JSONObject) new JSONParser().parse(reader);
+            ArrayList<String> words = new ArrayList<>();
+            for (Object word : dictionary.keySet()) {
+                words.add((String) word);
+            }
+            if (words.isEmpty()) {
+                throw new IllegalArgumentException();
+            }
+            return words;
+        } catch (Exception e) {
+            System.out.println(ERROR_READ_WORDS + filePath);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private ConcurrentLinkedQueue<LoadRequest> readTrace(String filePath) {
+        ConcurrentLinkedQueue<LoadRequest> requests = new ConcurrentLinkedQueue<>();
+        JSONParser parser = new JSONParser();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                JSONObject entry = (JSONObject) parser.parse(line);
+                StringBuilder inputText = new StringBuilder((String) entry.get(TRACE_WORD));
+                JSONArray definitions = (JSONArray) entry.get(TRACE_DEFINITIONS);
+                if (definitions != null) {
+                    inputText.append(ClientMessageHandler.STRING_SEPARATOR);
+                    for (int i = 0; i < definitions.size(); i++) {
+                        if (i > 0) {
+                            inputText.append(ClientMessageHandler.DEFINITION_SEPARATOR);
+                        }
+                        inputText.append((String) definitions.get(i));
+                    }
+                }
+                Number offsetMs = (Number) entry.get(TRACE_OFFSET);
+                requests.add(new LoadRequest(((Number) entry.get(TRACE_ACTION_CODE)).intValue(), inputText.toString(),
+                        offsetMs == null ? LoadRequest.UNSCHEDULED : TimeUnit.MILLISECONDS.toNanos(offsetMs.longValue())));
+            }
+        } catch (Exception e) {
+            System.out.println(ERROR_READ_TRACE + filePath);
+            System.exit(1);
+        }
+        return requests;
+    }
+
+    private void generateLoad() {
+        String pacing = trace != null ? String.format(TRACE_REPLAY, trace.size(), traceFilePath)
+                : rate > 0 ? String.format(FIXED_RATE, rate) : CLOSED_LOOP;
+        System.out.printf(LOAD_STARTING, hostAddress, portNo, connectionNo, pacing);
+        long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * connectionNo / rate) : 0;
+        startTime = System.nanoTime();
+        isRunning = true;
+        isRecording = warmupS == 0;
+        LoadWorker[] workers = new LoadWorker[connectionNo];
+        for (int i = 0; i < connectionNo; i++) {
+            workers[i] = new LoadWorker(this, i, intervalNanos, useBinaryProtocol);
+            workers[i].start();
+        }
+        sleep(TimeUnit.SECONDS.toMillis(warmupS));
+        // Drops the warmup requests, and starts measuring
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        for (Recorder recorder : recorders) {
+            recorder.reset();
+        }
+        successNo.reset();
+        failureNo.reset();
+        errorNo.reset();
+        isRecording = true;
+        long measureStart = System.nanoTime();
+        long durationNanos = TimeUnit.SECONDS.toNanos(durationS);
+        long lastReport = measureStart;
+        Histogram[] actionTotals = new Histogram[recorders.length];
+        while (System.nanoTime() - measureStart < durationNanos && anyAlive(workers)) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(durationNanos - (System.nanoTime() - measureStart));
+            sleep(Math.min(REPORT_INTERVAL_MS, remainingMs + 1));
+            Histogram interval = collectInterval(actionTotals);
+            total.add(interval);
+            long now = System.nanoTime();
+            System.out.printf(INTERVAL_REPORT, (now - measureStart) / 1e9,
+                    interval.getTotalCount() / ((now - lastReport) / 1e9), interval.getValueAtPercentile(50), interval.getValueAtPercentile(99), interval.getMaxValue());
+            lastReport = now;
+        }
+        double measuredS = (System.nanoTime() - measureStart) / 1e9;
+        isRunning = false;
+        total.add(collectInterval(actionTotals));
+        printSummary(total, actionTotals, measuredS);
+        System.exit(0);
+    }
+
+    // Moves what every recorder collected since the last call into the per-action totals
+    private Histogram collectInterval(Histogram[] actionTotals) {
+        Histogram interval = new Histogram(SIGNIFICANT_DIGITS);
+        for (int i = 0; i < recorders.length; i++) {
+            Histogram actionInterval = recorders[i].getIntervalHistogram();
+            if (actionTotals[i] == null) {
+                actionTotals[i] = new Histogram(SIGNIFICANT_DIGITS);
+            }
+            actionTotals[i].add(actionInterval);
+            interval.add(actionInterval);
+        }
+        return interval;
+    }
+
+    private void printSummary(Histogram total, Histogram[] actionTotals, double measuredS) {
+        System.out.printf(SUMMARY_HEADER, total.getTotalCount(), successNo.sum(), failureNo.sum(), errorNo.sum(),
+                measuredS, total.getTotalCount() / measuredS);
+        System.out.printf(LATENCY_HEADER, "us", "count", "p50", "p99", "p99.9", "max", "mean");
+        printLatencyRow(ACTION_NAMES[0], total);
+        for (int i = 1; i < actionTotals.length; i++) {
+            if (actionTotals[i].getTotalCount() > 0) {
+                printLatencyRow(ACTION_NAMES[i], actionTotals[i]);
+            }
+        }
+    }
+
+    private void printLatencyRow(String name, Histogram histogram) {
+        System.out.printf(LATENCY_ROW, name, histogram.getTotalCount(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMaxValue(),
+                (long) histogram.getMean());
+    }
+
+    private boolean anyAlive(LoadWorker[] workers) {
+        for (LoadWorker worker : workers) {
+            if (worker.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void record(int actionCode, long latencyNanos, String requestStatus) {
+        if (!isRecording) {
+            return;
+        }
+        int index = actionCode > 0 && actionCode < recorders.length ? actionCode : 0;
+        recorders[index].recordValue(Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1));
+        if (requestStatus.equals(REQUEST_SUCCESS)) {
+            successNo.increment();
+        } else if (requestStatus.equals(REQUEST_FAILURE)) {
+            failureNo.increment();
+        } else {
+            errorNo.increment();
+        }
+    }
+
+    public int pickActionCode(Random random) {
+        int roll = random.nextInt(mixTotal);
+        for (int i = 0; i < MIX_ACTIONS; i++) {
+            roll -= mix[i];
+            if (roll < 0) {
+                return MIX_ACTION_CODES[i];
+            }
+        }
+        return ClientMessageHandler.QUERY_CODE;
+    }
+
+    public String pickWord(Random random) {
+        return words.get(random.nextInt(words.size()));
+    }
+
+    public LoadRequest nextTraceRequest() {return trace.poll();}
+
+    public boolean hasTrace() {return trace != null;}
+
+    public boolean isRunning() {return isRunning;}
+
+    public long getStartTime() {return startTime;}
+
+    public String getRunId() {return runId;}
+
+    public int getConnectionNo() {return connectionNo;}
+
+    public String getHostAddress() {return hostAddress;}
+
+    public int getPortNo() {return portNo;}
+}
@@ -0,0 +1,25 @@
+// A request for the load generator, in the same form ClientMessageHandler.request takes
+public class LoadRequest {
+
+    private int actionCode;
+    private String inputText;
+    private long offsetNanos; // When to send it, relative to the start of a trace replay
+
+    public final static long UNSCHEDULED = -1;
+
+    public LoadRequest(int actionCode, String inputText) {
+        this(actionCode, inputText, UNSCHEDULED);
+    }
+
+    public LoadRequest(int actionCode, String inputText, long offsetNanos) {
+        this.actionCode = actionCode;
+        this.inputText = inputText;
+        this.offsetNanos = offsetNanos;
+    }
+
+    public int getActionCode() {return actionCode;}
+
+    public String getInputText() {return inputText;}
+
+    public long getOffsetNanos() {return offsetNanos;}
+}
@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives one connection of the load generator, either in a closed loop or on a fixed schedule
+public class LoadWorker extends Thread {
+
+    private LoadGenerator loadGenerator;
+    private ClientMessageHandler clientMessageHandler;
+    private int workerIndex;
+    private long intervalNanos; // Between requests on a fixed schedule, 0 in a closed loop
+    private Random random;
+    private ArrayList<String> addedWords = new ArrayList<>(); // Updated and removed by later requests
+    private int addedWordNo;
+
+    private final String ADDED_WORD_PREFIX = "loadgen-";
+    private final String LOAD_DEFINITION = "added by the load generator";
+    private final String REQUEST_ERROR = "Error";
+
+    public LoadWorker(LoadGenerator loadGenerator, int workerIndex, long intervalNanos, boolean useBinaryProtocol) {
+        super("load-worker-" + workerIndex);
+        setDaemon(true);
+        this.loadGenerator = loadGenerator;
+        this.workerIndex = workerIndex;
+        this.intervalNanos = intervalNanos;
+        this.random = new Random(workerIndex);
+        this.clientMessageHandler = new ClientMessageHandler(loadGenerator.getHostAddress(), loadGenerator.getPortNo());
+        clientMessageHandler.setBinaryProtocol(useBinaryProtocol);
+    }
+
+    public void run() {
+        long startTime = loadGenerator.getStartTime();
+        // Workers on a schedule are spread over the interval, so requests do not leave in bursts
+        long nextStart = startTime + intervalNanos * workerIndex / loadGenerator.getConnectionNo();
+        while (loadGenerator.isRunning()) {
+            LoadRequest request = loadGenerator.hasTrace() ? loadGenerator.nextTraceRequest() : nextMixRequest();
+            if (request == null) {
+                break; // Trace replayed completely
+            }
+            // Latency is measured from when the request should have been sent, so a slow server is not hidden
+            // by requests that wait for the previous one (coordinated omission)
+            long intendedStart;
+            if (request.getOffsetNanos() != LoadRequest.UNSCHEDULED) {
+                intendedStart = startTime + request.getOffsetNanos();
+            } else if (intervalNanos > 0) {
+                intendedStart = nextStart;
+                nextStart += intervalNanos;
+            } else {
+                intendedStart = System.nanoTime();
+            }
+            waitUntil(intendedStart);
+            String requestStatus;
+            try {
+                clientMessageHandler.request(request.getActionCode(), request.getInputText());
+                requestStatus = clientMessageHandler.getRequestStatus();
+            } catch (InvalidSocketException e) {
+                requestStatus = REQUEST_ERROR;
+            }
+            loadGenerator.record(request.getActionCode(), System.nanoTime() - intendedStart, requestStatus);
+        }
+        clientMessageHandler.close();
+    }
+
+    // Picks the next action by the weights of the mix, updates and removes only touch words this worker added
+    private LoadRequest nextMixRequest() {
+        int actionCode = loadGenerator.pickActionCode(random);
+        if ((actionCode == ClientMessageHandler.UPDATE_CODE || actionCode == ClientMessageHandler.REMOVE_CODE)
+                && addedWords.isEmpty()) {
+            actionCode = ClientMessageHandler.ADD_CODE;
+        }
+        switch (actionCode) {
+            case ClientMessageHandler.ADD_CODE:
+                // Unique across workers and runs, so adds only fail when the server misbehaves
+                String word = ADDED_WORD_PREFIX + loadGenerator.getRunId() + "-" + workerIndex + "-" + addedWordNo++;
+                addedWords.add(word);
+                return new LoadRequest(actionCode, word + ClientMessageHandler.STRING_SEPARATOR + LOAD_DEFINITION);
+
+            case ClientMessageHandler.UPDATE_CODE:
+                return new LoadRequest(actionCode, addedWords.get(random.nextInt(addedWords.size()))
+                        + ClientMessageHandler.STRING_SEPARATOR + LOAD_DEFINITION);
+
+            case ClientMessageHandler.REMOVE_CODE:
+                int index = random.nextInt(addedWords.size());
+                String removedWord = addedWords.get(index);
+                addedWords.set(index, addedWords.get(addedWords.size() - 1));
+                addedWords.remove(addedWords.size() - 1);
+                return new LoadRequest(actionCode, removedWord);
+
+            default:
+                return new LoadRequest(actionCode, loadGenerator.pickWord(random));
+        }
+    }
+
+    private void waitUntil(long time) {
+        long remaining;
+        while ((remaining = time - System.nanoTime()) > 0 && loadGenerator.isRunning()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Query responses kept by the client, so that asking for a word again does not go to the server. While the
+// InvalidationListener is subscribed the server pushes the words that change and responses are kept until then,
+// while it is not they expire after the TTL, which bounds how stale they can get. Responses are keyed by the word
+// folded the way the server compares words, and the least recently used one is evicted once the cache is full.
+public class NearCache {
+
+    private int maxEntries;
+    private long ttlNanos;
+    private LinkedHashMap<String, Entry> entries;
+    private long version; // Bumped by every invalidation, see put
+    private boolean isSubscribed;
+    private long hitNo;
+    private long missNo;
+
+    private static class Entry {
+        private final ArrayList<String> response;
+        private final long fetchedAt;
+        private final boolean expires; // Fetched while no invalidations were coming in
+
+        private Entry(ArrayList<String> response, long fetchedAt, boolean expires) {
+            this.response = response;
+            this.fetchedAt = fetchedAt;
+            this.expires = expires;
+        }
+    }
+
+    public NearCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMs * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > NearCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Returns a copy of the cached response, whose first element is its status, or null if there is none
+    public synchronized ArrayList<String> get(String word) {
+        String key = fold(word);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expires && System.nanoTime() - entry.fetchedAt > ttlNanos) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            missNo++;
+            return null;
+        }
+        hitNo++;
+        return new ArrayList<>(entry.response);
+    }
+
+    // Read before the request whose response will be cached is sent
+    public synchronized long version() {
+        return version;
+    }
+
+    // Caches the response unless something was invalidated since the version was read, as the response may have been
+    // answered before the change it was invalidated for
+    public synchronized void put(String word, long readVersion, ArrayList<String> response) {
+        if (version == readVersion) {
+            entries.put(fold(word), new Entry(new ArrayList<>(response), System.nanoTime(), !isSubscribed));
+        }
+    }
+
+    public synchronized void invalidate(String word) {
+        version++;
+        entries.remove(fold(word));
+    }
+
+    public synchronized void invalidateAll() {
+        version++;
+        entries.clear();
+    }
+
+    // Changes may have been missed while the subscription was down or coming up, and responses cached while subscribed
+    // have no expiry, so everything is dropped either way
+    public synchronized void setSubscribed(boolean isSubscribed) {
+        this.isSubscribed = isSubscribed;
+        invalidateAll();
+    }
+
+    public synchronized boolean isSubscribed() {return isSubscribed;}
+
+    public synchronized long getHitNo() {return hitNo;}
+
+    public synchronized long getMissNo() {return missNo;}
+
+    public synchronized int size() {return entries.size();}
+
+    // Lower case words, the usual spelling, are returned as they are
+    private static String fold(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (fold(c) != c) {
+                char[] folded = word.toCharArray();
+                for (int j = i; j < folded.length; j++) {
+                    folded[j] = fold(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return word;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
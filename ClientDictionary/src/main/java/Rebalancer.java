@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+// Moves entries between the servers of a sharded deployment after nodes were added or removed, so that every word
+// ends up on the node the new ShardRing assigns it to. Every node of either list is paged through with scan requests,
+// and the entries it holds for another node are added there before they are removed from it, so a word is never
+// missing in between. Writes to words being moved should wait until it is done, clients switch to the new node list
+// afterwards. Running it again after an interruption finishes the move.
+// Usage: java -cp <jar-file> Rebalancer <from-nodes> <to-nodes> [--dry-run] [--page=<entries>]
+public class Rebalancer {
+
+    private ShardRing fromRing;
+    private ShardRing toRing;
+    private boolean isDryRun;
+    private int pageSize = 500;
+
+    private final int FROM_NODES_INDEX = 0;
+    private final int TO_NODES_INDEX = 1;
+    private final int OPTIONS_INDEX = 2;
+    private final int REQUIRED_ARGS = 2;
+    private final int MAX_PAGE_SIZE = 1000; // The server's limit
+    private final int REQUEST_STATUS_INDEX = 0;
+
+    private final String DRY_RUN_FLAG = "--dry-run"; // Counts the entries that would move without moving them
+    private final String PAGE_FLAG = "--page"; // Entries scanned per request
+    private final String FLAG_VALUE_SEPARATOR = "=";
+
+    // Error Messages
+    private final String INVALID_ARG_NO = "Insufficient arguments entered.\n" +
+            "Usage: java -cp <jar-file> Rebalancer <from-nodes> <to-nodes> [--dry-run] [--page=<entries>]\n" +
+            "Nodes are comma separated host:port lists, e.g. localhost:4000,localhost:4001";
+    private final String INVALID_OPTION = "Invalid value for option: ";
+    private final String UNKNOWN_OPTION = "Ignoring unknown option: ";
+    private final String ERROR_MOVE = "Unable to move entries from %s to %s: %s%n";
+    private final String ERROR_NODE = "Stopped rebalancing at %s: %s%n";
+
+    // Status Messages
+    private final String NODE_REPORT = "%s: %d entries scanned, %d %s%n";
+    private final String MOVED = "moved";
+    private final String TO_MOVE = "to move";
+    private final String SUMMARY = "%d of %d entries %s%n";
+
+    public static void main(String[] args) {
+        Rebalancer rebalancer = new Rebalancer();
+        rebalancer.scanCommandArguments(args);
+        System.exit(rebalancer.rebalance() ? 0 : 1);
+    }
+
+    private void scanCommandArguments(String[] args) {
+        if (args.length < REQUIRED_ARGS) {
+            System.out.println(INVALID_ARG_NO);
+            System.exit(1);
+        }
+        try {
+            fromRing = ShardRing.parse(args[FROM_NODES_INDEX]);
+            toRing = ShardRing.parse(args[TO_NODES_INDEX]);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+        for (int i = OPTIONS_INDEX; i < args.length; i++) {
+            String[] option = args[i].split(FLAG_VALUE_SEPARATOR, 2);
+            if (option[0].equals(DRY_RUN_FLAG)) {
+                isDryRun = true;
+            } else if (option[0].equals(PAGE_FLAG) && option.length > 1) {
+                try {
+                    pageSize = Integer.parseInt(option[1]);
+                } catch (NumberFormatException e) {
+                    pageSize = -1;
+                }
+                if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                    System.out.println(INVALID_OPTION + args[i]);
+                    System.exit(1);
+                }
+            } else {
+                System.out.println(UNKNOWN_OPTION + args[i]);
+            }
+        }
+    }
+
+    // Returns false if a node could not be rebalanced completely
+    private boolean rebalance() {
+        LinkedHashSet<String> nodes = new LinkedHashSet<>(fromRing.getNodes());
+        nodes.addAll(toRing.getNodes());
+        LinkedHashMap<String, ClientMessageHandler> handlers = new LinkedHashMap<>();
+        for (String node : nodes) {
+            ClientMessageHandler handler = new ClientMessageHandler(ShardRing.hostOf(node), ShardRing.portOf(node));
+            // Definitions may contain the text protocol's separators
+            handler.setBinaryProtocol(true);
+            handlers.put(node, handler);
+        }
+        long scannedNo = 0;
+        long movedNo = 0;
+        boolean isComplete = true;
+        for (String node : nodes) {
+            long[] counts = new long[2];
+            try {
+                rebalanceNode(node, handlers, counts);
+            } catch (InvalidSocketException e) {
+                System.out.printf(ERROR_NODE, node, e.getMessage());
+                isComplete = false;
+            }
+            System.out.printf(NODE_REPORT, node, counts[0], counts[1], isDryRun ? TO_MOVE : MOVED);
+            scannedNo += counts[0];
+            movedNo += counts[1];
+        }
+        System.out.printf(SUMMARY, movedNo, scannedNo, isDryRun ? TO_MOVE : MOVED);
+        for (ClientMessageHandler handler : handlers.values()) {
+            handler.close();
+        }
+        return isComplete;
+    }
+
+    // Counts the scanned and the moved entries of the node
+    private void rebalanceNode(String node, Map<String, ClientMessageHandler> handlers, long[] counts)
+            throws InvalidSocketException {
+        ClientMessageHandler source = handlers.get(node);
+        String lastWord = "";
+        while (true) {
+            LinkedHashMap<String, List<String>> page = source.scan(lastWord, pageSize);
+            if (page.isEmpty()) {
+                return;
+            }
+            LinkedHashMap<String, LinkedHashMap<String, List<String>>> movesByNode = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> entry : page.entrySet()) {
+                String owner = toRing.nodeOf(entry.getKey());
+                if (!owner.equals(node)) {
+                    movesByNode.computeIfAbsent(owner, target -> new LinkedHashMap<>())
+                            .put(entry.getKey(), entry.getValue());
+                }
+                lastWord = entry.getKey();
+            }
+            counts[0] += page.size();
+            for (Map.Entry<String, LinkedHashMap<String, List<String>>> moves : movesByNode.entrySet()) {
+                if (!isDryRun) {
+                    move(moves.getValue(), source, node, handlers.get(moves.getKey()), moves.getKey());
+                }
+                counts[1] += moves.getValue().size();
+            }
+        }
+    }
+
+    // Adds the entries to the target, replacing what an interrupted run may have left there, then removes them from
+    // the source. The scan continues after the last word of the page, so removing it does not skip any entry.
+    private void move(LinkedHashMap<String, List<String>> entries, ClientMessageHandler source, String sourceNode,
+                      ClientMessageHandler target, String targetNode) throws InvalidSocketException {
+        ArrayList<String> response = target.bulkAdd(entries);
+        if (response.get(REQUEST_STATUS_INDEX).equals(ClientMessageHandler.REQUEST_FAILURE)) {
+            // Bulk adds are all or nothing, the words listed already exist on the target
+            LinkedHashMap<String, List<String>> existing = new LinkedHashMap<>();
+            for (String word : response.subList(REQUEST_STATUS_INDEX + 1, response.size())) {
+                existing.put(word, entries.get(word));
+            }
+            LinkedHashMap<String, List<String>> missing = new LinkedHashMap<>(entries);
+            missing.keySet().removeAll(existing.keySet());
+            checkSuccess(target.bulkUpdate(existing), sourceNode, targetNode);
+            if (!missing.isEmpty()) {
+                checkSuccess(target.bulkAdd(missing), sourceNode, targetNode);
+            }
+        } else {
+            checkSuccess(response, sourceNode, targetNode);
+        }
+        // Words removed from the source since the page was read fail the removal as a whole, they are left out
+        response = source.bulkRemove(new ArrayList<>(entries.keySet()));
+        if (response.get(REQUEST_STATUS_INDEX).equals(ClientMessageHandler.REQUEST_FAILURE)) {
+            ArrayList<String> remaining = new ArrayList<>(entries.keySet());
+            remaining.removeAll(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+            if (!remaining.isEmpty()) {
+                response = source.bulkRemove(remaining);
+            }
+        }
+        checkSuccess(response, sourceNode, targetNode);
+    }
+
+    private void checkSuccess(ArrayList<String> response, String sourceNode, String targetNode)
+            throws InvalidSocketException {
+        if (!response.get(REQUEST_STATUS_INDEX).equals(ClientMessageHandler.REQUEST_SUCCESS)) {
+            String message = String.format(ERROR_MOVE, sourceNode, targetNode, String.join(":", response));
+            throw new InvalidSocketException(message.trim());
+        }
+    }
+}
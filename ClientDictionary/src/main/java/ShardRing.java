@@ -0,0 +1,110 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Consistent hashing of words onto the nodes of a sharded deployment, each node named host:port. Every node is placed
+// on a ring of 64-bit hashes at many points (virtual nodes), and a word belongs to the node at the first point at or
+// after the hash of the word. Adding or removing a node then only moves the words next to its own points, about
+// 1/N of them, and spreads them evenly over the others. Words are folded the way the server compares them, so the
+// spellings of one word share a node. The hashes are fixed, every client and the Rebalancer agree on the owners.
+public class ShardRing {
+
+    private List<String> nodes;
+    private TreeMap<Long, String> ring = new TreeMap<>();
+
+    public final static int DEFAULT_VIRTUAL_NODES = 160;
+    public final static String NODE_SEPARATOR = ",";
+    private final static String PORT_SEPARATOR = ":";
+    private final static String VIRTUAL_NODE_SEPARATOR = "#";
+
+    // FNV-1a
+    private final static long HASH_OFFSET = 0xcbf29ce484222325L;
+    private final static long HASH_PRIME = 0x100000001b3L;
+
+    // Error Messages
+    private final static String ERROR_NO_NODES = "A shard ring needs at least one node.";
+    private final static String ERROR_NODE = "Nodes are given as host:port, not: ";
+
+    public ShardRing(List<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException(ERROR_NO_NODES);
+        }
+        for (String node : nodes) {
+            portOf(node); // Rejects malformed nodes up front
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // A point taken by two nodes goes to the later one, all clients still agree on it
+                ring.put(hash(node + VIRTUAL_NODE_SEPARATOR + i), node);
+            }
+        }
+    }
+
+    // host:port,host:port...
+    public static ShardRing parse(String nodeList) {
+        ArrayList<String> nodes = new ArrayList<>();
+        for (String node : nodeList.split(NODE_SEPARATOR)) {
+            if (!node.isBlank()) {
+                nodes.add(node.trim());
+            }
+        }
+        return new ShardRing(nodes);
+    }
+
+    public String nodeOf(String word) {
+        Map.Entry<Long, String> point = ring.ceilingEntry(hashWord(word));
+        return point != null ? point.getValue() : ring.firstEntry().getValue();
+    }
+
+    public List<String> getNodes() {return nodes;}
+
+    public static String hostOf(String node) {
+        return node.substring(0, node.lastIndexOf(PORT_SEPARATOR));
+    }
+
+    public static int portOf(String node) {
+        int separator = node.lastIndexOf(PORT_SEPARATOR);
+        try {
+            return Integer.parseInt(node.substring(separator + 1));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(ERROR_NODE + node);
+        }
+    }
+
+    private static long hash(String text) {
+        long hash = HASH_OFFSET;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * HASH_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // Hashes the folded characters of the word without building the folded string
+    private static long hashWord(String word) {
+        long hash = HASH_OFFSET;
+        for (int i = 0; i < word.length(); i++) {
+            char c = Character.toLowerCase(Character.toUpperCase(word.charAt(i)));
+            hash = (hash ^ (c >>> 8)) * HASH_PRIME;
+            hash = (hash ^ (c & 0xFF)) * HASH_PRIME;
+        }
+        return mix(hash);
+    }
+
+    // FNV leaves similar inputs close together, the finalizer of MurmurHash3 spreads them over the whole ring
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,295 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Sends requests to a sharded deployment: several servers each holding the words a ShardRing assigns to them. Requests
+// for one word go to its node, multi-queries and bulk requests are split by node and their responses merged back into
+// one, and prefix and search requests ask every node. The servers know nothing of each other, a bulk request is only
+// applied completely or not at all on each node, and search results are ranked by each node's own statistics and
+// interleaved. Responses are those of a single server otherwise, the status first.
+public class ShardRouter {
+
+    private ShardRing ring;
+    private LinkedHashMap<String, AsyncClient> clients = new LinkedHashMap<>(); // By node
+
+    private final int REQUEST_STATUS_INDEX = 0;
+    private final int DEFAULT_PREFIX_LIMIT = 10;
+    private final int DEFAULT_SEARCH_LIMIT = 10;
+    private final int MAX_SEARCH_LIMIT = 100; // Per node, as the server caps it
+
+    // Request Status
+    private final String REQUEST_SUCCESS = ClientMessageHandler.REQUEST_SUCCESS;
+    private final String REQUEST_FAILURE = ClientMessageHandler.REQUEST_FAILURE;
+    private final String REQUEST_ERROR = "Error";
+
+    public ShardRouter(ShardRing ring) {
+        this.ring = ring;
+        for (String node : ring.getNodes()) {
+            clients.put(node, new AsyncClient(ShardRing.hostOf(node), ShardRing.portOf(node)));
+        }
+    }
+
+    public CompletableFuture<ArrayList<String>> request(int actionCode, String inputText) {
+        String[] fields = inputText.split(ClientMessageHandler.STRING_SEPARATOR);
+        switch (actionCode) {
+            case ClientMessageHandler.MULTI_QUERY_CODE:
+                return multiQuery(fields);
+
+            case ClientMessageHandler.BULK_ADD_CODE:
+            case ClientMessageHandler.BULK_UPDATE_CODE:
+                // Request format -> actionCode:word:definitions:word:definitions...
+                LinkedHashMap<String, ArrayList<String>> entryFields = new LinkedHashMap<>();
+                for (int i = 0; i + 1 < fields.length; i += 2) {
+                    ArrayList<String> nodeFields = entryFields.computeIfAbsent(ring.nodeOf(fields[i]),
+                            node -> new ArrayList<>());
+                    nodeFields.add(fields[i]);
+                    nodeFields.add(fields[i + 1]);
+                }
+                return sendByNode(actionCode, entryFields);
+
+            case ClientMessageHandler.BULK_REMOVE_CODE:
+                return sendByNode(actionCode, groupByNode(Arrays.asList(fields)));
+
+            case ClientMessageHandler.PREFIX_CODE:
+                return prefix(inputText, fields);
+
+            case ClientMessageHandler.SEARCH_CODE:
+                return search(fields);
+
+            case ClientMessageHandler.SUBSCRIBE_CODE:
+            case ClientMessageHandler.SCAN_CODE:
+                // Only meaningful on a connection to one node
+                return CompletableFuture.completedFuture(new ArrayList<>(List.of(REQUEST_ERROR)));
+
+            default:
+                // Request format -> actionCode:word:(definition)
+                return clients.get(ring.nodeOf(fields[0])).request(actionCode, inputText);
+        }
+    }
+
+    // Bulk requests are applied completely or not at all on each node, a failure lists the offending words of all
+    public CompletableFuture<ArrayList<String>> requestBulk(int actionCode, Map<String, List<String>> entries) {
+        if (entries.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>(List.of(REQUEST_ERROR)));
+        }
+        LinkedHashMap<String, LinkedHashMap<String, List<String>>> entriesByNode = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : entries.entrySet()) {
+            entriesByNode.computeIfAbsent(ring.nodeOf(entry.getKey()), node -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+        }
+        ArrayList<CompletableFuture<ArrayList<String>>> futures = new ArrayList<>();
+        entriesByNode.forEach((node, nodeEntries) ->
+                futures.add(clients.get(node).requestBulk(actionCode, nodeEntries)));
+        return allOf(futures, this::mergeBulk);
+    }
+
+    private LinkedHashMap<String, ArrayList<String>> groupByNode(List<String> words) {
+        LinkedHashMap<String, ArrayList<String>> wordsByNode = new LinkedHashMap<>();
+        for (String word : words) {
+            wordsByNode.computeIfAbsent(ring.nodeOf(word), node -> new ArrayList<>()).add(word);
+        }
+        return wordsByNode;
+    }
+
+    private CompletableFuture<ArrayList<String>> sendByNode(int actionCode,
+                                                            LinkedHashMap<String, ArrayList<String>> fieldsByNode) {
+        ArrayList<CompletableFuture<ArrayList<String>>> futures = new ArrayList<>();
+        fieldsByNode.forEach((node, nodeFields) -> futures.add(clients.get(node)
+                .request(actionCode, String.join(ClientMessageHandler.STRING_SEPARATOR, nodeFields))));
+        return allOf(futures, this::mergeBulk);
+    }
+
+    // An error anywhere is the error, otherwise the failures' offending words are listed together
+    private ArrayList<String> mergeBulk(List<ArrayList<String>> responses) {
+        ArrayList<String> merged = new ArrayList<>(List.of(REQUEST_SUCCESS));
+        for (ArrayList<String> response : responses) {
+            String requestStatus = response.get(REQUEST_STATUS_INDEX);
+            if (requestStatus.equals(REQUEST_ERROR)) {
+                return response;
+            }
+            if (requestStatus.equals(REQUEST_FAILURE)) {
+                merged.set(REQUEST_STATUS_INDEX, REQUEST_FAILURE);
+                merged.addAll(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+            }
+        }
+        return merged;
+    }
+
+    // Asks each node for its words, then puts the answers back in the order the words were asked in
+    private CompletableFuture<ArrayList<String>> multiQuery(String[] words) {
+        LinkedHashMap<String, ArrayList<String>> wordsByNode = groupByNode(Arrays.asList(words));
+        ArrayList<String> nodes = new ArrayList<>(wordsByNode.keySet());
+        ArrayList<CompletableFuture<ArrayList<String>>> futures = new ArrayList<>();
+        for (String node : nodes) {
+            futures.add(clients.get(node).request(ClientMessageHandler.MULTI_QUERY_CODE,
+                    String.join(ClientMessageHandler.STRING_SEPARATOR, wordsByNode.get(node))));
+        }
+        return allOf(futures, responses -> {
+            // Response format -> Success:wordCount, then status:definitionCount:definitions for every word
+            LinkedHashMap<String, ArrayList<List<String>>> resultsByNode = new LinkedHashMap<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                ArrayList<String> response = responses.get(i);
+                if (!response.get(REQUEST_STATUS_INDEX).equals(REQUEST_SUCCESS)) {
+                    return response;
+                }
+                ArrayList<List<String>> results = new ArrayList<>();
+                int index = REQUEST_STATUS_INDEX + 2;
+                while (index < response.size()) {
+                    int definitionCount = Integer.parseInt(response.get(index + 1));
+                    results.add(response.subList(index, index + 2 + definitionCount));
+                    index += 2 + definitionCount;
+                }
+                resultsByNode.put(nodes.get(i), results);
+            }
+            ArrayList<String> merged = new ArrayList<>(List.of(REQUEST_SUCCESS, Integer.toString(words.length)));
+            LinkedHashMap<String, Integer> nextResult = new LinkedHashMap<>();
+            for (String word : words) {
+                String node = ring.nodeOf(word);
+                int resultIndex = nextResult.merge(node, 1, Integer::sum) - 1;
+                merged.addAll(resultsByNode.get(node).get(resultIndex));
+            }
+            return merged;
+        });
+    }
+
+    // Every node's first words starting with the prefix, merged in dictionary order
+    private CompletableFuture<ArrayList<String>> prefix(String inputText, String[] fields) {
+        int limit;
+        try {
+            limit = fields.length > 1 ? Integer.parseInt(fields[1]) : DEFAULT_PREFIX_LIMIT;
+        } catch (NumberFormatException e) {
+            limit = DEFAULT_PREFIX_LIMIT; // The nodes answer it with an error
+        }
+        int prefixLimit = limit;
+        return allOf(sendToAll(ClientMessageHandler.PREFIX_CODE, inputText), responses -> {
+            ArrayList<String> words = new ArrayList<>();
+            for (ArrayList<String> response : responses) {
+                String requestStatus = response.get(REQUEST_STATUS_INDEX);
+                if (requestStatus.equals(REQUEST_ERROR)) {
+                    return response;
+                }
+                if (requestStatus.equals(REQUEST_SUCCESS)) {
+                    words.addAll(response.subList(REQUEST_STATUS_INDEX + 1, response.size()));
+                }
+            }
+            if (words.isEmpty()) {
+                return new ArrayList<>(List.of(REQUEST_FAILURE));
+            }
+            words.sort(ShardRouter::compareFolded);
+            ArrayList<String> merged = new ArrayList<>(List.of(REQUEST_SUCCESS));
+            merged.addAll(words.subList(0, Math.min(prefixLimit, words.size())));
+            return merged;
+        });
+    }
+
+    // Each node ranks its own matches, the merged page takes the best of every node in turn. The total is exact.
+    private CompletableFuture<ArrayList<String>> search(String[] fields) {
+        int offset;
+        int limit;
+        try {
+            offset = fields.length > 1 ? Integer.parseInt(fields[1]) : 0;
+            limit = fields.length > 2 ? Integer.parseInt(fields[2]) : DEFAULT_SEARCH_LIMIT;
+        } catch (NumberFormatException e) {
+            return CompletableFuture.completedFuture(new ArrayList<>(List.of(REQUEST_ERROR)));
+        }
+        int nodeLimit = (int) Math.min((long) offset + limit, MAX_SEARCH_LIMIT);
+        if (offset < 0 || limit < 1 || nodeLimit < 1) {
+            return CompletableFuture.completedFuture(new ArrayList<>(List.of(REQUEST_ERROR)));
+        }
+        // Request format -> actionCode:terms:offset:limit
+        String nodeRequest = String.join(ClientMessageHandler.STRING_SEPARATOR, fields[0], "0",
+                Integer.toString(nodeLimit));
+        return allOf(sendToAll(ClientMessageHandler.SEARCH_CODE, nodeRequest), responses -> {
+            // Response format -> Success:totalHits:word:word...
+            long totalHits = 0;
+            ArrayList<List<String>> pages = new ArrayList<>();
+            for (ArrayList<String> response : responses) {
+                String requestStatus = response.get(REQUEST_STATUS_INDEX);
+                if (requestStatus.equals(REQUEST_ERROR)) {
+                    return response;
+                }
+                if (requestStatus.equals(REQUEST_SUCCESS)) {
+                    totalHits += Long.parseLong(response.get(REQUEST_STATUS_INDEX + 1));
+                    pages.add(response.subList(REQUEST_STATUS_INDEX + 2, response.size()));
+                }
+            }
+            if (totalHits == 0) {
+                return new ArrayList<>(List.of(REQUEST_FAILURE));
+            }
+            ArrayList<String> interleaved = new ArrayList<>();
+            for (int rank = 0; rank < nodeLimit; rank++) {
+                for (List<String> page : pages) {
+                    if (rank < page.size()) {
+                        interleaved.add(page.get(rank));
+                    }
+                }
+            }
+            ArrayList<String> merged = new ArrayList<>(List.of(REQUEST_SUCCESS, Long.toString(totalHits)));
+            merged.addAll(interleaved.subList(Math.min(offset, interleaved.size()),
+                    Math.min(offset + limit, interleaved.size())));
+            return merged;
+        });
+    }
+
+    private ArrayList<CompletableFuture<ArrayList<String>>> sendToAll(int actionCode, String inputText) {
+        ArrayList<CompletableFuture<ArrayList<String>>> futures = new ArrayList<>();
+        for (AsyncClient client : clients.values()) {
+            futures.add(client.request(actionCode, inputText));
+        }
+        return futures;
+    }
+
+    // Completes with the merged responses once every node has answered, or fails with the first node that could not
+    private CompletableFuture<ArrayList<String>> allOf(List<CompletableFuture<ArrayList<String>>> futures,
+                                                       Function<List<ArrayList<String>>, ArrayList<String>> merge) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            ArrayList<ArrayList<String>> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<ArrayList<String>> future : futures) {
+                responses.add(future.join());
+            }
+            return merge.apply(responses);
+        });
+    }
+
+    // The order of the server's prefix index, characters compared folded
+    private static int compareFolded(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        for (int i = 0; i < length; i++) {
+            char firstChar = Character.toLowerCase(Character.toUpperCase(first.charAt(i)));
+            char secondChar = Character.toLowerCase(Character.toUpperCase(second.charAt(i)));
+            if (firstChar != secondChar) {
+                return firstChar - secondChar;
+            }
+        }
+        return first.length() - second.length();
+    }
+
+    public String nodeOf(String word) {
+        return ring.nodeOf(word);
+    }
+
+    public ShardRing getRing() {return ring;}
+
+    public void setBinaryProtocol(boolean useBinaryProtocol) {
+        for (AsyncClient client : clients.values()) {
+            client.setBinaryProtocol(useBinaryProtocol);
+        }
+    }
+
+    // Each node's client keeps its own near cache, kept coherent by that node's invalidations
+    public void setNearCache(int maxEntries, long ttlMs) {
+        for (AsyncClient client : clients.values()) {
+            client.setNearCache(maxEntries, ttlMs);
+        }
+    }
+
+    public void close() {
+        for (AsyncClient client : clients.values()) {
+            client.close();
+        }
+    }
+}
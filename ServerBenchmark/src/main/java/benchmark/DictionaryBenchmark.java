@@ -0,0 +1,111 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.ServerClasses.*;
+
+// Single-threaded cost of each dictionary operation, at increasing dictionary sizes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DictionaryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"skiplist", "arena"})
+    public String storage;
+
+    // memory and flushed are flushed every 100ms, flushed writes wait for it
+    @Param({"logged"})
+    public String durability;
+
+    private Path directory;
+    private Object dictionary;
+    private String[] words;
+    private String[] definitions;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void openDictionary() throws Throwable {
+        directory = Files.createTempDirectory("dictionary-benchmark");
+        dictionary = DictionaryFixture.openDictionary(DictionaryFixture.writeDictionaryFile(directory, size),
+                (Object) NEW_SERVER_METRICS.invokeExact(), storage, durability);
+        words = DictionaryFixture.words(size);
+        definitions = DictionaryFixture.definitions(size);
+    }
+
+    // Compaction keeps the operation log from growing across iterations
+    @TearDown(Level.Iteration)
+    public void compact() throws Throwable {
+        SYNC_DICTIONARY.invokeExact(dictionary);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDictionary() throws Throwable {
+        CLOSE.invokeExact(dictionary);
+        DictionaryFixture.deleteDirectory(directory);
+    }
+
+    // Words are visited in a fixed stride, so lookups do not all hit the same part of the map
+    private String nextWord() {
+        next = (next + 7919) % size;
+        return words[next];
+    }
+
+    @Benchmark
+    public Object query() throws Throwable {
+        return (Object) QUERY.invokeExact(dictionary, (Object) nextWord());
+    }
+
+    @Benchmark
+    public Object queryMissing() {
+        try {
+            return (Object) QUERY.invokeExact(dictionary, (Object) "missing");
+        } catch (Throwable e) {
+            return e; // A missing word is reported with an exception, its cost is part of the measurement
+        }
+    }
+
+    // Ten completions of a prefix shared by a tenth of the words
+    @Benchmark
+    public Object complete() throws Throwable {
+        return (Object) COMPLETE.invokeExact(dictionary, (Object) "word1", 10);
+    }
+
+    // Words within two edits of a misspelling, as a query miss is answered
+    @Benchmark
+    public Object suggest() throws Throwable {
+        return (Object) SUGGEST.invokeExact(dictionary, (Object) "wrod1234", 2, 5);
+    }
+
+    // A term found in one definition, and a page of a term found in all of them
+    @Benchmark
+    public Object searchRare() throws Throwable {
+        return (Object) SEARCH.invokeExact(dictionary, (Object) "1234", 0, 10);
+    }
+
+    @Benchmark
+    public Object searchCommon() throws Throwable {
+        return (Object) SEARCH.invokeExact(dictionary, (Object) "real", 0, 10);
+    }
+
+    @Benchmark
+    public void update() throws Throwable {
+        UPDATE.invokeExact(dictionary, (Object) nextWord(), (Object) definitions);
+    }
+
+    // Adding and removing the same word keeps the dictionary at its size
+    @Benchmark
+    public void addRemove() throws Throwable {
+        ADD.invokeExact(dictionary, (Object) "benchmark", (Object) definitions);
+        REMOVE.invokeExact(dictionary, (Object) "benchmark");
+    }
+}
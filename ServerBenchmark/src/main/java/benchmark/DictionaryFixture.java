@@ -0,0 +1,100 @@
+package benchmark;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static benchmark.ServerClasses.*;
+
+// Dictionary files and open dictionaries for the benchmarks, in a temporary directory removed afterwards
+final class DictionaryFixture {
+
+    static final String DICTIONARY_FILE = "dictionary.json";
+    private static final int DEFINITIONS_PER_WORD = 2;
+    private static final long FLUSH_INTERVAL_MS = 100;
+
+    private DictionaryFixture() {}
+
+    static String word(int index) {
+        return "word" + index;
+    }
+
+    static String[] words(int size) {
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = word(i);
+        }
+        return words;
+    }
+
+    static String[] definitions(int index) {
+        String[] definitions = new String[DEFINITIONS_PER_WORD];
+        for (int i = 0; i < DEFINITIONS_PER_WORD; i++) {
+            definitions[i] = "definition " + i + " of word number " + index + ", roughly as long as a real one";
+        }
+        return definitions;
+    }
+
+    @SuppressWarnings("unchecked")
+    static JSONObject dictionaryJSON(int size) {
+        JSONObject jsonObject = new JSONObject();
+        for (int i = 0; i < size; i++) {
+            JSONArray definitions = new JSONArray();
+            for (String definition : definitions(i)) {
+                definitions.add(definition);
+            }
+            jsonObject.put(word(i), definitions);
+        }
+        return jsonObject;
+    }
+
+    // Written with json-simple rather than the IOHandler code being measured
+    static Path writeDictionaryFile(Path directory, int size) throws IOException {
+        Path file = directory.resolve(DICTIONARY_FILE);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            dictionaryJSON(size).writeJSONString(writer);
+        }
+        return file;
+    }
+
+    // Mutations are logged without fsync, so the numbers measure the dictionary rather than the disk
+    static Object openDictionary(Path file, Object serverMetrics, String storage) throws Throwable {
+        return openDictionary(file, serverMetrics, storage, "logged");
+    }
+
+    // Below the logged level writes are persisted by a flusher, started as the server starts it
+    static Object openDictionary(Path file, Object serverMetrics, String storage, String durability) throws Throwable {
+        Object dictionary = newDictionary(file, serverMetrics, storage, 1, durability);
+        PARSE_DICTIONARY.invokeExact(dictionary);
+        OPEN_LOG.invokeExact(dictionary);
+        if (!durability.equals("logged")) {
+            Object flusher = (Object) NEW_DICTIONARY_FLUSHER.invokeExact(dictionary, FLUSH_INTERVAL_MS);
+            START_THREAD.invokeExact(flusher);
+        }
+        return dictionary;
+    }
+
+    // Not parsed yet
+    static Object newDictionary(Path file, Object serverMetrics, String storage, int loadThreads, String durability)
+            throws Throwable {
+        Object operationLog = (Object) NEW_OPERATION_LOG.invokeExact((Object) file.toString(), syncPolicy("NONE"), 0L,
+                serverMetrics);
+        return (Object) NEW_DICTIONARY.invokeExact((Object) file.toString(), operationLog, serverMetrics,
+                storageEngine(storage.toUpperCase()), loadThreads, durability(durability.toUpperCase()));
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
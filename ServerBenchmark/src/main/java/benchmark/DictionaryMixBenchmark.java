@@ -0,0 +1,94 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.ServerClasses.*;
+
+// Concurrent readers and writers on one dictionary. Each group runs its threads in the given ratio,
+// add -tg to scale them, e.g. -tg 38,2 for 38 readers against 2 writers.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class DictionaryMixBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"skiplist", "arena"})
+    public String storage;
+
+    private Path directory;
+    private Object dictionary;
+    private String[] words;
+    private String[] definitions;
+
+    @Setup(Level.Trial)
+    public void openDictionary() throws Throwable {
+        directory = Files.createTempDirectory("dictionary-benchmark");
+        dictionary = DictionaryFixture.openDictionary(DictionaryFixture.writeDictionaryFile(directory, size),
+                (Object) NEW_SERVER_METRICS.invokeExact(), storage);
+        words = DictionaryFixture.words(size);
+        definitions = DictionaryFixture.definitions(size);
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws Throwable {
+        SYNC_DICTIONARY.invokeExact(dictionary);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDictionary() throws Throwable {
+        CLOSE.invokeExact(dictionary);
+        DictionaryFixture.deleteDirectory(directory);
+    }
+
+    private String randomWord() {
+        return words[ThreadLocalRandom.current().nextInt(size)];
+    }
+
+    private Object query() throws Throwable {
+        return (Object) QUERY.invokeExact(dictionary, (Object) randomWord());
+    }
+
+    private void update() throws Throwable {
+        UPDATE.invokeExact(dictionary, (Object) randomWord(), (Object) definitions);
+    }
+
+    // 95% reads
+    @Benchmark
+    @Group("read95")
+    @GroupThreads(19)
+    public Object read95Query() throws Throwable {
+        return query();
+    }
+
+    @Benchmark
+    @Group("read95")
+    @GroupThreads(1)
+    public void read95Update() throws Throwable {
+        update();
+    }
+
+    // 50% reads
+    @Benchmark
+    @Group("read50")
+    @GroupThreads(1)
+    public Object read50Query() throws Throwable {
+        return query();
+    }
+
+    @Benchmark
+    @Group("read50")
+    @GroupThreads(1)
+    public void read50Update() throws Throwable {
+        update();
+    }
+}
@@ -0,0 +1,73 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+import static benchmark.ServerClasses.*;
+
+// Loading and saving whole dictionary files, the bytes per second follow from the file size printed at setup.
+// Both directions stream, so the time grows with the size and the heap they need does not.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IOHandlerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path dictionaryFile;
+    private String outputFile;
+    private Object ioHandler;
+    private Object snapshot;
+    private int entryCount;
+
+    @Setup(Level.Trial)
+    public void writeDictionary() throws Throwable {
+        directory = Files.createTempDirectory("dictionary-benchmark");
+        dictionaryFile = DictionaryFixture.writeDictionaryFile(directory, size);
+        outputFile = directory.resolve("output.json").toString();
+        ioHandler = (Object) NEW_IO_HANDLER.invokeExact();
+        Object store = (Object) CREATE_STORE.invokeExact(storageEngine("SKIPLIST"));
+        for (int i = 0; i < size; i++) {
+            List<String> definitions = new ArrayList<>(Arrays.asList(DictionaryFixture.definitions(i)));
+            Object previous = (Object) STORE_PUT.invokeExact(store, (Object) DictionaryFixture.word(i),
+                    (Object) definitions);
+        }
+        snapshot = (Object) STORE_SNAPSHOT.invokeExact(store);
+        System.out.println("\nDictionary file size: " + Files.size(dictionaryFile) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDictionary() throws Throwable {
+        DictionaryFixture.deleteDirectory(directory);
+    }
+
+    // Entries are only counted, so this is the cost of parsing alone, on one thread
+    @Benchmark
+    public int readJSONEntries() throws Throwable {
+        entryCount = 0;
+        BiConsumer<String, List<String>> counter = (word, definitions) -> entryCount++;
+        LongConsumer progress = bytesRead -> {};
+        READ_JSON_ENTRIES.invokeExact(ioHandler, (Object) dictionaryFile.toString(), (Object) counter,
+                (Object) progress, (Object) null);
+        return entryCount;
+    }
+
+    // Used by compaction, streams a store snapshot and waits for fsync
+    @Benchmark
+    public void writeJSONEntriesAtomically() throws Throwable {
+        WRITE_JSON_ENTRIES_ATOMICALLY.invokeExact(ioHandler, (Object) outputFile, snapshot);
+    }
+}
@@ -0,0 +1,50 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.ServerClasses.*;
+
+// Loading a dictionary file into a store and building its indexes, as a restart does. One load thread is the
+// sequential path, the speed-up of the others is measured against it and is bounded by the cores of the machine.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"skiplist", "arena"})
+    public String storage;
+
+    @Param({"1", "2", "4", "8"})
+    public int loadThreads;
+
+    private Path directory;
+    private Object dictionary;
+
+    @Setup(Level.Trial)
+    public void writeDictionary() throws Throwable {
+        directory = Files.createTempDirectory("dictionary-benchmark");
+        dictionary = DictionaryFixture.newDictionary(DictionaryFixture.writeDictionaryFile(directory, size),
+                (Object) NEW_SERVER_METRICS.invokeExact(), storage, loadThreads, "logged");
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDictionary() throws Throwable {
+        DictionaryFixture.deleteDirectory(directory);
+    }
+
+    // Every load replaces the previous store and indexes, the same file is parsed each time
+    @Benchmark
+    public void parseDictionary() throws Throwable {
+        PARSE_DICTIONARY.invokeExact(dictionary);
+    }
+}
@@ -0,0 +1,132 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.ServerClasses.*;
+
+// Cost of turning a request into a response on top of the dictionary operation itself, for both protocols.
+// The malformed requests never reach the dictionary, so they measure parsing and encoding alone. With a response
+// cache the queries are answered from it, every update drops the cached response of its word.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBenchmark {
+
+    private final int SIZE = 100000;
+    private final int QUERY_CODE = 1;
+    private final int UPDATE_CODE = 4;
+    private final int INVALID_CODE = 99;
+
+    @Param({"0", "67108864"})
+    public long responseCache;
+
+    private Path directory;
+    private Object dictionary;
+    private Object requestProcessor;
+    private Object binaryProtocol;
+    private String word;
+    private String textQuery;
+    private String textUpdate;
+    private String textInvalid;
+    private byte[] binaryQuery;
+    private byte[] binaryUpdate;
+    private byte[] binaryInvalid;
+
+    @Setup(Level.Trial)
+    public void openDictionary() throws Throwable {
+        directory = Files.createTempDirectory("dictionary-benchmark");
+        Object serverMetrics = (Object) NEW_SERVER_METRICS.invokeExact();
+        dictionary = DictionaryFixture.openDictionary(DictionaryFixture.writeDictionaryFile(directory, SIZE),
+                serverMetrics, "skiplist");
+        Object cache = null;
+        if (responseCache > 0) {
+            cache = (Object) NEW_RESPONSE_CACHE.invokeExact(responseCache);
+            ADD_LISTENER.invokeExact(dictionary, cache);
+        }
+        requestProcessor = (Object) NEW_REQUEST_PROCESSOR.invokeExact(dictionary, serverMetrics, cache);
+        binaryProtocol = (Object) NEW_BINARY_PROTOCOL.invokeExact(requestProcessor);
+        word = DictionaryFixture.word(SIZE / 2);
+        String[] definitions = DictionaryFixture.definitions(SIZE / 2);
+        textQuery = QUERY_CODE + ":" + word;
+        textUpdate = UPDATE_CODE + ":" + word + ":" + String.join("*", definitions);
+        textInvalid = INVALID_CODE + ":" + word;
+        binaryQuery = frame(QUERY_CODE, word, new String[0]);
+        binaryUpdate = frame(UPDATE_CODE, word, definitions);
+        binaryInvalid = frame(INVALID_CODE, word, new String[0]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws Throwable {
+        SYNC_DICTIONARY.invokeExact(dictionary);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeDictionary() throws Throwable {
+        CLOSE.invokeExact(dictionary);
+        DictionaryFixture.deleteDirectory(directory);
+    }
+
+    // The same request frame the client sends, without its length prefix
+    private byte[] frame(int actionCode, String word, String[] definitions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(bytes);
+        frame.writeByte(actionCode);
+        byte[] wordBytes = word.getBytes(StandardCharsets.UTF_8);
+        frame.writeShort(wordBytes.length);
+        frame.write(wordBytes);
+        frame.writeInt(definitions.length);
+        for (String definition : definitions) {
+            byte[] definitionBytes = definition.getBytes(StandardCharsets.UTF_8);
+            frame.writeInt(definitionBytes.length);
+            frame.write(definitionBytes);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object directQuery() throws Throwable {
+        return (Object) QUERY.invokeExact(dictionary, (Object) word);
+    }
+
+    @Benchmark
+    public Object textQuery() throws Throwable {
+        return (Object) PROCESS_TEXT.invokeExact(requestProcessor, (Object) textQuery);
+    }
+
+    @Benchmark
+    public Object binaryQuery() throws Throwable {
+        return (Object) PROCESS_BINARY.invokeExact(binaryProtocol, (Object) ByteBuffer.wrap(binaryQuery));
+    }
+
+    @Benchmark
+    public Object textUpdate() throws Throwable {
+        return (Object) PROCESS_TEXT.invokeExact(requestProcessor, (Object) textUpdate);
+    }
+
+    @Benchmark
+    public Object binaryUpdate() throws Throwable {
+        return (Object) PROCESS_BINARY.invokeExact(binaryProtocol, (Object) ByteBuffer.wrap(binaryUpdate));
+    }
+
+    @Benchmark
+    public Object textInvalid() throws Throwable {
+        return (Object) PROCESS_TEXT.invokeExact(requestProcessor, (Object) textInvalid);
+    }
+
+    @Benchmark
+    public Object binaryInvalid() throws Throwable {
+        return (Object) PROCESS_BINARY.invokeExact(binaryProtocol, (Object) ByteBuffer.wrap(binaryInvalid));
+    }
+}
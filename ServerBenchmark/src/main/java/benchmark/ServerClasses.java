@@ -0,0 +1,140 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+
+// The server classes live in the unnamed package, which packaged code cannot import and JMH does not accept for
+// benchmarks. They are reached through static final method handles instead, which the JIT inlines like direct calls.
+final class ServerClasses {
+
+    static final MethodHandle NEW_SERVER_METRICS;
+    static final MethodHandle NEW_OPERATION_LOG;
+    static final MethodHandle NEW_DICTIONARY;
+    static final MethodHandle PARSE_DICTIONARY;
+    static final MethodHandle OPEN_LOG;
+    static final MethodHandle SYNC_DICTIONARY;
+    static final MethodHandle CLOSE;
+    static final MethodHandle QUERY;
+    static final MethodHandle COMPLETE;
+    static final MethodHandle SUGGEST;
+    static final MethodHandle SEARCH;
+    static final MethodHandle ADD;
+    static final MethodHandle UPDATE;
+    static final MethodHandle REMOVE;
+    static final MethodHandle NEW_DICTIONARY_FLUSHER;
+    static final MethodHandle START_THREAD;
+
+    static final MethodHandle CREATE_STORE;
+    static final MethodHandle STORE_PUT;
+    static final MethodHandle STORE_SNAPSHOT;
+
+    static final MethodHandle NEW_IO_HANDLER;
+    static final MethodHandle READ_JSON_ENTRIES;
+    static final MethodHandle WRITE_JSON_ENTRIES_ATOMICALLY;
+
+    static final MethodHandle NEW_RESPONSE_CACHE;
+    static final MethodHandle ADD_LISTENER;
+    static final MethodHandle NEW_REQUEST_PROCESSOR;
+    static final MethodHandle PROCESS_TEXT;
+    static final MethodHandle NEW_BINARY_PROTOCOL;
+    static final MethodHandle PROCESS_BINARY;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> dictionary = Class.forName("Dictionary");
+            Class<?> operationLog = Class.forName("OperationLog");
+            Class<?> syncPolicy = Class.forName("OperationLog$SyncPolicy");
+            Class<?> ioHandler = Class.forName("IOHandler");
+            Class<?> requestProcessor = Class.forName("RequestProcessor");
+            Class<?> binaryProtocol = Class.forName("BinaryProtocol");
+            Class<?> responseCache = Class.forName("ResponseCache");
+            Class<?> serverMetrics = Class.forName("ServerMetrics");
+            Class<?> storageEngine = Class.forName("StorageEngine");
+            Class<?> durability = Class.forName("Durability");
+            Class<?> dictionaryStore = Class.forName("DictionaryStore");
+            Class<?> snapshot = Class.forName("DictionaryStore$Snapshot");
+
+            NEW_SERVER_METRICS = erase(lookup.findConstructor(serverMetrics, MethodType.methodType(void.class)));
+            NEW_OPERATION_LOG = erase(lookup.findConstructor(operationLog,
+                    MethodType.methodType(void.class, String.class, syncPolicy, long.class, serverMetrics)));
+            NEW_DICTIONARY = erase(lookup.findConstructor(dictionary,
+                    MethodType.methodType(void.class, String.class, operationLog, serverMetrics, storageEngine,
+                            int.class, durability)));
+            PARSE_DICTIONARY = erase(lookup.findVirtual(dictionary, "parseDictionary", MethodType.methodType(void.class)));
+            OPEN_LOG = erase(lookup.findVirtual(dictionary, "openLog", MethodType.methodType(void.class)));
+            SYNC_DICTIONARY = erase(lookup.findVirtual(dictionary, "syncDictionary", MethodType.methodType(void.class)));
+            CLOSE = erase(lookup.findVirtual(dictionary, "close", MethodType.methodType(void.class)));
+            QUERY = erase(lookup.findVirtual(dictionary, "query",
+                    MethodType.methodType(java.util.ArrayList.class, String.class)));
+            COMPLETE = erase(lookup.findVirtual(dictionary, "complete",
+                    MethodType.methodType(java.util.ArrayList.class, String.class, int.class)));
+            SUGGEST = erase(lookup.findVirtual(dictionary, "suggest",
+                    MethodType.methodType(java.util.ArrayList.class, String.class, int.class, int.class)));
+            SEARCH = erase(lookup.findVirtual(dictionary, "search", MethodType.methodType(
+                    Class.forName("DefinitionIndex$SearchResult"), String.class, int.class, int.class)));
+            ADD = erase(lookup.findVirtual(dictionary, "add",
+                    MethodType.methodType(void.class, String.class, String[].class)));
+            UPDATE = erase(lookup.findVirtual(dictionary, "update",
+                    MethodType.methodType(void.class, String.class, String[].class)));
+            REMOVE = erase(lookup.findVirtual(dictionary, "remove", MethodType.methodType(void.class, String.class)));
+            NEW_DICTIONARY_FLUSHER = erase(lookup.findConstructor(Class.forName("DictionaryFlusher"),
+                    MethodType.methodType(void.class, dictionary, long.class)));
+            START_THREAD = erase(lookup.findVirtual(Thread.class, "start", MethodType.methodType(void.class)));
+
+            CREATE_STORE = erase(lookup.findVirtual(storageEngine, "createStore",
+                    MethodType.methodType(dictionaryStore)));
+            STORE_PUT = erase(lookup.findVirtual(dictionaryStore, "put",
+                    MethodType.methodType(java.util.List.class, String.class, java.util.List.class)));
+            STORE_SNAPSHOT = erase(lookup.findVirtual(dictionaryStore, "snapshot", MethodType.methodType(snapshot)));
+
+            NEW_IO_HANDLER = erase(lookup.findConstructor(ioHandler, MethodType.methodType(void.class)));
+            READ_JSON_ENTRIES = erase(lookup.findVirtual(ioHandler, "readJSONEntries", MethodType.methodType(void.class,
+                    String.class, java.util.function.BiConsumer.class, java.util.function.LongConsumer.class,
+                    java.util.concurrent.ForkJoinPool.class)));
+            WRITE_JSON_ENTRIES_ATOMICALLY = erase(lookup.findVirtual(ioHandler, "writeJSONEntriesAtomically",
+                    MethodType.methodType(void.class, String.class, snapshot)));
+
+            NEW_RESPONSE_CACHE = erase(lookup.findConstructor(responseCache,
+                    MethodType.methodType(void.class, long.class)));
+            ADD_LISTENER = erase(lookup.findVirtual(dictionary, "addListener",
+                    MethodType.methodType(void.class, Class.forName("DictionaryListener"))));
+            NEW_REQUEST_PROCESSOR = erase(lookup.findConstructor(requestProcessor,
+                    MethodType.methodType(void.class, dictionary, serverMetrics, responseCache)));
+            PROCESS_TEXT = erase(lookup.findVirtual(requestProcessor, "process",
+                    MethodType.methodType(byte[].class, String.class)));
+            NEW_BINARY_PROTOCOL = erase(lookup.findConstructor(binaryProtocol,
+                    MethodType.methodType(void.class, requestProcessor)));
+            PROCESS_BINARY = erase(lookup.findVirtual(binaryProtocol, "process",
+                    MethodType.methodType(byte[].class, ByteBuffer.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private ServerClasses() {}
+
+    static Object syncPolicy(String name) throws ClassNotFoundException {
+        return enumConstant(Class.forName("OperationLog$SyncPolicy"), name);
+    }
+
+    static Object storageEngine(String name) throws ClassNotFoundException {
+        return enumConstant(Class.forName("StorageEngine"), name);
+    }
+
+    static Object durability(String name) throws ClassNotFoundException {
+        return enumConstant(Class.forName("Durability"), name);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumConstant(Class<?> enumClass, String name) {
+        return Enum.valueOf((Class) enumClass, name);
+    }
+
+    // Server types become Object so call sites compile here, and invokeExact stays exact
+    private static MethodHandle erase(MethodHandle handle) {
+        return handle.asType(handle.type().erase());
+    }
+}
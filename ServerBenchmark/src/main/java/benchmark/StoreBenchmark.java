@@ -0,0 +1,69 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static benchmark.ServerClasses.*;
+
+// Filling each storage engine with a whole dictionary, as parsing the dictionary file does. The heap the filled store
+// retains is printed after every iteration, measured after a full collection.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"skiplist", "arena"})
+    public String storage;
+
+    private Object storageEngine;
+    private Object store; // The last one filled
+    private long baselineBytes;
+
+    @Setup(Level.Trial)
+    public void selectEngine() throws Throwable {
+        storageEngine = storageEngine(storage.toUpperCase());
+    }
+
+    @Setup(Level.Iteration)
+    public void measureBaseline() {
+        store = null;
+        baselineBytes = usedHeap();
+    }
+
+    // Words and definitions are new strings for every entry, like the ones the JSON parser produces
+    @Benchmark
+    public Object load() throws Throwable {
+        Object filled = (Object) CREATE_STORE.invokeExact(storageEngine);
+        for (int i = 0; i < size; i++) {
+            List<String> definitions = new ArrayList<>(Arrays.asList(DictionaryFixture.definitions(i)));
+            Object previous = (Object) STORE_PUT.invokeExact(filled, (Object) DictionaryFixture.word(i),
+                    (Object) definitions);
+        }
+        store = filled;
+        return filled;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printFootprint() {
+        long retainedBytes = usedHeap() - baselineBytes;
+        System.out.println("\nRetained heap: " + retainedBytes + " bytes, " + retainedBytes / size + " bytes per word");
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
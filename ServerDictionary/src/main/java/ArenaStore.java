@@ -0,0 +1,402 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Keeps every entry as one UTF-8 record in large byte array arenas, found through an open-addressing table of
+// case-folded hashes and record addresses. An entry costs its bytes, a few length bytes and two table longs, instead
+// of a map node, a String and a list of Strings with their headers.
+//
+// Record => keyLength key definitionCount (definitionLength definition)*, lengths are unsigned LEB128 varints.
+// Records are never modified: a put appends a new record and repoints the table slot, and the arenas are rewritten
+// once replaced records take up more space than the live ones. Readers take no lock, slots are published with release
+// writes and a table is swapped together with the arenas its addresses point into.
+public class ArenaStore implements DictionaryStore {
+
+    // A table and the arenas its addresses point into
+    private static class State {
+        final long[] hashes;
+        final long[] addresses; // EMPTY, REMOVED or arena << 32 | offset
+        final byte[][] arenas;
+
+        State(long[] hashes, long[] addresses, byte[][] arenas) {
+            this.hashes = hashes;
+            this.addresses = addresses;
+            this.arenas = arenas;
+        }
+    }
+
+    private volatile State state;
+
+    // Only used by the writers
+    private ArenaWriter arenaWriter = new ArenaWriter();
+    private int size;
+    private int removedSlots;
+    private long deadBytes; // Taken up by replaced and removed records
+
+    private final static long EMPTY = -1;
+    private final static long REMOVED = -2;
+    private final static long NOT_FOUND = -1;
+    private final static long RETRY = -2; // The address is in an arena added after the state was read
+    private final static int INITIAL_CAPACITY = 1024; // Table slots, always a power of two
+    private final static double MAX_LOAD = 0.6;       // Of live and removed slots
+    private final static int MIN_ARENA_SIZE = 1 << 16;
+    private final static int MAX_ARENA_SIZE = 1 << 24;
+    private final static long MIN_DEAD_BYTES_BEFORE_COMPACTION = 1 << 24;
+    private final static VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    public ArenaStore() {
+        state = new State(new long[INITIAL_CAPACITY], emptyAddresses(INITIAL_CAPACITY), arenaWriter.arenas);
+    }
+
+    // Appends records to the last arena, starting a new one when it is full
+    private static class ArenaWriter {
+        byte[][] arenas = new byte[0][];
+        int position;
+        long arenaBytes;
+
+        long append(byte[] record, int offset, int length) {
+            if (arenas.length == 0 || position + length > arenas[arenas.length - 1].length) {
+                // Arenas double in size up to MAX_ARENA_SIZE, so that small dictionaries stay small
+                int arenaSize = (int) Math.max(length, Math.min(MAX_ARENA_SIZE, Math.max(MIN_ARENA_SIZE, arenaBytes)));
+                arenas = Arrays.copyOf(arenas, arenas.length + 1);
+                arenas[arenas.length - 1] = new byte[arenaSize];
+                arenaBytes += arenaSize;
+                position = 0;
+            }
+            System.arraycopy(record, offset, arenas[arenas.length - 1], position, length);
+            long address = (long) (arenas.length - 1) << 32 | position;
+            position += length;
+            return address;
+        }
+    }
+
+    // Reads the fields of a record in order
+    private static class RecordReader {
+        final byte[] arena;
+        int position;
+
+        RecordReader(byte[][] arenas, long address) {
+            this.arena = arenas[(int) (address >>> 32)];
+            this.position = (int) address;
+        }
+
+        int readLength() {
+            int length = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = arena[position++];
+                length |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return length;
+        }
+
+        String readString() {
+            int length = readLength();
+            String string = new String(arena, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return string;
+        }
+
+        void skipString() {
+            int length = readLength();
+            position += length;
+        }
+
+        ArrayList<String> readDefinitions() {
+            int count = readLength();
+            ArrayList<String> definitions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                definitions.add(readString());
+            }
+            return definitions;
+        }
+    }
+
+    @Override
+    public List<String> get(String word) {
+        long hash = hash(word);
+        while (true) {
+            State current = state;
+            long address = find(current, word, hash);
+            if (address == NOT_FOUND) {
+                return null;
+            }
+            if (address != RETRY) {
+                RecordReader reader = new RecordReader(current.arenas, address);
+                reader.skipString();
+                return reader.readDefinitions();
+            }
+        }
+    }
+
+    @Override
+    public boolean containsKey(String word) {
+        return storedWord(word) != null;
+    }
+
+    @Override
+    public String storedWord(String word) {
+        long hash = hash(word);
+        while (true) {
+            State current = state;
+            long address = find(current, word, hash);
+            if (address == NOT_FOUND) {
+                return null;
+            }
+            if (address != RETRY) {
+                return new RecordReader(current.arenas, address).readString();
+            }
+        }
+    }
+
+    // Address of the word's record, NOT_FOUND, or RETRY if the state has to be read again
+    private long find(State current, String word, long hash) {
+        int slot = findSlot(current, word, hash);
+        if (slot < 0) {
+            return slot == -1 ? NOT_FOUND : RETRY;
+        }
+        return (long) SLOT.getAcquire(current.addresses, slot);
+    }
+
+    // Slot of the word in the table, -1 if it is not there, -2 if the state has to be read again
+    private int findSlot(State current, String word, long hash) {
+        int mask = current.addresses.length - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            // The address is read first, its release write makes the hash written before it visible
+            long address = (long) SLOT.getAcquire(current.addresses, slot);
+            if (address == EMPTY) {
+                return -1;
+            }
+            if (address == REMOVED || current.hashes[slot] != hash) {
+                continue;
+            }
+            if ((int) (address >>> 32) >= current.arenas.length) {
+                return -2;
+            }
+            String storedWord = new RecordReader(current.arenas, address).readString();
+            if (String.CASE_INSENSITIVE_ORDER.compare(storedWord, word) == 0) {
+                return slot;
+            }
+        }
+    }
+
+    @Override
+    public List<String> put(String word, List<String> definitions) {
+        long hash = hash(word);
+        State current = state;
+        int slot = findSlot(current, word, hash);
+        List<String> oldDefinitions = null;
+        String storedWord = word;
+        if (slot >= 0) {
+            RecordReader reader = new RecordReader(current.arenas, current.addresses[slot]);
+            storedWord = reader.readString();
+            oldDefinitions = reader.readDefinitions();
+            deadBytes += reader.position - (int) current.addresses[slot];
+        }
+        byte[] record = encode(storedWord, definitions);
+        long address = arenaWriter.append(record, 0, record.length);
+        if (arenaWriter.arenas != current.arenas) {
+            // The new arena has to be visible before any address in it
+            current = new State(current.hashes, current.addresses, arenaWriter.arenas);
+            state = current;
+        }
+        if (slot >= 0) {
+            SLOT.setRelease(current.addresses, slot, address);
+            compactIfNeeded();
+        } else {
+            insert(hash, address);
+            size++;
+        }
+        return oldDefinitions;
+    }
+
+    @Override
+    public List<String> remove(String word) {
+        State current = state;
+        int slot = findSlot(current, word, hash(word));
+        if (slot < 0) {
+            return null;
+        }
+        RecordReader reader = new RecordReader(current.arenas, current.addresses[slot]);
+        reader.skipString();
+        List<String> oldDefinitions = reader.readDefinitions();
+        deadBytes += reader.position - (int) current.addresses[slot];
+        SLOT.setRelease(current.addresses, slot, REMOVED);
+        size--;
+        removedSlots++;
+        compactIfNeeded();
+        return oldDefinitions;
+    }
+
+    private void insert(long hash, long address) {
+        State current = state;
+        if (size + removedSlots + 1 > current.addresses.length * MAX_LOAD) {
+            // Grow if most slots are live, otherwise only clear out the removed ones
+            int capacity = size + 1 > current.addresses.length * MAX_LOAD / 2
+                    ? current.addresses.length * 2 : current.addresses.length;
+            current = rehash(current, capacity);
+            state = current;
+        }
+        int mask = current.addresses.length - 1;
+        int slot = (int) hash & mask;
+        while (current.addresses[slot] >= 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (current.addresses[slot] == REMOVED) {
+            removedSlots--;
+        }
+        current.hashes[slot] = hash;
+        SLOT.setRelease(current.addresses, slot, address);
+    }
+
+    // Copies the live slots into a new table, which is only published by the caller
+    private State rehash(State current, int capacity) {
+        long[] hashes = new long[capacity];
+        long[] addresses = emptyAddresses(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < current.addresses.length; i++) {
+            if (current.addresses[i] >= 0) {
+                int slot = (int) current.hashes[i] & mask;
+                while (addresses[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                hashes[slot] = current.hashes[i];
+                addresses[slot] = current.addresses[i];
+            }
+        }
+        removedSlots = 0;
+        return new State(hashes, addresses, current.arenas);
+    }
+
+    // Rewrites the live records into new arenas once replaced ones take up more space. Readers still using the old
+    // state keep reading the old arenas, which are left unchanged.
+    private void compactIfNeeded() {
+        long liveBytes = arenaWriter.arenaBytes - deadBytes;
+        if (deadBytes < MIN_DEAD_BYTES_BEFORE_COMPACTION || deadBytes < liveBytes) {
+            return;
+        }
+        State current = state;
+        ArenaWriter compacted = new ArenaWriter();
+        long[] addresses = emptyAddresses(current.addresses.length);
+        for (int i = 0; i < current.addresses.length; i++) {
+            long address = current.addresses[i];
+            if (address >= 0) {
+                RecordReader reader = new RecordReader(current.arenas, address);
+                reader.skipString();
+                int count = reader.readLength();
+                for (int j = 0; j < count; j++) {
+                    reader.skipString();
+                }
+                addresses[i] = compacted.append(reader.arena, (int) address, reader.position - (int) address);
+            } else {
+                addresses[i] = address; // Removed slots stay in place so that probing continues past them
+            }
+        }
+        arenaWriter = compacted;
+        deadBytes = 0;
+        state = new State(current.hashes.clone(), addresses, compacted.arenas);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, List<String>> action) {
+        State current = state;
+        forEach(current.arenas, current.addresses, action);
+    }
+
+    // Records are never modified, so the live addresses and the arenas they point into are a point-in-time copy
+    @Override
+    public Snapshot snapshot() {
+        State current = state;
+        long[] addresses = new long[size];
+        int count = 0;
+        for (long address : current.addresses) {
+            if (address >= 0) {
+                addresses[count++] = address;
+            }
+        }
+        return action -> forEach(current.arenas, addresses, action);
+    }
+
+    private static void forEach(byte[][] arenas, long[] addresses, BiConsumer<String, List<String>> action) {
+        for (long address : addresses) {
+            if (address >= 0 && (int) (address >>> 32) < arenas.length) {
+                RecordReader reader = new RecordReader(arenas, address);
+                String word = reader.readString();
+                action.accept(word, reader.readDefinitions());
+            }
+        }
+    }
+
+    // Also the record format of BinarySnapshot
+    static byte[] encode(String word, List<String> definitions) {
+        byte[][] strings = new byte[definitions.size() + 1][];
+        strings[0] = word.getBytes(StandardCharsets.UTF_8);
+        int length = lengthSize(strings[0].length) + strings[0].length + lengthSize(definitions.size());
+        for (int i = 0; i < definitions.size(); i++) {
+            strings[i + 1] = definitions.get(i).getBytes(StandardCharsets.UTF_8);
+            length += lengthSize(strings[i + 1].length) + strings[i + 1].length;
+        }
+        byte[] record = new byte[length];
+        int position = writeString(record, 0, strings[0]);
+        position = writeLength(record, position, definitions.size());
+        for (int i = 1; i < strings.length; i++) {
+            position = writeString(record, position, strings[i]);
+        }
+        return record;
+    }
+
+    private static int writeString(byte[] record, int position, byte[] string) {
+        position = writeLength(record, position, string.length);
+        System.arraycopy(string, 0, record, position, string.length);
+        return position + string.length;
+    }
+
+    private static int writeLength(byte[] record, int position, int length) {
+        while ((length & ~0x7F) != 0) {
+            record[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        record[position++] = (byte) length;
+        return position;
+    }
+
+    private static int lengthSize(int length) {
+        int size = 1;
+        while ((length & ~0x7F) != 0) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long[] emptyAddresses(int capacity) {
+        long[] addresses = new long[capacity];
+        Arrays.fill(addresses, EMPTY);
+        return addresses;
+    }
+
+    // FNV-1a over the characters folded as String.CASE_INSENSITIVE_ORDER compares them, then mixed so that the low
+    // bits used for the slot depend on every character
+    private static long hash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= Character.toLowerCase(Character.toUpperCase(word.charAt(i)));
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
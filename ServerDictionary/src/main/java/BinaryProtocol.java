@@ -0,0 +1,174 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+// Length-prefixed binary framing, used by a connection whose first bytes are the HANDSHAKE.
+// Strings are UTF-8, integers big-endian, action codes are the same as in the text protocol.
+//
+// Request frame  => frameLength:int opcode:byte wordLength:short word definitionCount:int
+//                   (definitionLength:int definition)*
+//                   Multi-query and bulk remove frames carry the words as the definitions of an empty word.
+//                   Bulk add and update frames carry entryCount:int in place of definitionCount, followed by
+//                   (wordLength:short word definitionCount:int (definitionLength:int definition)*) per entry.
+// Response frame => frameLength:int status:byte valueCount:int (valueLength:int value)*
+//                   A multi-query carries (status:byte definitionCount:int (length:int definition)*) per word.
+public class BinaryProtocol {
+
+    private RequestProcessor requestProcessor;
+
+    public final static byte[] HANDSHAKE = {(byte) 0xB1, '\n'}; // Never the start of a text request
+    public final static byte HANDSHAKE_ACK = (byte) 0xB1;
+    public final static int FRAME_LENGTH_BYTES = 4;
+
+    // Response Status
+    private final byte STATUS_SUCCESS = 0;
+    private final byte STATUS_FAILURE = 1;
+    private final byte STATUS_ERROR = 2;
+
+    private final int STATUS_BYTES = 1;
+    private final int COUNT_BYTES = 4;
+    private final int LENGTH_BYTES = 4;
+
+    public BinaryProtocol(RequestProcessor requestProcessor) {
+        this.requestProcessor = requestProcessor;
+    }
+
+    // Executes the request in a frame, without its length prefix, and returns the encoded response frame
+    public byte[] process(ByteBuffer frame) {
+        long startTime = System.nanoTime();
+        int actionCode = RequestProcessor.INVALID_CODE;
+        Response response;
+        try {
+            actionCode = frame.get() & 0xFF;
+            String word = readWord(frame);
+            switch (actionCode) {
+                case RequestProcessor.MULTI_QUERY_CODE:
+                    response = requestProcessor.multiQuery(readStrings(frame));
+                    break;
+
+                case RequestProcessor.BULK_REMOVE_CODE:
+                    response = requestProcessor.bulkRemove(Arrays.asList(readStrings(frame)));
+                    break;
+
+                case RequestProcessor.BULK_ADD_CODE:
+                case RequestProcessor.BULK_UPDATE_CODE:
+                    int entryCount = frame.getInt();
+                    TreeMap<String, String[]> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                    for (int i = 0; i < entryCount; i++) {
+                        entries.put(readWord(frame), readStrings(frame));
+                    }
+                    response = requestProcessor.bulkPut(actionCode, entries);
+                    break;
+
+                default:
+                    String[] definitions = readStrings(frame);
+                    if (actionCode == RequestProcessor.QUERY_CODE && requestProcessor.isCaching()) {
+                        return requestProcessor.cachedQuery(word, ResponseCache.BINARY, this::encode, startTime);
+                    }
+                    // An add or update without definitions is malformed, as in the text protocol
+                    response = requestProcessor.execute(actionCode, word,
+                            definitions.length == 0 ? null : definitions);
+                    break;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            // Truncated frame or impossible lengths
+            response = new Response(RequestProcessor.REQUEST_ERROR);
+        }
+        requestProcessor.record(actionCode, startTime, response);
+        return encode(response);
+    }
+
+    public byte[] encodeError() {
+        return encode(new Response(RequestProcessor.REQUEST_ERROR));
+    }
+
+    private String readWord(ByteBuffer frame) {
+        return readString(frame, frame.getShort() & 0xFFFF);
+    }
+
+    private String[] readStrings(ByteBuffer frame) {
+        int count = frame.getInt();
+        // Every string takes at least its length prefix, reject counts the frame cannot hold
+        if (count < 0 || (long) count * LENGTH_BYTES > frame.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = readString(frame, frame.getInt());
+        }
+        return strings;
+    }
+
+    private String readString(ByteBuffer frame, int length) {
+        if (length < 0 || length > frame.remaining()) {
+            throw new IllegalArgumentException();
+        }
+        String string = new String(frame.array(), frame.arrayOffset() + frame.position(), length,
+                StandardCharsets.UTF_8);
+        frame.position(frame.position() + length);
+        return string;
+    }
+
+    private byte[] encode(Response response) {
+        ArrayList<byte[]> encodedValues = new ArrayList<>();
+        int frameLength = STATUS_BYTES + COUNT_BYTES;
+        if (response.getResults() == null) {
+            frameLength += encodeStrings(response.getValues(), encodedValues);
+        } else {
+            for (Response result : response.getResults()) {
+                frameLength += STATUS_BYTES + COUNT_BYTES + encodeStrings(result.getValues(), encodedValues);
+            }
+        }
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_LENGTH_BYTES + frameLength);
+        frame.putInt(frameLength);
+        frame.put(toStatusByte(response.getStatus()));
+        if (response.getResults() == null) {
+            putStrings(frame, encodedValues, 0, encodedValues.size());
+        } else {
+            frame.putInt(response.getResults().size());
+            int valueIndex = 0;
+            for (Response result : response.getResults()) {
+                frame.put(toStatusByte(result.getStatus()));
+                putStrings(frame, encodedValues, valueIndex, result.getValues().size());
+                valueIndex += result.getValues().size();
+            }
+        }
+        return frame.array();
+    }
+
+    // Returns the number of bytes the strings take in a frame
+    private int encodeStrings(List<String> strings, ArrayList<byte[]> encodedStrings) {
+        int length = 0;
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encodedStrings.add(bytes);
+            length += LENGTH_BYTES + bytes.length;
+        }
+        return length;
+    }
+
+    private void putStrings(ByteBuffer frame, ArrayList<byte[]> encodedStrings, int from, int count) {
+        frame.putInt(count);
+        for (int i = from; i < from + count; i++) {
+            frame.putInt(encodedStrings.get(i).length);
+            frame.put(encodedStrings.get(i));
+        }
+    }
+
+    private byte toStatusByte(String status) {
+        switch (status) {
+            case RequestProcessor.REQUEST_SUCCESS:
+                return STATUS_SUCCESS;
+
+            case RequestProcessor.REQUEST_FAILURE:
+                return STATUS_FAILURE;
+
+            default:
+                return STATUS_ERROR;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Read-only binary copy of the dictionary file, memory-mapped so that lookups read it in place instead of parsing it.
+// The pages are read in on demand and shared through the page cache by every process mapping the same file.
+//
+// Header  => magic version sourceModified entryCount indexOffset
+// Records => the entries as ArenaStore records
+// Index   => the file offset of every record as a long, in String.CASE_INSENSITIVE_ORDER of their words
+//
+// The file is mapped in segments of at most SEGMENT_SIZE bytes, records are padded so that none crosses a segment.
+public class BinarySnapshot {
+
+    private final MappedByteBuffer[] segments;
+    private final long sourceModified; // Modification time of the dictionary file it was written from
+    private final int entryCount;
+    private final long indexOffset;
+
+    private final static int MAGIC = 0x44534e50; // "DSNP"
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 32;
+    private final static int SEGMENT_SHIFT = 30;
+    private final static long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private final static int WRITE_BUFFER_SIZE = 1 << 20;
+
+    // Error Messages
+    private final static String ERROR_READ_SNAPSHOT = "Unable to read the binary snapshot: ";
+    private final static String ERROR_WRITE_SNAPSHOT = "Unable to write the binary snapshot: ";
+    private final static String TEMP_SUFFIX = ".tmp";
+
+    // Entries to write, in any order. A word given more than once keeps the definitions it was given last.
+    public interface Entries {
+        void forEach(BiConsumer<String, List<String>> action) throws IOHandlerException;
+    }
+
+    private BinarySnapshot(MappedByteBuffer[] segments, long sourceModified, int entryCount, long indexOffset) {
+        this.segments = segments;
+        this.sourceModified = sourceModified;
+        this.entryCount = entryCount;
+        this.indexOffset = indexOffset;
+    }
+
+    // Maps the file, only the header is read
+    public static BinarySnapshot open(Path path) throws IOHandlerException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer[] segments = map(channel, fileSize);
+            if (fileSize < HEADER_SIZE || segments[0].getInt(0) != MAGIC || segments[0].getInt(4) != VERSION) {
+                throw new IOHandlerException(ERROR_READ_SNAPSHOT + path);
+            }
+            long sourceModified = segments[0].getLong(8);
+            long entryCount = segments[0].getLong(16);
+            long indexOffset = segments[0].getLong(24);
+            if (entryCount > Integer.MAX_VALUE || indexOffset + entryCount * Long.BYTES != fileSize) {
+                throw new IOHandlerException(ERROR_READ_SNAPSHOT + path);
+            }
+            return new BinarySnapshot(segments, sourceModified, (int) entryCount, indexOffset);
+        } catch (IOException e) {
+            throw new IOHandlerException(ERROR_READ_SNAPSHOT + path);
+        }
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long size) throws IOException {
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+        return segments;
+    }
+
+    // Writes the entries to a temporary file that then replaces the snapshot, processes that still map the old file
+    // keep reading it. The records are streamed to the file as they come and only their offsets are kept in memory,
+    // entries that do not come in order are sorted by their offsets afterwards.
+    public static void write(Path path, long sourceModified, Entries entries) throws IOHandlerException {
+        Path tempPath = Paths.get(path + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            SnapshotWriter writer = new SnapshotWriter(channel);
+            entries.forEach(writer::append);
+            writer.finish(sourceModified);
+            channel.force(true);
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            throw new IOHandlerException(ERROR_WRITE_SNAPSHOT + path);
+        }
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new IOHandlerException(ERROR_WRITE_SNAPSHOT + path);
+        }
+        IOHandler.syncDirectory(path);
+    }
+
+    private static class SnapshotWriter {
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        long position = HEADER_SIZE;        // File offset of the next byte appended
+        long flushedPosition = HEADER_SIZE; // File offset the buffer is written to
+        long[] recordOffsets = new long[1024];
+        int entryCount;
+        String lastWord;
+        boolean isSorted = true; // Appended in order without duplicates so far
+
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void append(String word, List<String> definitions) {
+            if (isSorted && lastWord != null && String.CASE_INSENSITIVE_ORDER.compare(lastWord, word) >= 0) {
+                isSorted = false;
+            }
+            byte[] record = ArenaStore.encode(word, definitions);
+            if (record.length > SEGMENT_SIZE) {
+                throw new IllegalArgumentException(word);
+            }
+            long segmentEnd = (position & -SEGMENT_SIZE) + SEGMENT_SIZE;
+            if (position + record.length > segmentEnd) {
+                write(new byte[(int) (segmentEnd - position)]);
+            }
+            if (entryCount == recordOffsets.length) {
+                recordOffsets = Arrays.copyOf(recordOffsets, entryCount * 2);
+            }
+            recordOffsets[entryCount++] = position;
+            write(record);
+            lastWord = word;
+        }
+
+        void finish(long sourceModified) throws IOException {
+            if (!isSorted) {
+                flush();
+                sortRecordOffsets(map(channel, position));
+            }
+            // Aligned, so that no index entry crosses a segment
+            long indexOffset = (position + Long.BYTES - 1) & -Long.BYTES;
+            write(new byte[(int) (indexOffset - position)]);
+            for (int i = 0; i < entryCount; i++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(recordOffsets[i]);
+            }
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(sourceModified).putLong(entryCount).putLong(indexOffset);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        }
+
+        // Stable, so that of the records with the same word the one appended last ends up last and is kept
+        void sortRecordOffsets(MappedByteBuffer[] records) {
+            long[] sorted = recordOffsets;
+            long[] merged = new long[entryCount];
+            for (int width = 1; width < entryCount; width *= 2) {
+                for (int low = 0; low < entryCount; low += 2 * width) {
+                    int middle = Math.min(low + width, entryCount);
+                    int high = Math.min(low + 2 * width, entryCount);
+                    int left = low;
+                    int right = middle;
+                    for (int i = low; i < high; i++) {
+                        if (left < middle && (right == high
+                                || compareWords(records, sorted[left], sorted[right]) <= 0)) {
+                            merged[i] = sorted[left++];
+                        } else {
+                            merged[i] = sorted[right++];
+                        }
+                    }
+                }
+                long[] swap = sorted;
+                sorted = merged;
+                merged = swap;
+            }
+            int kept = 0;
+            for (int i = 0; i < entryCount; i++) {
+                if (i + 1 == entryCount || compareWords(records, sorted[i], sorted[i + 1]) != 0) {
+                    sorted[kept++] = sorted[i];
+                }
+            }
+            recordOffsets = sorted;
+            entryCount = kept;
+        }
+
+        void write(byte[] bytes) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+            position += bytes.length;
+        }
+
+        void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    flushedPosition += channel.write(buffer, flushedPosition);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+
+    public long getSourceModified() {return sourceModified;}
+
+    public int size() {return entryCount;}
+
+    // Index of the word, or -(insertion point) - 1 if it is not in the snapshot
+    public int find(String word) {
+        int low = 0;
+        int high = entryCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = String.CASE_INSENSITIVE_ORDER.compare(word(middle), word);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    public String word(int index) {
+        return new RecordReader(segments, recordOffset(index)).readString();
+    }
+
+    public ArrayList<String> definitions(int index) {
+        RecordReader reader = new RecordReader(segments, recordOffset(index));
+        reader.skipString();
+        return reader.readDefinitions();
+    }
+
+    private long recordOffset(int index) {
+        long position = indexOffset + (long) index * Long.BYTES;
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    // Compares the words of two records as String.CASE_INSENSITIVE_ORDER does, on the bytes while they are ASCII
+    private static int compareWords(MappedByteBuffer[] segments, long first, long second) {
+        RecordReader firstReader = new RecordReader(segments, first);
+        RecordReader secondReader = new RecordReader(segments, second);
+        int firstLength = firstReader.readLength();
+        int secondLength = secondReader.readLength();
+        int length = Math.min(firstLength, secondLength);
+        for (int i = 0; i < length; i++) {
+            int firstByte = firstReader.segment.get(firstReader.position + i);
+            int secondByte = secondReader.segment.get(secondReader.position + i);
+            if ((firstByte | secondByte) < 0) {
+                return String.CASE_INSENSITIVE_ORDER.compare(new RecordReader(segments, first).readString(),
+                        new RecordReader(segments, second).readString());
+            }
+            if (firstByte != secondByte) {
+                int difference = foldASCII(firstByte) - foldASCII(secondByte);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+        }
+        return firstLength - secondLength;
+    }
+
+    private static int foldASCII(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    // Reads the fields of a record in order, with absolute reads so that the mapped buffers are shared by all threads
+    private static class RecordReader {
+        final ByteBuffer segment;
+        int position;
+
+        RecordReader(MappedByteBuffer[] segments, long offset) {
+            this.segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+            this.position = (int) (offset & (SEGMENT_SIZE - 1));
+        }
+
+        int readLength() {
+            int length = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = segment.get(position++);
+                length |= (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return length;
+        }
+
+        String readString() {
+            byte[] bytes = new byte[readLength()];
+            segment.get(position, bytes);
+            position += bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skipString() {
+            int length = readLength();
+            position += length;
+        }
+
+        ArrayList<String> readDefinitions() {
+            int count = readLength();
+            ArrayList<String> definitions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                definitions.add(readString());
+            }
+            return definitions;
+        }
+    }
+}
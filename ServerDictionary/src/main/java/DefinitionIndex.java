@@ -0,0 +1,338 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+
+// Inverted index from the terms of the definitions to the words they define, for full-text search.
+// Every add gives the word a new doc id, so posting lists stay sorted by doc id and are merged in a single pass.
+// Writers are serialised by the dictionary's write lock; searches read without locking and may see a word that is
+// being updated with either its old or its new terms.
+public class DefinitionIndex {
+
+    // A term's postings. The arrays are shared with the lists that replace this one while they have room: entries are
+    // only written past the size a published list covers, apart from a removed word's frequency being set to 0.
+    private static class Postings {
+        final int[] docIds;
+        final int[] frequencies; // Times the term appears in the word's definitions, 0 once the word is removed
+        final int size;
+        final int liveCount;
+
+        Postings(int[] docIds, int[] frequencies, int size, int liveCount) {
+            this.docIds = docIds;
+            this.frequencies = frequencies;
+            this.size = size;
+            this.liveCount = liveCount;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Postings> postings = new ConcurrentHashMap<>();
+    // By doc id, grown by copying. A removed word's entries are cleared, its doc id is not reused.
+    private volatile String[] docWords = new String[INITIAL_DOC_CAPACITY];
+    private volatile int[] docTermCounts = new int[INITIAL_DOC_CAPACITY];
+    private final HashMap<String, Integer> docIds = new HashMap<>(); // Only used by the writers
+    private int nextDocId;
+    private volatile int liveDocCount;
+    private volatile long totalTermCount;
+
+    private final static int INITIAL_DOC_CAPACITY = 1024;
+    private final static int BUILD_BATCH_SIZE = 4096; // Entries indexed by one task of a parallel build
+    private final static int BATCHES_PER_THREAD = 2; // Indexed ahead of the merge, bounds the entries held on the heap
+    private final static int MIN_DEAD_DOCS_BEFORE_REBUILD = 1 << 16;
+
+    // BM25 parameters, the usual defaults
+    private final static double TERM_SATURATION = 1.2;
+    private final static double LENGTH_NORMALISATION = 0.75;
+
+    public DefinitionIndex() {
+    }
+
+    // Builds the index of a store's entries on a fork-join pool. Batches of entries are indexed separately and appended
+    // in the order the store gives them, so every word gets the doc id adding them one by one would have given it.
+    public static DefinitionIndex build(DictionaryStore.Snapshot entries, ForkJoinPool pool) {
+        ParallelBuilder builder = new ParallelBuilder(pool);
+        entries.forEach(builder);
+        return builder.finish();
+    }
+
+    private static class ParallelBuilder implements BiConsumer<String, List<String>> {
+        private final ForkJoinPool pool;
+        private final DefinitionIndex index = new DefinitionIndex();
+        private final ArrayDeque<ForkJoinTask<DefinitionIndex>> pending = new ArrayDeque<>();
+        private ArrayList<String> words = new ArrayList<>();
+        private ArrayList<List<String>> definitions = new ArrayList<>();
+
+        ParallelBuilder(ForkJoinPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void accept(String word, List<String> definitionList) {
+            words.add(word);
+            definitions.add(definitionList);
+            if (words.size() == BUILD_BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        DefinitionIndex finish() {
+            if (!words.isEmpty()) {
+                submitBatch();
+            }
+            while (!pending.isEmpty()) {
+                index.append(pending.poll().join());
+            }
+            return index;
+        }
+
+        private void submitBatch() {
+            ArrayList<String> batchWords = words;
+            ArrayList<List<String>> batchDefinitions = definitions;
+            words = new ArrayList<>();
+            definitions = new ArrayList<>();
+            pending.add(pool.submit(() -> {
+                DefinitionIndex batch = new DefinitionIndex();
+                for (int i = 0; i < batchWords.size(); i++) {
+                    batch.add(batchWords.get(i), batchDefinitions.get(i));
+                }
+                return batch;
+            }));
+            if (pending.size() > pool.getParallelism() * BATCHES_PER_THREAD) {
+                index.append(pending.poll().join());
+            }
+        }
+    }
+
+    // Adds the words of an index built separately, after this one's, with their doc ids shifted past this one's
+    private void append(DefinitionIndex other) {
+        int docIdOffset = nextDocId;
+        int docCount = docIdOffset + other.nextDocId;
+        if (docCount > docWords.length) {
+            int capacity = Math.max(docCount, docWords.length * 2);
+            docTermCounts = Arrays.copyOf(docTermCounts, capacity);
+            docWords = Arrays.copyOf(docWords, capacity);
+        }
+        System.arraycopy(other.docWords, 0, docWords, docIdOffset, other.nextDocId);
+        System.arraycopy(other.docTermCounts, 0, docTermCounts, docIdOffset, other.nextDocId);
+        for (Map.Entry<String, Postings> term : other.postings.entrySet()) {
+            postings.put(term.getKey(), appendAll(postings.get(term.getKey()), term.getValue(), docIdOffset));
+        }
+        for (Map.Entry<String, Integer> doc : other.docIds.entrySet()) {
+            docIds.put(doc.getKey(), doc.getValue() + docIdOffset);
+        }
+        nextDocId = docCount;
+        liveDocCount += other.liveDocCount;
+        totalTermCount += other.totalTermCount;
+    }
+
+    public static class SearchResult {
+        private int totalHits;
+        private ArrayList<String> words; // The requested page, best match first
+
+        SearchResult(int totalHits, ArrayList<String> words) {
+            this.totalHits = totalHits;
+            this.words = words;
+        }
+
+        public int getTotalHits() {return totalHits;}
+
+        public ArrayList<String> getWords() {return words;}
+    }
+
+    // Called with the write lock held, the word must be spelled as it is stored in the dictionary
+    public void add(String word, List<String> definitions) {
+        HashMap<String, Integer> frequencies = termFrequencies(definitions);
+        int termCount = 0;
+        for (int frequency : frequencies.values()) {
+            termCount += frequency;
+        }
+        int docId = nextDocId++;
+        if (docId == docWords.length) {
+            // Published before any posting refers to the new doc id
+            docTermCounts = Arrays.copyOf(docTermCounts, docId * 2);
+            docWords = Arrays.copyOf(docWords, docId * 2);
+        }
+        docWords[docId] = word;
+        docTermCounts[docId] = termCount;
+        for (Map.Entry<String, Integer> term : frequencies.entrySet()) {
+            postings.put(term.getKey(), append(postings.get(term.getKey()), docId, term.getValue()));
+        }
+        docIds.put(word, docId);
+        liveDocCount++;
+        totalTermCount += termCount;
+    }
+
+    // Called with the write lock held, with the definitions the word was added with
+    public void remove(String word, List<String> definitions) {
+        Integer docId = docIds.remove(word);
+        if (docId == null) {
+            return;
+        }
+        for (String term : termFrequencies(definitions).keySet()) {
+            Postings list = postings.get(term);
+            int index = list == null ? -1 : Arrays.binarySearch(list.docIds, 0, list.size, docId);
+            if (index < 0 || list.frequencies[index] == 0) {
+                continue;
+            }
+            list.frequencies[index] = 0;
+            if (list.liveCount == 1) {
+                postings.remove(term);
+            } else if (list.liveCount - 1 < list.size / 2) {
+                postings.put(term, compact(list, list.size));
+            } else {
+                postings.put(term, new Postings(list.docIds, list.frequencies, list.size, list.liveCount - 1));
+            }
+        }
+        totalTermCount -= docTermCounts[docId];
+        docWords[docId] = null;
+        docTermCounts[docId] = 0;
+        liveDocCount--;
+    }
+
+    // Doc ids are not reused, the dictionary replaces the index with a new one once most of them belong to
+    // removed or updated words
+    public boolean needsRebuild() {
+        int deadDocCount = nextDocId - liveDocCount;
+        return deadDocCount > MIN_DEAD_DOCS_BEFORE_REBUILD && deadDocCount > liveDocCount;
+    }
+
+    // Words whose definitions contain any term of the query, ranked by BM25. The posting lists of the terms are
+    // merged by doc id in one pass, keeping only the best offset + limit words.
+    public SearchResult search(String query, int offset, int limit) {
+        ArrayList<Postings> lists = new ArrayList<>();
+        for (String term : termFrequencies(Collections.singletonList(query)).keySet()) {
+            Postings list = postings.get(term);
+            if (list != null) {
+                lists.add(list);
+            }
+        }
+        // Read after the postings, so that they cover every doc id the lists refer to
+        String[] words = docWords;
+        int[] termCounts = docTermCounts;
+        double docCount = Math.max(liveDocCount, 1);
+        double averageTermCount = Math.max(totalTermCount / docCount, 1);
+        double[] idfs = new double[lists.size()];
+        for (int i = 0; i < lists.size(); i++) {
+            double documentFrequency = lists.get(i).liveCount;
+            idfs[i] = Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+        }
+        // Best matches first, ties in dictionary order so that pages do not overlap
+        Comparator<ScoredWord> ranking = Comparator.comparingDouble((ScoredWord scored) -> scored.score).reversed()
+                .thenComparing(scored -> scored.word, String.CASE_INSENSITIVE_ORDER);
+        int keep = (int) Math.min((long) offset + limit, Integer.MAX_VALUE - 1);
+        PriorityQueue<ScoredWord> best = new PriorityQueue<>(ranking.reversed());
+        int[] positions = new int[lists.size()];
+        int totalHits = 0;
+        while (true) {
+            int docId = Integer.MAX_VALUE;
+            for (int i = 0; i < lists.size(); i++) {
+                if (positions[i] < lists.get(i).size) {
+                    docId = Math.min(docId, lists.get(i).docIds[positions[i]]);
+                }
+            }
+            if (docId == Integer.MAX_VALUE) {
+                break;
+            }
+            double score = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                Postings list = lists.get(i);
+                if (positions[i] < list.size && list.docIds[positions[i]] == docId) {
+                    double frequency = list.frequencies[positions[i]++];
+                    score += idfs[i] * frequency * (TERM_SATURATION + 1) / (frequency + TERM_SATURATION
+                            * (1 - LENGTH_NORMALISATION + LENGTH_NORMALISATION * termCounts[docId] / averageTermCount));
+                }
+            }
+            String word = words[docId];
+            if (score == 0 || word == null) {
+                continue; // Removed since the lists were read
+            }
+            totalHits++;
+            if (best.size() < keep) {
+                best.add(new ScoredWord(word, score));
+            } else if (keep > 0 && best.peek().isWorseThan(word, score)) {
+                best.poll();
+                best.add(new ScoredWord(word, score));
+            }
+        }
+        ArrayList<ScoredWord> ranked = new ArrayList<>(best);
+        ranked.sort(ranking);
+        ArrayList<String> page = new ArrayList<>();
+        for (int i = offset; i < ranked.size(); i++) {
+            page.add(ranked.get(i).word);
+        }
+        return new SearchResult(totalHits, page);
+    }
+
+    private static class ScoredWord {
+        final String word;
+        final double score;
+
+        ScoredWord(String word, double score) {
+            this.word = word;
+            this.score = score;
+        }
+
+        boolean isWorseThan(String otherWord, double otherScore) {
+            return score < otherScore
+                    || (score == otherScore && String.CASE_INSENSITIVE_ORDER.compare(word, otherWord) > 0);
+        }
+    }
+
+    private static Postings append(Postings list, int docId, int frequency) {
+        if (list == null) {
+            return new Postings(new int[]{docId}, new int[]{frequency}, 1, 1);
+        }
+        if (list.size == list.docIds.length) {
+            // Removed words are dropped whenever the arrays are copied
+            list = compact(list, Math.max(list.liveCount * 2, 2));
+        }
+        list.docIds[list.size] = docId;
+        list.frequencies[list.size] = frequency;
+        return new Postings(list.docIds, list.frequencies, list.size + 1, list.liveCount + 1);
+    }
+
+    private static Postings appendAll(Postings list, Postings tail, int docIdOffset) {
+        if (list == null) {
+            list = new Postings(new int[tail.size], new int[tail.size], 0, 0);
+        } else if (list.size + tail.size > list.docIds.length) {
+            list = compact(list, (list.liveCount + tail.size) * 2);
+        }
+        for (int i = 0; i < tail.size; i++) {
+            list.docIds[list.size + i] = tail.docIds[i] + docIdOffset;
+            list.frequencies[list.size + i] = tail.frequencies[i];
+        }
+        return new Postings(list.docIds, list.frequencies, list.size + tail.size, list.liveCount + tail.liveCount);
+    }
+
+    private static Postings compact(Postings list, int capacity) {
+        int[] docIds = new int[capacity];
+        int[] frequencies = new int[capacity];
+        int size = 0;
+        for (int i = 0; i < list.size; i++) {
+            if (list.frequencies[i] != 0) {
+                docIds[size] = list.docIds[i];
+                frequencies[size] = list.frequencies[i];
+                size++;
+            }
+        }
+        return new Postings(docIds, frequencies, size, size);
+    }
+
+    // Terms are runs of letters and digits, compared in lower case
+    private static HashMap<String, Integer> termFrequencies(List<String> texts) {
+        HashMap<String, Integer> frequencies = new HashMap<>();
+        for (String text : texts) {
+            int start = -1;
+            for (int i = 0; i <= text.length(); i++) {
+                boolean isTermCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+                if (isTermCharacter && start == -1) {
+                    start = i;
+                } else if (!isTermCharacter && start != -1) {
+                    frequencies.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                    start = -1;
+                }
+            }
+        }
+        return frequencies;
+    }
+}
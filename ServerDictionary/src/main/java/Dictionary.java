@@ -1,87 +1,675 @@
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Dictionary {
 
     private String dictionaryFilePath;
     private IOHandler ioHandler;
-    private TreeMap<String, ArrayList<String>> dictionary;
+    private OperationLog operationLog;
+    private ServerMetrics serverMetrics;
+    private StorageEngine storageEngine;
+    private int loadThreads;
+    private Durability durability;
+    private ForkJoinPool loadPool; // Parses the dictionary file and builds the indexes, null to do it all on one thread
+    // Queries read the store without locking, definition lists are never modified once they are stored
+    private volatile DictionaryStore dictionary;
+    // Kept in step with the store by the writers
+    private volatile PrefixIndex prefixIndex;
+    private volatile DefinitionIndex definitionIndex;
+    private long lastModified; // Modification time of the file contents currently held in memory
+    // Serialises writers so that the existence check, the log append and the map update happen as one step
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Object snapshotLock = new Object(); // Only one snapshot is written at a time
+    // Writes applied to the store, counted with the write lock held, and how many of them the dictionary file holds
+    private volatile long mutationSeq;
+    private long flushedSeq;
+    private long failedFlushSeq; // Writes whose flush failed, their writers are told so
+    private final Object flushMonitor = new Object(); // Guards the flushed counts, flushed writers wait on it
+    private final List<DictionaryListener> listeners = new CopyOnWriteArrayList<>();
+    // While a replacement definition index is built in the background, the words changed since its snapshot, spelled
+    // as they were stored then, with the definitions they had then or null. Guarded by the write lock.
+    private TreeMap<String, List<String>> definitionIndexChanges;
 
-    public Dictionary(String dictionaryFilePath) {
+    private final String BINARY_SNAPSHOT_SUFFIX = ".snapshot"; // Mapped by the mapped storage engine
+    private final long MIN_PROGRESS_FILE_SIZE = 64L << 20;
+    private final long PROGRESS_STEP_PERCENT = 10;
+
+    // Error Messages
+    private final String ERROR_FLUSH = "Unable to flush the dictionary file: ";
+    private final String ERROR_INDEX_BUILDING = "The prefix index is still being built: ";
+
+    // Status Messages
+    private final String LOAD_PROGRESS = "Loading dictionary: %d%% of %d MB read from %s";
+    private final String LOAD_TIME = "Dictionary parsed: %d words in %d ms on %d load threads";
+
+    public Dictionary(String dictionaryFilePath, OperationLog operationLog, ServerMetrics serverMetrics,
+                      StorageEngine storageEngine, int loadThreads, Durability durability) {
         this.dictionaryFilePath = dictionaryFilePath;
         this.ioHandler = new IOHandler();
-        this.dictionary = new TreeMap<>(String.CASE_INSENSITIVE_ORDER); // Ignore capitalization of words(key)
+        this.operationLog = operationLog;
+        this.serverMetrics = serverMetrics;
+        this.storageEngine = storageEngine;
+        this.loadThreads = loadThreads;
+        this.loadPool = loadThreads > 1 ? new ForkJoinPool(loadThreads) : null;
+        this.durability = durability;
+        this.dictionary = storageEngine.createStore();
+        this.prefixIndex = new PrefixIndex();
+        this.definitionIndex = new DefinitionIndex();
     }
 
-    public synchronized void parseDictionary() throws IOHandlerException {
-        JSONObject jsonObject = null;
+    // Loads the last snapshot and replays the operation log on top of it,
+    // the in-memory store is the source of truth afterwards
+    public void parseDictionary() throws IOHandlerException {
+        DictionaryStore parsedDictionary;
+        writeLock.lock();
         try {
-            jsonObject = ioHandler.readJSONFile(dictionaryFilePath);
-            if (jsonObject != null) {
-                // If dictionary JSON file is not empty, load the data into a TreeMap
-                for (Object key: jsonObject.keySet()) {
-                    String word = (String) key;
-                    JSONArray definition = (JSONArray) jsonObject.get(word);
-                    dictionary.put(word, ioHandler.convertJSONArray(definition)); // Add current word and its definition
-                }
+            long startTime = System.nanoTime();
+            long fileModified = new File(dictionaryFilePath).lastModified();
+            if (storageEngine == StorageEngine.MAPPED) {
+                parsedDictionary = new MappedStore(mapBinarySnapshot(fileModified));
+            } else {
+                parsedDictionary = storageEngine.createStore();
+                readDictionaryFile(parsedDictionary::put);
+            }
+            operationLog.replay(parsedDictionary); // Mutations made since the snapshot was written
+            // Only swap in the new store once the whole file has been parsed successfully
+            if (storageEngine == StorageEngine.MAPPED) {
+                prefixIndex = new PrefixIndex();
+                definitionIndex = new DefinitionIndex();
+                buildIndexesInBackground(parsedDictionary);
+            } else {
+                buildIndexes(parsedDictionary);
             }
+            dictionary = parsedDictionary;
+            lastModified = fileModified;
+            for (DictionaryListener listener : listeners) {
+                listener.dictionaryReplaced();
+            }
+            markFlushFailed(mutationSeq); // Writes not flushed yet were discarded by the reload, their writers get an error
+            System.out.println(String.format(LOAD_TIME, parsedDictionary.size(),
+                    (System.nanoTime() - startTime) / 1_000_000, loadThreads));
         } catch (IOHandlerException e) {
             System.out.println(e.getMessage());
             throw new IOHandlerException();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Streams the entries of the dictionary file in file order, printing the progress of large files
+    private void readDictionaryFile(BiConsumer<String, List<String>> entries) throws IOHandlerException {
+        long fileSize = new File(dictionaryFilePath).length();
+        long[] reportedPercent = {0};
+        ioHandler.readJSONEntries(dictionaryFilePath, entries, bytesRead -> {
+            long percent = bytesRead * 100 / Math.max(fileSize, 1);
+            if (fileSize >= MIN_PROGRESS_FILE_SIZE && percent >= reportedPercent[0] + PROGRESS_STEP_PERCENT) {
+                reportedPercent[0] = percent;
+                System.out.println(String.format(LOAD_PROGRESS, percent, fileSize >> 20, dictionaryFilePath));
+            }
+        }, loadPool);
+    }
+
+    // Maps the binary snapshot of the dictionary file, writing it first if it is missing or older than the file
+    private BinarySnapshot mapBinarySnapshot(long fileModified) throws IOHandlerException {
+        Path snapshotPath = Paths.get(dictionaryFilePath + BINARY_SNAPSHOT_SUFFIX);
+        if (Files.exists(snapshotPath)) {
+            try {
+                BinarySnapshot snapshot = BinarySnapshot.open(snapshotPath);
+                if (snapshot.getSourceModified() == fileModified) {
+                    return snapshot;
+                }
+            } catch (IOHandlerException e) {
+                System.out.println(e.getMessage()); // Written again from the dictionary file
+            }
+        }
+        BinarySnapshot.write(snapshotPath, fileModified, this::readDictionaryFile);
+        return BinarySnapshot.open(snapshotPath);
+    }
+
+    // Reading every entry would undo the mapped store's instant start, so its indexes are built afterwards. Prefix,
+    // suggest and search requests find nothing and writers wait until they are ready.
+    private void buildIndexesInBackground(DictionaryStore store) {
+        Thread builder = new Thread(() -> {
+            writeLock.lock();
+            try {
+                if (dictionary == store) { // Not replaced by a reload in the meantime
+                    buildIndexes(store);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }, "dictionary-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // With a load pool the two indexes are built at the same time, each of them in parallel as well
+    private void buildIndexes(DictionaryStore store) {
+        if (loadPool == null) {
+            PrefixIndex builtPrefixIndex = new PrefixIndex();
+            store.forEach((word, definitions) -> builtPrefixIndex.add(word));
+            prefixIndex = builtPrefixIndex;
+            definitionIndex = buildDefinitionIndex(store::forEach);
+            return;
+        }
+        ForkJoinTask<PrefixIndex> builtPrefixIndex = loadPool.submit(() -> PrefixIndex.build(store::forEach, loadPool));
+        DefinitionIndex builtDefinitionIndex = buildDefinitionIndex(store::forEach);
+        prefixIndex = builtPrefixIndex.join();
+        definitionIndex = builtDefinitionIndex;
+    }
+
+    public void openLog() throws IOHandlerException {
+        operationLog.open();
+    }
+
+    // Writes that are only in memory are flushed first
+    public void close() {
+        if (durability != Durability.LOGGED && hasUnflushedChanges()) {
+            try {
+                syncDictionary();
+            } catch (IOHandlerException e) {
+                // Already reported by syncDictionary
+            }
+        }
+        operationLog.close();
+    }
+
+    // Picks up external edits to the dictionary JSON file, returns true if the file was reloaded. Waits for a snapshot
+    // being written, so that the file it renames into place is only compared once its modification time is recorded.
+    public boolean reloadIfModified() throws IOHandlerException {
+        synchronized (snapshotLock) {
+            writeLock.lock();
+            try {
+                if (new File(dictionaryFilePath).lastModified() != lastModified) {
+                    parseDictionary();
+                    return true;
+                }
+                return false;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    // Folds the operation log into a new dictionary JSON snapshot
+    public void syncDictionary() throws IOHandlerException {
+        synchronized (snapshotLock) {
+            DictionaryStore store;
+            DictionaryStore.Snapshot snapshot;
+            long logPosition;
+            long snapshotSeq;
+            writeLock.lock();
+            try {
+                // Copy under the lock, the snapshot is then written without blocking requests
+                store = dictionary;
+                snapshot = store.snapshot();
+                logPosition = operationLog.position();
+                snapshotSeq = mutationSeq;
+            } finally {
+                writeLock.unlock();
+            }
+            try {
+                long startTime = System.nanoTime();
+                ioHandler.writeJSONEntriesAtomically(dictionaryFilePath, snapshot);
+                serverMetrics.recordSnapshot(new File(dictionaryFilePath).length(), System.nanoTime() - startTime);
+                markFlushed(snapshotSeq);
+                long fileModified;
+                writeLock.lock();
+                try {
+                    fileModified = new File(dictionaryFilePath).lastModified();
+                    lastModified = fileModified; // Own writes are not external edits
+                } finally {
+                    writeLock.unlock();
+                }
+                if (storageEngine == StorageEngine.MAPPED) {
+                    // Marked with the new file's modification time, the next start maps it instead of parsing the file
+                    Path snapshotPath = Paths.get(dictionaryFilePath + BINARY_SNAPSHOT_SUFFIX);
+                    BinarySnapshot.write(snapshotPath, fileModified, snapshot::forEach);
+                    rebase((MappedStore) store, snapshotPath, snapshot);
+                }
+                // Records appended while the snapshot was being written are kept
+                operationLog.truncateBefore(logPosition);
+            } catch (IOHandlerException e) {
+                markFlushFailed(snapshotSeq);
+                System.out.println(e.getMessage());
+                throw new IOHandlerException();
+            }
         }
     }
 
-    // Updates the dictionary JSON file with the new changes
-    public synchronized void syncDictionary() throws IOHandlerException {
-        JSONObject jsonObject = new JSONObject(dictionary);
+    // Moves the mapped store onto the snapshot just written, so that its changes do not pile up on the heap for good.
+    // If it cannot be mapped the store keeps its old snapshot, the file has been written either way.
+    private void rebase(MappedStore store, Path snapshotPath, DictionaryStore.Snapshot written) {
+        BinarySnapshot newBase;
         try {
-            ioHandler.writeJSONFile(dictionaryFilePath, jsonObject);
+            newBase = BinarySnapshot.open(snapshotPath);
         } catch (IOHandlerException e) {
             System.out.println(e.getMessage());
-            throw new IOHandlerException();
+            return;
         }
+        writeLock.lock();
+        try {
+            if (dictionary == store) { // Not replaced by a reload in the meantime
+                store.rebase(newBase, written);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Copies the store under the write lock, running the callback in the same step, so that it sees exactly the
+    // writes the copy holds. A replication stream registers itself this way and then receives every later change.
+    public DictionaryStore.Snapshot snapshot(Runnable whileLocked) {
+        writeLock.lock();
+        try {
+            whileLocked.run();
+            return dictionary.snapshot();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Replaces the dictionary with the entries a replica receives from its primary, as they arrive. They are written
+    // to the dictionary file, which is then loaded like at startup, so the replica serves the old contents meanwhile.
+    public void loadReplicaSnapshot(DictionaryStore.Snapshot entries) throws IOHandlerException {
+        synchronized (snapshotLock) {
+            ioHandler.writeJSONEntriesAtomically(dictionaryFilePath, entries);
+            writeLock.lock();
+            try {
+                // Local records would be replayed on top of the primary's contents
+                operationLog.truncateBefore(operationLog.position());
+                parseDictionary();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    // Applies a change streamed from the primary, definitions are null for a removal. The primary already checked it,
+    // so it is applied whatever the replica holds. Writes are not awaited, a restarted replica loads from its primary.
+    public void applyReplicated(String word, List<String> definitions) throws IOHandlerException {
+        writeLock.lock();
+        try {
+            if (definitions != null) {
+                ArrayList<String> definitionList = new ArrayList<>(definitions);
+                recordMutation(() -> OperationLog.putRecord(word, definitionList));
+                putEntry(word, definitionList);
+            } else if (wordExists(word)) {
+                recordMutation(() -> OperationLog.removeRecord(word));
+                removeEntry(word);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // True if the dictionary file is missing writes that have been applied in memory
+    public boolean hasUnflushedChanges() {
+        synchronized (flushMonitor) {
+            return flushedSeq < mutationSeq;
+        }
+    }
+
+    private void markFlushed(long seq) {
+        synchronized (flushMonitor) {
+            flushedSeq = Math.max(flushedSeq, seq);
+            flushMonitor.notifyAll();
+        }
+    }
+
+    private void markFlushFailed(long seq) {
+        synchronized (flushMonitor) {
+            failedFlushSeq = Math.max(failedFlushSeq, seq);
+            flushMonitor.notifyAll();
+        }
+    }
+
+    public long getLogSize() {
+        return operationLog.size();
+    }
+
+    // Writes are refused until a compaction rewrites the log
+    public boolean isLogFailed() {
+        return operationLog.isFailed();
+    }
+
+    public int size() {
+        return dictionary.size();
     }
 
-    public synchronized ArrayList<String> query(String word) throws InvalidRequestException, IOHandlerException {
-        parseDictionary();
-        if (wordExists(word)) {
-            return dictionary.get(word);
+    // Lock-free, a single read of the store so a concurrent remove cannot slip in between check and get
+    public ArrayList<String> query(String word) throws InvalidRequestException {
+        List<String> definitions = dictionary.get(word);
+        if (definitions != null) {
+            // Copy so that callers cannot modify the in-memory definitions
+            return new ArrayList<>(definitions);
         } else {
             throw new InvalidRequestException();
         }
     }
 
-    public synchronized void add(String word, String[] definitions) throws InvalidRequestException, IOHandlerException {
-        parseDictionary();
-        if (!wordExists(word)) {
-            dictionary.put(word, new ArrayList<>(Arrays.asList(definitions)));
-            syncDictionary();
-        } else {
+    // Lock-free, up to limit words starting with the prefix in dictionary order
+    public ArrayList<String> complete(String prefix, int limit) throws InvalidRequestException {
+        ArrayList<String> words = prefixIndex.complete(prefix, limit);
+        if (words.isEmpty()) {
             throw new InvalidRequestException();
         }
+        return words;
     }
 
-    public synchronized void remove(String word) throws InvalidRequestException, IOHandlerException {
-        parseDictionary();
-        if (wordExists(word)) {
-            dictionary.remove(word);
-            syncDictionary();
-        } else {
+    // Lock-free, a page of up to limit entries following the word in dictionary order, for exporting the dictionary
+    // over the network. Entries written while it is paged through may or may not be seen.
+    public LinkedHashMap<String, List<String>> scan(String afterWord, int limit)
+            throws InvalidRequestException, IOHandlerException {
+        DictionaryStore store = dictionary;
+        PrefixIndex index = prefixIndex;
+        if (index.isEmpty() && store.size() > 0) {
+            // The mapped store builds its indexes after startup, an empty page would end an export early
+            throw new IOHandlerException(ERROR_INDEX_BUILDING + dictionaryFilePath);
+        }
+        LinkedHashMap<String, List<String>> entries = new LinkedHashMap<>();
+        for (String word : index.after(afterWord, limit)) {
+            List<String> definitions = store.get(word);
+            if (definitions != null) { // Removed since the page was read
+                entries.put(word, definitions);
+            }
+        }
+        if (entries.isEmpty()) {
             throw new InvalidRequestException();
         }
+        return entries;
     }
 
-    public synchronized void update(String word, String[] definitions) throws InvalidRequestException, IOHandlerException {
-        parseDictionary();
-        if (wordExists(word)) {
-            dictionary.put(word,new ArrayList<>(Arrays.asList(definitions)));
-            syncDictionary();
-        } else {
+    // Lock-free, words within maxDistance edits of the given one, closest first
+    public ArrayList<String> suggest(String word, int maxDistance, int limit) {
+        return prefixIndex.suggest(word, maxDistance, limit);
+    }
+
+    // Lock-free, a page of the words whose definitions mention the query's terms, best match first
+    public DefinitionIndex.SearchResult search(String query, int offset, int limit) throws InvalidRequestException {
+        DefinitionIndex.SearchResult result = definitionIndex.search(query, offset, limit);
+        if (result.getTotalHits() == 0) {
             throw new InvalidRequestException();
         }
+        return result;
+    }
+
+    public void add(String word, String[] definitions) throws InvalidRequestException, IOHandlerException {
+        long writeSeq;
+        lockForWrite();
+        try {
+            if (!wordExists(word)) {
+                ArrayList<String> definitionList = new ArrayList<>(Arrays.asList(definitions));
+                writeSeq = recordMutation(() -> OperationLog.putRecord(word, definitionList));
+                putEntry(word, definitionList);
+            } else {
+                throw new InvalidRequestException();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // Wait outside the lock, so that concurrent writes share the fsync or the flush
+        awaitDurable(writeSeq);
+    }
+
+    public void remove(String word) throws InvalidRequestException, IOHandlerException {
+        long writeSeq;
+        lockForWrite();
+        try {
+            if (wordExists(word)) {
+                writeSeq = recordMutation(() -> OperationLog.removeRecord(word));
+                removeEntry(word);
+            } else {
+                throw new InvalidRequestException();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(writeSeq);
+    }
+
+    public void update(String word, String[] definitions) throws InvalidRequestException, IOHandlerException {
+        long writeSeq;
+        lockForWrite();
+        try {
+            if (wordExists(word)) {
+                ArrayList<String> definitionList = new ArrayList<>(Arrays.asList(definitions));
+                writeSeq = recordMutation(() -> OperationLog.putRecord(word, definitionList));
+                putEntry(word, definitionList);
+            } else {
+                throw new InvalidRequestException();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(writeSeq);
+    }
+
+    // Adds every entry or none of them, taking the write lock and persisting once for the whole batch
+    public void addAll(Map<String, String[]> entries) throws InvalidRequestException, IOHandlerException {
+        putAll(entries, false);
+    }
+
+    // Updates every entry or none of them, taking the write lock and persisting once for the whole batch
+    public void updateAll(Map<String, String[]> entries) throws InvalidRequestException, IOHandlerException {
+        putAll(entries, true);
+    }
+
+    private void putAll(Map<String, String[]> entries, boolean mustExist)
+            throws InvalidRequestException, IOHandlerException {
+        long writeSeq;
+        lockForWrite();
+        try {
+            ArrayList<String> invalidWords = new ArrayList<>();
+            for (String word : entries.keySet()) {
+                if (wordExists(word) != mustExist) {
+                    invalidWords.add(word);
+                }
+            }
+            if (!invalidWords.isEmpty()) {
+                throw new InvalidRequestException(invalidWords);
+            }
+            LinkedHashMap<String, ArrayList<String>> definitionLists = new LinkedHashMap<>();
+            for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+                definitionLists.put(entry.getKey(), new ArrayList<>(Arrays.asList(entry.getValue())));
+            }
+            writeSeq = recordMutation(() -> {
+                ArrayList<String> records = new ArrayList<>();
+                for (Map.Entry<String, ArrayList<String>> entry : definitionLists.entrySet()) {
+                    records.add(OperationLog.putRecord(entry.getKey(), entry.getValue()));
+                }
+                return OperationLog.batchRecord(records);
+            });
+            for (Map.Entry<String, ArrayList<String>> entry : definitionLists.entrySet()) {
+                putEntry(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(writeSeq);
+    }
+
+    // Removes every word or none of them, taking the write lock and persisting once for the whole batch
+    public void removeAll(Collection<String> words) throws InvalidRequestException, IOHandlerException {
+        long writeSeq;
+        lockForWrite();
+        try {
+            ArrayList<String> invalidWords = new ArrayList<>();
+            for (String word : words) {
+                if (!wordExists(word)) {
+                    invalidWords.add(word);
+                }
+            }
+            if (!invalidWords.isEmpty()) {
+                throw new InvalidRequestException(invalidWords);
+            }
+            writeSeq = recordMutation(() -> {
+                ArrayList<String> records = new ArrayList<>();
+                for (String word : words) {
+                    records.add(OperationLog.removeRecord(word));
+                }
+                return OperationLog.batchRecord(records);
+            });
+            for (String word : words) {
+                removeEntry(word);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        awaitDurable(writeSeq);
+    }
+
+    // Called with the write lock held before the store is changed, returns the number to wait for with awaitDurable.
+    // The record is only built if the write goes to the operation log.
+    private long recordMutation(Supplier<String> record) throws IOHandlerException {
+        if (durability == Durability.LOGGED) {
+            long logSeq = operationLog.append(record.get());
+            mutationSeq++;
+            return logSeq;
+        }
+        return ++mutationSeq;
     }
 
+    // Blocks until the write is as durable as the durability level requires, a write whose flush failed is an error
+    private void awaitDurable(long writeSeq) throws IOHandlerException {
+        if (durability == Durability.LOGGED) {
+            operationLog.awaitDurable(writeSeq);
+            return;
+        }
+        if (durability == Durability.MEMORY) {
+            return;
+        }
+        synchronized (flushMonitor) {
+            try {
+                while (flushedSeq < writeSeq) {
+                    if (failedFlushSeq >= writeSeq) {
+                        throw new IOHandlerException(ERROR_FLUSH + dictionaryFilePath);
+                    }
+                    flushMonitor.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOHandlerException(ERROR_FLUSH + dictionaryFilePath);
+            }
+        }
+    }
+
+    // Updates the store and its indexes together, called with the write lock held
+    private void putEntry(String word, ArrayList<String> definitionList) {
+        String storedWord = storedWord(word);
+        List<String> oldDefinitions = dictionary.put(word, definitionList);
+        recordDefinitionIndexChange(storedWord, oldDefinitions);
+        if (oldDefinitions != null) {
+            definitionIndex.remove(storedWord, oldDefinitions);
+        } else {
+            prefixIndex.add(word);
+        }
+        definitionIndex.add(storedWord, definitionList);
+        rebuildDefinitionIndexIfNeeded();
+        notifyWordChanged(word);
+    }
+
+    private void removeEntry(String word) {
+        String storedWord = storedWord(word);
+        List<String> oldDefinitions = dictionary.remove(word);
+        if (oldDefinitions != null) {
+            recordDefinitionIndexChange(storedWord, oldDefinitions);
+            prefixIndex.remove(word);
+            definitionIndex.remove(storedWord, oldDefinitions);
+            rebuildDefinitionIndexIfNeeded();
+            notifyWordChanged(word);
+        }
+    }
+
+    private void notifyWordChanged(String word) {
+        for (DictionaryListener listener : listeners) {
+            listener.wordChanged(word);
+        }
+    }
+
+    // Searches keep using the old index until the new one replaces it. It is built from a snapshot on a thread of its
+    // own, so that the write that crossed the threshold does not hold the write lock for the whole build.
+    private void rebuildDefinitionIndexIfNeeded() {
+        if (definitionIndexChanges != null || !definitionIndex.needsRebuild()) {
+            return;
+        }
+        definitionIndexChanges = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        DictionaryStore store = dictionary;
+        DictionaryStore.Snapshot snapshot = store.snapshot();
+        Thread builder = new Thread(() -> {
+            DefinitionIndex builtIndex = buildDefinitionIndex(snapshot);
+            writeLock.lock();
+            try {
+                if (dictionary == store) { // Not replaced by a reload in the meantime
+                    replayDefinitionIndexChanges(builtIndex);
+                    definitionIndex = builtIndex;
+                }
+                definitionIndexChanges = null;
+            } finally {
+                writeLock.unlock();
+            }
+        }, "definition-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    // Called with the write lock held by writers, keeps the first change of every word since the snapshot
+    private void recordDefinitionIndexChange(String storedWord, List<String> oldDefinitions) {
+        if (definitionIndexChanges != null && !definitionIndexChanges.containsKey(storedWord)) {
+            definitionIndexChanges.put(storedWord, oldDefinitions);
+        }
+    }
+
+    // Brings an index built from a snapshot up to date with the store, called with the write lock held
+    private void replayDefinitionIndexChanges(DefinitionIndex builtIndex) {
+        for (Map.Entry<String, List<String>> change : definitionIndexChanges.entrySet()) {
+            if (change.getValue() != null) {
+                builtIndex.remove(change.getKey(), change.getValue());
+            }
+            List<String> definitions = dictionary.get(change.getKey());
+            if (definitions != null) {
+                builtIndex.add(storedWord(change.getKey()), definitions);
+            }
+        }
+    }
+
+    private DefinitionIndex buildDefinitionIndex(DictionaryStore.Snapshot entries) {
+        if (loadPool != null) {
+            return DefinitionIndex.build(entries, loadPool);
+        }
+        DefinitionIndex index = new DefinitionIndex();
+        entries.forEach(index::add);
+        return index;
+    }
+
+    // The spelling a word is stored with, which the store keeps when it is updated in a different case
+    private String storedWord(String word) {
+        String storedWord = dictionary.storedWord(word);
+        return storedWord != null ? storedWord : word;
+    }
+
+    // Takes the write lock for a request, recording how long it had to wait for other writers
+    private void lockForWrite() {
+        long startTime = System.nanoTime();
+        writeLock.lock();
+        serverMetrics.recordLockWait(System.nanoTime() - startTime);
+    }
+
+    public void addListener(DictionaryListener listener) {
+        listeners.add(listener);
+    }
+
+    public String getDictionaryFilePath() {return dictionaryFilePath;}
+
     private boolean wordExists(String word) {
         return dictionary.containsKey(word);
     }
@@ -0,0 +1,40 @@
+// Folds the operation log into a new snapshot in the background once it grows past a threshold, or at once after an
+// fsync of the log failed
+public class DictionaryCompactor extends Thread {
+
+    private Dictionary dictionary;
+    private long compactThreshold;
+
+    private final long CHECK_INTERVAL_MS = 1000;
+
+    // Error Messages
+    private final String ERROR_COMPACT = "Unable to compact the operation log, it will be retried.";
+
+    public DictionaryCompactor(Dictionary dictionary, long compactThreshold) {
+        super("dictionary-compactor");
+        this.dictionary = dictionary;
+        this.compactThreshold = compactThreshold;
+        setDaemon(true);
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                Thread.sleep(CHECK_INTERVAL_MS);
+                if (dictionary.getLogSize() >= compactThreshold || dictionary.isLogFailed()) {
+                    compact();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void compact() {
+        try {
+            dictionary.syncDictionary();
+        } catch (IOHandlerException e) {
+            System.out.println(ERROR_COMPACT);
+        }
+    }
+}
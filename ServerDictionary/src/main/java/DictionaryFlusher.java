@@ -0,0 +1,38 @@
+// Writes the dictionary file in the background once per interval if it has changed, so every change made during an
+// interval is persisted by a single write. Used instead of the operation log by the memory and flushed durability levels.
+public class DictionaryFlusher extends Thread {
+
+    private Dictionary dictionary;
+    private long flushIntervalMs;
+
+    // Error Messages
+    private final String ERROR_FLUSH = "Unable to flush the dictionary file, it will be retried.";
+
+    public DictionaryFlusher(Dictionary dictionary, long flushIntervalMs) {
+        super("dictionary-flusher");
+        this.dictionary = dictionary;
+        this.flushIntervalMs = flushIntervalMs;
+        setDaemon(true);
+    }
+
+    public void run() {
+        try {
+            while (true) {
+                Thread.sleep(flushIntervalMs);
+                if (dictionary.hasUnflushedChanges()) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush() {
+        try {
+            dictionary.syncDictionary();
+        } catch (IOHandlerException e) {
+            System.out.println(ERROR_FLUSH);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+// Told about changes to the dictionary's contents, with its write lock held, so calls arrive in the order the changes
+// were made and must return quickly
+public interface DictionaryListener {
+
+    // The word was added, updated or removed, it is passed in the spelling of the request
+    void wordChanged(String word);
+
+    // Every word may have changed, the store was replaced by a load or reload of the dictionary file
+    void dictionaryReplaced();
+}
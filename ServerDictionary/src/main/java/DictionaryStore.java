@@ -0,0 +1,34 @@
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Storage of the words and their definitions behind Dictionary, selected with --storage. Words are compared ignoring
+// case. Dictionary serialises the writers, reads run concurrently with them and must not need a lock.
+public interface DictionaryStore {
+
+    // Definitions of the word, or null if it is not stored. Callers must not modify the list.
+    List<String> get(String word);
+
+    boolean containsKey(String word);
+
+    // The spelling the word was first stored with, or null if it is not stored
+    String storedWord(String word);
+
+    // Returns the previous definitions or null, a word that is already stored keeps its spelling
+    List<String> put(String word, List<String> definitions);
+
+    // Returns the removed definitions or null
+    List<String> remove(String word);
+
+    int size();
+
+    // Visits every entry, in no particular order
+    void forEach(BiConsumer<String, List<String>> action);
+
+    // The entries as they are now, unaffected by later writes. Called with the writers locked out, so that a snapshot
+    // file can then be written from it without blocking them.
+    Snapshot snapshot();
+
+    interface Snapshot {
+        void forEach(BiConsumer<String, List<String>> action);
+    }
+}
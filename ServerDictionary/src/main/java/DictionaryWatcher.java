@@ -0,0 +1,64 @@
+import java.io.IOException;
+import java.nio.file.*;
+
+public class DictionaryWatcher extends Thread {
+
+    private Dictionary dictionary;
+    private Path dictionaryPath;
+
+    // Time to wait for an external editor to finish writing before reloading
+    private final long SETTLE_DELAY_MS = 200;
+
+    // Status Messages
+    private final String WATCHING = "Watching dictionary file for external changes: ";
+    private final String RELOADED = "Dictionary file changed externally, reloaded: ";
+
+    // Error Messages
+    private final String ERROR_WATCH = "Unable to watch the dictionary file for changes: ";
+    private final String ERROR_RELOAD = "Keeping the in-memory dictionary, external changes could not be loaded.";
+
+    public DictionaryWatcher(Dictionary dictionary) {
+        this.dictionary = dictionary;
+        this.dictionaryPath = Paths.get(dictionary.getDictionaryFilePath()).toAbsolutePath();
+        setDaemon(true);
+    }
+
+    public void run() {
+        Path directory = dictionaryPath.getParent();
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            System.out.println(WATCHING + dictionaryPath);
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean dictionaryChanged = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Other files in the same directory are ignored
+                    if (dictionaryPath.getFileName().equals(event.context())) {
+                        dictionaryChanged = true;
+                    }
+                }
+                key.reset();
+                if (dictionaryChanged) {
+                    reload();
+                }
+            }
+        } catch (IOException e) {
+            System.out.println(ERROR_WATCH + dictionaryPath);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload() throws InterruptedException {
+        Thread.sleep(SETTLE_DELAY_MS);
+        try {
+            // Writes made by the server itself do not trigger a reload
+            if (dictionary.reloadIfModified()) {
+                System.out.println(RELOADED + dictionaryPath);
+            }
+        } catch (IOHandlerException e) {
+            System.out.println(ERROR_RELOAD);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// When a write is acknowledged, selected with --durability
+public enum Durability {
+
+    MEMORY,  // once it is in memory, the flusher writes it to the dictionary file within the flush interval
+    LOGGED,  // once it is in the operation log, as the fsync policy syncs it
+    FLUSHED  // once the flusher has written a dictionary file containing it, writes in the same interval share the write
+}
@@ -0,0 +1,41 @@
+import java.util.concurrent.*;
+
+// How accepted connections are handed to ServerRequestHandler, selected with --executor
+public enum ExecutionMode {
+
+    THREAD,  // one platform thread per connection, unbounded
+    POOL,    // bounded platform thread pool with a bounded queue, excess connections are rejected
+    VIRTUAL; // one virtual thread per connection, requires a Java 21 runtime
+
+    private static final String VIRTUAL_EXECUTOR_FACTORY = "newVirtualThreadPerTaskExecutor";
+    private static final long POOL_KEEP_ALIVE_SECONDS = 60;
+
+    // Error Messages
+    private static final String ERROR_VIRTUAL_UNSUPPORTED = "Virtual threads require Java 21 or later, running on Java ";
+
+    public ExecutorService createExecutor(int poolSize, int queueSize) {
+        switch (this) {
+            case POOL:
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize,
+                        POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize),
+                        new ThreadPoolExecutor.AbortPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                return pool;
+
+            case VIRTUAL:
+                return createVirtualThreadExecutor();
+
+            default:
+                return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Looked up reflectively so that the build can stay on Java 17
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(VIRTUAL_EXECUTOR_FACTORY).invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException(ERROR_VIRTUAL_UNSUPPORTED + Runtime.version().feature());
+        }
+    }
+}
@@ -1,42 +1,82 @@
 import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
 
 public class IOHandler {
 
     // Error Messages
     private final String ERROR_EMPTY = " File contents may be empty.";
+    private final String ERROR_SYNTAX = " Invalid JSON: ";
     private final String ERROR_READ_JSON = "Unable to read any data from JSON file: ";
     private final String ERROR_WRITE_JSON = "Unable to write to the JSON file: ";
     private final String ERROR_FILE_CREATE = "Unable to create a new JSON File: ";
     private final String JSON_BRACKETS = "{}";
+    private final String TEMP_SUFFIX = ".tmp";
 
     public IOHandler(){}
 
-    public JSONObject readJSONFile(String filePath) throws IOHandlerException {
-        JSONParser parser = new JSONParser();
-        JSONObject jsonObject = null;
-        try {
-            FileReader reader = new FileReader(filePath);
-            Object object = parser.parse(reader);
-            jsonObject = (JSONObject) object;
-        } catch (Exception e) {
+    // Streams the entries of a dictionary file to the consumer without holding the document in memory,
+    // progress is told the number of bytes read so far. With a pool the file is parsed in chunks on its threads,
+    // the consumer is still called on this thread and in file order.
+    public void readJSONEntries(String filePath, BiConsumer<String, List<String>> entries, LongConsumer progress,
+                                ForkJoinPool pool) throws IOHandlerException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            if (pool != null) {
+                new JSONChunkReader(channel, pool, progress).readEntries(entries);
+            } else {
+                new JSONEntryReader(channel, progress).readEntries(entries);
+            }
+        } catch (JSONEntryReader.SyntaxException e) {
+            throw new IOHandlerException(ERROR_READ_JSON + filePath + ERROR_SYNTAX + e.getMessage());
+        } catch (IOException e) {
             throw new IOHandlerException(ERROR_READ_JSON + filePath + ERROR_EMPTY);
         }
-        return jsonObject;
     }
 
-    public void writeJSONFile(String filePath, JSONObject jsonObject) throws IOHandlerException {
+    // Streams the entries to a temporary file first, so a crash never leaves a partially written file behind
+    public void writeJSONEntriesAtomically(String filePath, DictionaryStore.Snapshot entries)
+            throws IOHandlerException {
+        Path path = Paths.get(filePath);
+        Path tempPath = Paths.get(filePath + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            JSONEntryWriter writer = new JSONEntryWriter(channel);
+            writer.start();
+            entries.forEach((word, definitions) -> {
+                try {
+                    writer.writeEntry(word, definitions);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+            channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IOHandlerException(ERROR_WRITE_JSON + filePath);
+        }
         try {
-            FileWriter file = new FileWriter(filePath);
-            file.write(jsonObject.toJSONString());
-            file.flush();
-            file.close();
-        } catch (Exception e) {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
             throw new IOHandlerException(ERROR_WRITE_JSON + filePath);
         }
+        syncDirectory(path);
+    }
+
+    // Makes a rename into the file's directory survive a crash. Some platforms cannot open a directory, there the
+    // rename is left to the file system.
+    public static void syncDirectory(Path filePath) {
+        Path directory = filePath.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
     }
 
     public ArrayList<String> convertJSONArray(JSONArray jsonArray) {
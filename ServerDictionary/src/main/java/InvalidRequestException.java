@@ -1,8 +1,21 @@
+import java.util.ArrayList;
+import java.util.List;
+
 public class InvalidRequestException extends Exception {
 
+    private List<String> invalidWords = new ArrayList<>(); // Words that failed a bulk request
+
     public InvalidRequestException(){}
 
     public InvalidRequestException(String message) {
         super(message);
     }
-}
\ No newline at end of file
+
+    public InvalidRequestException(List<String> invalidWords) {
+        this.invalidWords = invalidWords;
+    }
+
+    public List<String> getInvalidWords() {
+        return invalidWords;
+    }
+}
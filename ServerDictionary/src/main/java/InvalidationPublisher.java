@@ -0,0 +1,129 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Pushes the words the dictionary changes to subscribed connections, so that clients can keep near caches coherent.
+// A text connection subscribes with a request of action code 12 and from then on is only written to:
+//     Success:heartbeatMs   once it is subscribed
+//     Invalidate:word       for every word added, updated or removed, in the order of the changes
+//     Invalidate            when every word may have changed, after a reload or when the subscriber fell behind
+//     Heartbeat             after heartbeatMs without changes, so that a client notices a server that went away
+// Every subscriber has its own thread and a bounded queue, a slow one never holds up the dictionary's writers.
+public class InvalidationPublisher implements DictionaryListener {
+
+    private ServerMetrics serverMetrics;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final static int QUEUE_SIZE = 4096; // Changes waiting to be written to a subscriber
+    private final static long HEARTBEAT_INTERVAL_MS = 5000;
+
+    // Pushed Lines
+    private final static String SUBSCRIBED = RequestProcessor.REQUEST_SUCCESS + RequestProcessor.STRING_SEPARATOR
+            + HEARTBEAT_INTERVAL_MS;
+    private final static String INVALIDATE_ALL = "Invalidate";
+    private final static String INVALIDATE_WORD = INVALIDATE_ALL + RequestProcessor.STRING_SEPARATOR;
+    private final static String HEARTBEAT = "Heartbeat";
+    private final static byte LINE_SEPARATOR = '\n';
+
+    // Gauges
+    private final static String SUBSCRIBERS_GAUGE = "invalidation_subscribers";
+
+    // Error Messages
+    private final String ERROR_CLOSE_SOCKET = "Unable to close the subscriber socket.";
+
+    public InvalidationPublisher(ServerMetrics serverMetrics) {
+        this.serverMetrics = serverMetrics;
+        serverMetrics.registerGauge(SUBSCRIBERS_GAUGE, () -> subscribers.size());
+    }
+
+    // Takes over a connection that asked to subscribe, in blocking mode. Responses to the requests that came before
+    // the subscription and have not been sent yet are passed along and written first.
+    public void subscribe(Socket socket, ByteBuffer pendingOutput) {
+        long startTime = System.nanoTime();
+        Subscriber subscriber = new Subscriber(socket, pendingOutput);
+        subscribers.add(subscriber); // Changes from now on reach the subscriber after its acknowledgement
+        subscriber.start();
+        serverMetrics.recordRequest(RequestProcessor.SUBSCRIBE_CODE, RequestProcessor.REQUEST_SUCCESS,
+                System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void wordChanged(String word) {
+        // A line break would split the line, such words drop everything instead
+        boolean isPushable = word.indexOf('\n') == -1 && word.indexOf('\r') == -1;
+        String line = isPushable ? INVALIDATE_WORD + word : INVALIDATE_ALL;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.push(line);
+        }
+    }
+
+    @Override
+    public void dictionaryReplaced() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.push(INVALIDATE_ALL);
+        }
+    }
+
+    private class Subscriber extends Thread {
+
+        private Socket socket;
+        private ByteBuffer pendingOutput;
+        private final ArrayBlockingQueue<String> lines = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+        private Subscriber(Socket socket, ByteBuffer pendingOutput) {
+            super("invalidation-subscriber");
+            setDaemon(true);
+            this.socket = socket;
+            this.pendingOutput = pendingOutput;
+            lines.add(SUBSCRIBED);
+        }
+
+        // Called by the dictionary's writers one at a time. A full queue is replaced by a single line telling the
+        // client to drop everything, which covers every change it held.
+        private void push(String line) {
+            if (!lines.offer(line)) {
+                lines.clear();
+                lines.offer(INVALIDATE_ALL);
+            }
+        }
+
+        public void run() {
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                if (pendingOutput != null) {
+                    out.write(pendingOutput.array(), pendingOutput.position(), pendingOutput.remaining());
+                }
+                while (true) {
+                    String line = lines.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    writeLine(out, line != null ? line : HEARTBEAT);
+                    // Changes queued meanwhile go out in the same write
+                    while ((line = lines.poll()) != null) {
+                        writeLine(out, line);
+                    }
+                    out.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // The client went away, it subscribes again on a new connection
+            } finally {
+                subscribers.remove(this);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    System.out.println(ERROR_CLOSE_SOCKET);
+                }
+            }
+        }
+
+        private void writeLine(OutputStream out, String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write(LINE_SEPARATOR);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+// Reads a dictionary file with several JSONEntryReaders at once. A scan that only follows strings and brackets cuts
+// the file at the commas between entries, the chunks are parsed on a fork-join pool while the scan goes on, and their
+// entries are handed over in file order, so the consumer sees exactly what a single JSONEntryReader would give it.
+public class JSONChunkReader {
+
+    // The entries of one chunk, in file order, or the error that stopped its parse
+    private static class Chunk {
+        final long end;
+        final ArrayList<String> words = new ArrayList<>();
+        final ArrayList<List<String>> definitions = new ArrayList<>();
+        IOException error;
+
+        Chunk(long end) {
+            this.end = end;
+        }
+
+        void add(String word, List<String> definitionList) {
+            words.add(word);
+            definitions.add(definitionList);
+        }
+    }
+
+    private final FileChannel channel;
+    private final ForkJoinPool pool;
+    private final LongConsumer progress; // Told the end of every chunk handed over
+    // Scan state, UTF-8 never uses the bytes of '"', '\\', ',' and the brackets inside a multi-byte character
+    private final ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    private long windowStart;
+    private boolean isInString;
+    private boolean isEscaped;
+    private int depth;
+
+    private final static int BUFFER_SIZE = 1 << 16;
+    private final static long CHUNK_SIZE = 4L << 20;
+    private final static int CHUNKS_PER_THREAD = 2; // Parsed ahead of the consumer, bounds the entries held on the heap
+    private final static long NOT_FOUND = -1;
+
+    // Error Messages
+    private final static String MALFORMED = "malformed file";
+
+    public JSONChunkReader(FileChannel channel, ForkJoinPool pool, LongConsumer progress) {
+        this.channel = channel;
+        this.pool = pool;
+        this.progress = progress;
+    }
+
+    // Hands every entry to the consumer in file order on the calling thread. Files of a single chunk, and files the
+    // scan finds malformed, are read by a single JSONEntryReader, which also reports any syntax error.
+    public void readEntries(BiConsumer<String, List<String>> entries) throws IOException {
+        long start = scanObjectStart();
+        long end = start == NOT_FOUND ? NOT_FOUND : scanChunkEnd(start + CHUNK_SIZE);
+        if (end == NOT_FOUND || depth == 0) {
+            new JSONEntryReader(channel, progress).readEntries(entries);
+            return;
+        }
+        ArrayDeque<ForkJoinTask<Chunk>> pending = new ArrayDeque<>();
+        int maxPending = pool.getParallelism() * CHUNKS_PER_THREAD;
+        try {
+            while (true) {
+                pending.add(submit(start, end));
+                if (pending.size() > maxPending) {
+                    handOver(pending.poll(), entries);
+                }
+                if (depth == 0) { // The chunk ended at the object's closing brace
+                    break;
+                }
+                start = end + 1;
+                end = scanChunkEnd(start + CHUNK_SIZE);
+                if (end == NOT_FOUND) {
+                    throw syntaxError(null);
+                }
+            }
+            if (!scanTrailingSpace()) {
+                throw syntaxError(null);
+            }
+            while (!pending.isEmpty()) {
+                handOver(pending.poll(), entries);
+            }
+        } finally {
+            for (ForkJoinTask<Chunk> task : pending) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    private ForkJoinTask<Chunk> submit(long start, long end) {
+        return pool.submit(() -> {
+            Chunk chunk = new Chunk(end);
+            try {
+                new JSONEntryReader(channel, start, end, bytesRead -> {}).readChunk(chunk::add);
+            } catch (IOException e) {
+                chunk.error = e;
+            }
+            return chunk;
+        });
+    }
+
+    private void handOver(ForkJoinTask<Chunk> task, BiConsumer<String, List<String>> entries) throws IOException {
+        Chunk chunk = task.join();
+        if (chunk.error instanceof JSONEntryReader.SyntaxException) {
+            throw syntaxError((JSONEntryReader.SyntaxException) chunk.error);
+        }
+        if (chunk.error != null) {
+            throw chunk.error;
+        }
+        for (int i = 0; i < chunk.words.size(); i++) {
+            entries.accept(chunk.words.get(i), chunk.definitions.get(i));
+        }
+        progress.accept(chunk.end);
+    }
+
+    // A chunk's error gives its position within the chunk, so the file is read again from the start by a single
+    // reader, without handing anything over, to report it as the sequential path does
+    private JSONEntryReader.SyntaxException syntaxError(JSONEntryReader.SyntaxException chunkError)
+            throws IOException {
+        try {
+            new JSONEntryReader(channel, bytesRead -> {}).readEntries((word, definitions) -> {});
+        } catch (JSONEntryReader.SyntaxException e) {
+            return e;
+        }
+        return chunkError != null ? chunkError : new JSONEntryReader.SyntaxException(MALFORMED);
+    }
+
+    // Returns the offset just after the opening brace, or NOT_FOUND if anything but whitespace comes before it
+    private long scanObjectStart() throws IOException {
+        int next;
+        while ((next = nextByte()) != -1) {
+            if (next == '{') {
+                depth = 1;
+                return windowStart + window.position();
+            }
+            if (!isSpace(next)) {
+                return NOT_FOUND;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    // Returns the offset of the first comma between entries at or after minEnd, or of the closing brace if the
+    // object ends first, in which case depth drops to 0. NOT_FOUND if the file ends first or the object is closed
+    // by anything but a brace.
+    private long scanChunkEnd(long minEnd) throws IOException {
+        while (true) {
+            if (!window.hasRemaining() && !fillWindow()) {
+                return NOT_FOUND;
+            }
+            byte[] bytes = window.array();
+            for (int i = window.position(); i < window.limit(); i++) {
+                byte b = bytes[i];
+                if (isInString) {
+                    if (isEscaped) {
+                        isEscaped = false;
+                    } else if (b == '\\') {
+                        isEscaped = true;
+                    } else if (b == '"') {
+                        isInString = false;
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"':
+                        isInString = true;
+                        break;
+                    case '[':
+                    case '{':
+                        depth++;
+                        break;
+                    case ']':
+                    case '}':
+                        if (--depth == 0) {
+                            window.position(i + 1);
+                            return b == '}' ? windowStart + i : NOT_FOUND;
+                        }
+                        break;
+                    case ',':
+                        if (depth == 1 && windowStart + i >= minEnd) {
+                            window.position(i + 1);
+                            return windowStart + i;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            window.position(window.limit());
+        }
+    }
+
+    private boolean scanTrailingSpace() throws IOException {
+        int next;
+        while ((next = nextByte()) != -1) {
+            if (!isSpace(next)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextByte() throws IOException {
+        if (!window.hasRemaining() && !fillWindow()) {
+            return -1;
+        }
+        return window.get();
+    }
+
+    private boolean fillWindow() throws IOException {
+        windowStart += window.limit();
+        window.clear();
+        int read = channel.read(window, windowStart);
+        window.flip();
+        return read > 0;
+    }
+
+    private static boolean isSpace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
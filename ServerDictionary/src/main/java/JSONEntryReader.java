@@ -0,0 +1,230 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+// Streams the entries of a dictionary file, {"word": ["definition", ...], ...}, one at a time. Only a fixed-size
+// window of the file is held in memory, so the heap needed does not grow with the file.
+public class JSONEntryReader {
+
+    private final FileChannel channel;
+    private final long end; // Reading stops here, the end of a chunk or of the file
+    private final LongConsumer progress; // Told the number of bytes read so far after every read
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE).flip();
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE).flip();
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder text = new StringBuilder();
+    private boolean endOfInput;
+    private boolean drained;
+    private long position;
+    private long bytesRead;
+    private long charsRead; // Before the current window, for error positions
+
+    private final static int BUFFER_SIZE = 1 << 16;
+    private final static int END = -1;
+
+    // Error Messages
+    private final static String EMPTY_FILE = "empty file";
+    private final static String UNEXPECTED = "unexpected %s at character %d, expected %s";
+
+    public JSONEntryReader(FileChannel channel, LongConsumer progress) {
+        this(channel, 0, Long.MAX_VALUE, progress);
+    }
+
+    // Reads the bytes from start up to end only. Reads are positional, so readers of different ranges can share
+    // the channel.
+    public JSONEntryReader(FileChannel channel, long start, long end, LongConsumer progress) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+        this.progress = progress;
+    }
+
+    public static class SyntaxException extends IOException {
+        public SyntaxException(String message) {
+            super(message);
+        }
+    }
+
+    // Hands every entry to the consumer in file order, a word that appears twice is handed over twice
+    public void readEntries(BiConsumer<String, List<String>> entries) throws IOException {
+        int next = nextNonSpace();
+        if (next == END) {
+            throw new SyntaxException(EMPTY_FILE);
+        }
+        expect(next, '{', "{");
+        next = nextNonSpace();
+        if (next != '}') {
+            expect(readMembers(next, entries), '}', ", or }");
+        }
+        next = nextNonSpace();
+        if (next != END) {
+            throw unexpected(next, "end of file");
+        }
+    }
+
+    // Reads a run of entries cut out of the middle of an object, from the first entry to the comma or brace after
+    // the last one, both excluded
+    public void readChunk(BiConsumer<String, List<String>> entries) throws IOException {
+        int next = readMembers(nextNonSpace(), entries);
+        if (next != END) {
+            throw unexpected(next, ", or end of chunk");
+        }
+    }
+
+    // Reads "word": [...] pairs separated by commas, starting with the given character and returning the first
+    // one after them
+    private int readMembers(int next, BiConsumer<String, List<String>> entries) throws IOException {
+        while (true) {
+            String word = readString(next);
+            expect(nextNonSpace(), ':', ":");
+            entries.accept(word, readDefinitions());
+            next = nextNonSpace();
+            if (next != ',') {
+                return next;
+            }
+            next = nextNonSpace();
+        }
+    }
+
+    private ArrayList<String> readDefinitions() throws IOException {
+        ArrayList<String> definitions = new ArrayList<>();
+        expect(nextNonSpace(), '[', "[");
+        int next = nextNonSpace();
+        if (next == ']') {
+            return definitions;
+        }
+        while (true) {
+            definitions.add(readString(next));
+            next = nextNonSpace();
+            if (next == ']') {
+                return definitions;
+            }
+            expect(next, ',', ", or ]");
+            next = nextNonSpace();
+        }
+    }
+
+    // Reads a string whose opening quote is the given character
+    private String readString(int quote) throws IOException {
+        expect(quote, '"', "a string");
+        text.setLength(0);
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                throw unexpected(END, "\"");
+            }
+            // Copies the run up to the next quote or escape in one step
+            char[] window = chars.array();
+            int start = chars.position();
+            int end = start;
+            while (end < chars.limit() && window[end] != '"' && window[end] != '\\') {
+                end++;
+            }
+            text.append(window, start, end - start);
+            chars.position(end);
+            if (end == chars.limit()) {
+                continue;
+            }
+            if (chars.get() == '"') {
+                return text.toString();
+            }
+            text.append(readEscape());
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int escaped = next();
+        switch (escaped) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) escaped;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int hex = next();
+                    int digit = Character.digit(hex, 16);
+                    if (digit < 0) {
+                        throw unexpected(hex, "a hex digit");
+                    }
+                    value = value << 4 | digit;
+                }
+                return (char) value;
+            default:
+                throw unexpected(escaped, "an escape character");
+        }
+    }
+
+    private int nextNonSpace() throws IOException {
+        int next;
+        do {
+            next = next();
+        } while (next == ' ' || next == '\n' || next == '\r' || next == '\t');
+        return next;
+    }
+
+    private int next() throws IOException {
+        if (!chars.hasRemaining() && !fill()) {
+            return END;
+        }
+        return chars.get();
+    }
+
+    // Decodes the next window of characters, false at the end of the file or range
+    private boolean fill() throws IOException {
+        charsRead += chars.limit();
+        chars.clear();
+        while (chars.position() == 0 && !drained) {
+            if (!endOfInput) {
+                bytes.compact();
+                bytes.limit(bytes.position() + (int) Math.min(bytes.remaining(), end - position));
+                int read = position < end ? channel.read(bytes, position) : -1;
+                bytes.flip();
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    position += read;
+                    bytesRead += read;
+                    progress.accept(bytesRead);
+                }
+            }
+            decoder.decode(bytes, chars, endOfInput);
+            if (endOfInput) {
+                decoder.flush(chars);
+                drained = true;
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    private void expect(int actual, char expected, String description) throws SyntaxException {
+        if (actual != expected) {
+            throw unexpected(actual, description);
+        }
+    }
+
+    private SyntaxException unexpected(int actual, String expected) {
+        String found = actual == END ? "end of file" : "'" + (char) actual + "'";
+        return new SyntaxException(String.format(UNEXPECTED, found, charsRead + chars.position(), expected));
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Writes a dictionary file entry by entry through a fixed-size buffer, in the compact form json-simple writes
+public class JSONEntryWriter {
+
+    private final Writer writer;
+    private boolean isFirstEntry = true;
+
+    private final static int BUFFER_SIZE = 1 << 16;
+
+    public JSONEntryWriter(FileChannel channel) {
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE),
+                BUFFER_SIZE);
+    }
+
+    public void start() throws IOException {
+        writer.write('{');
+    }
+
+    public void writeEntry(String word, List<String> definitions) throws IOException {
+        if (!isFirstEntry) {
+            writer.write(',');
+        }
+        isFirstEntry = false;
+        writeString(word);
+        writer.write(":[");
+        for (int i = 0; i < definitions.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeString(definitions.get(i));
+        }
+        writer.write(']');
+    }
+
+    // Closes the document and writes out the buffer, the channel is left open for the caller to force and close
+    public void finish() throws IOException {
+        writer.write('}');
+        writer.flush();
+    }
+
+    private void writeString(String string) throws IOException {
+        writer.write('"');
+        int start = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20 && !Character.isSurrogate(c)) {
+                continue;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < string.length()
+                    && Character.isLowSurrogate(string.charAt(i + 1))) {
+                i++;
+                continue;
+            }
+            // Control characters and unpaired surrogates, which UTF-8 cannot encode, are escaped
+            writer.write(string, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\b':
+                    writer.write("\\b");
+                    break;
+                case '\f':
+                    writer.write("\\f");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    writer.write(String.format("\\u%04x", (int) c));
+                    break;
+            }
+        }
+        writer.write(string, start, string.length() - start);
+        writer.write('"');
+    }
+}
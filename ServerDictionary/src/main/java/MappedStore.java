@@ -0,0 +1,182 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+// Serves the entries of a memory-mapped BinarySnapshot in place, with the changes made since it was written kept on
+// the heap in front of it. Opening it reads nothing but the snapshot's header. Once a newer snapshot has been written
+// the store moves onto it, keeping only the changes made after it was taken.
+public class MappedStore implements DictionaryStore {
+
+    // A word's current state, definitions is null once it has been removed from the snapshot
+    private static class Change {
+        final String word;
+        final List<String> definitions;
+
+        Change(String word, List<String> definitions) {
+            this.word = word;
+            this.definitions = definitions;
+        }
+    }
+
+    // A snapshot and the changes in front of it, swapped together so that readers never mix two of them
+    private static class State {
+        final BinarySnapshot base; // Null if there is no snapshot yet
+        final ConcurrentSkipListMap<String, Change> changes;
+
+        State(BinarySnapshot base, ConcurrentSkipListMap<String, Change> changes) {
+            this.base = base;
+            this.changes = changes;
+        }
+    }
+
+    // The state a snapshot() copied, which rebase compares with the current changes
+    private static class StateSnapshot implements Snapshot {
+        final State state;
+
+        StateSnapshot(State state) {
+            this.state = state;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, List<String>> action) {
+            MappedStore.forEach(state.base, state.changes.values().iterator(), action);
+        }
+    }
+
+    private volatile State state;
+    private int size; // Only updated by the writers
+
+    public MappedStore() {
+        this(null);
+    }
+
+    public MappedStore(BinarySnapshot base) {
+        this.state = new State(base, new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER));
+        this.size = base == null ? 0 : base.size();
+    }
+
+    @Override
+    public List<String> get(String word) {
+        State current = state;
+        Change change = current.changes.get(word);
+        if (change != null) {
+            return change.definitions;
+        }
+        int index = baseIndex(current, word);
+        return index >= 0 ? current.base.definitions(index) : null;
+    }
+
+    @Override
+    public boolean containsKey(String word) {
+        return storedWord(word) != null;
+    }
+
+    @Override
+    public String storedWord(String word) {
+        State current = state;
+        Change change = current.changes.get(word);
+        if (change != null) {
+            return change.definitions != null ? change.word : null;
+        }
+        int index = baseIndex(current, word);
+        return index >= 0 ? current.base.word(index) : null;
+    }
+
+    @Override
+    public List<String> put(String word, List<String> definitions) {
+        String storedWord = storedWord(word);
+        List<String> oldDefinitions = storedWord != null ? get(word) : null;
+        state.changes.put(word, new Change(storedWord != null ? storedWord : word, definitions));
+        if (oldDefinitions == null) {
+            size++;
+        }
+        return oldDefinitions;
+    }
+
+    @Override
+    public List<String> remove(String word) {
+        List<String> oldDefinitions = get(word);
+        if (oldDefinitions == null) {
+            return null;
+        }
+        State current = state;
+        if (baseIndex(current, word) >= 0) {
+            current.changes.put(word, new Change(word, null)); // Hides the snapshot's entry
+        } else {
+            current.changes.remove(word);
+        }
+        size--;
+        return oldDefinitions;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // In String.CASE_INSENSITIVE_ORDER, which BinarySnapshot.write relies on
+    @Override
+    public void forEach(BiConsumer<String, List<String>> action) {
+        State current = state;
+        forEach(current.base, current.changes.values().iterator(), action);
+    }
+
+    // The snapshot is never modified, so a copy of the changes is enough
+    @Override
+    public Snapshot snapshot() {
+        State current = state;
+        return new StateSnapshot(new State(current.base, current.changes.clone()));
+    }
+
+    // Moves onto the BinarySnapshot written from one of this store's snapshots. Changes are never modified, only
+    // replaced, so the ones still the same as in that snapshot are in the new base and dropped from the heap. Called
+    // by the writers.
+    public void rebase(BinarySnapshot newBase, Snapshot written) {
+        ConcurrentSkipListMap<String, Change> writtenChanges = ((StateSnapshot) written).state.changes;
+        ConcurrentSkipListMap<String, Change> changes = state.changes;
+        ConcurrentSkipListMap<String, Change> laterChanges =
+                new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, Change> entry : changes.entrySet()) {
+            if (writtenChanges.get(entry.getKey()) != entry.getValue()) {
+                laterChanges.put(entry.getKey(), entry.getValue());
+            }
+        }
+        // Words added after the old base and removed since the snapshot are in the new base, hide them
+        for (Map.Entry<String, Change> entry : writtenChanges.entrySet()) {
+            if (!changes.containsKey(entry.getKey())) {
+                laterChanges.put(entry.getKey(), new Change(entry.getValue().word, null));
+            }
+        }
+        state = new State(newBase, laterChanges);
+    }
+
+    // Merges the snapshot's entries with the changes, both sorted by word
+    private static void forEach(BinarySnapshot base, Iterator<Change> changes, BiConsumer<String, List<String>> action) {
+        int baseSize = base == null ? 0 : base.size();
+        int index = 0;
+        String baseWord = index < baseSize ? base.word(index) : null;
+        Change change = changes.hasNext() ? changes.next() : null;
+        while (baseWord != null || change != null) {
+            int comparison = baseWord == null ? 1
+                    : change == null ? -1 : String.CASE_INSENSITIVE_ORDER.compare(baseWord, change.word);
+            if (comparison < 0) {
+                action.accept(baseWord, base.definitions(index));
+            } else {
+                if (change.definitions != null) {
+                    action.accept(change.word, change.definitions);
+                }
+                change = changes.hasNext() ? changes.next() : null;
+            }
+            if (comparison <= 0) {
+                index++;
+                baseWord = index < baseSize ? base.word(index) : null;
+            }
+        }
+    }
+
+    private static int baseIndex(State current, String word) {
+        return current.base == null ? -1 : current.base.find(word);
+    }
+}
@@ -0,0 +1,56 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+// Serves the server metrics over HTTP on the loopback interface, in the Prometheus text format
+public class MetricsEndpoint {
+
+    private int portNo;
+    private ServerMetrics serverMetrics;
+    private HttpServer httpServer;
+
+    private final String METRICS_PATH = "/metrics";
+    private final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private final int HTTP_OK = 200;
+    private final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private final String GET_METHOD = "GET";
+
+    public MetricsEndpoint(int portNo, ServerMetrics serverMetrics) {
+        this.portNo = portNo;
+        this.serverMetrics = serverMetrics;
+    }
+
+    public void start() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), portNo), 0);
+        httpServer.createContext(METRICS_PATH, this::handle);
+        httpServer.start(); // Requests are handled one at a time on the server's own thread
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals(GET_METHOD)) {
+                exchange.sendResponseHeaders(HTTP_METHOD_NOT_ALLOWED, -1);
+                return;
+            }
+            byte[] body = serverMetrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(HTTP_OK, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public void close() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+    }
+}
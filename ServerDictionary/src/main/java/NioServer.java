@@ -0,0 +1,604 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Non-blocking server engine, a few event loop threads multiplex every connection through a Selector. Writes may wait
+// for the disk or, on a replica, for the primary, so they run on worker threads; the connection is not read from until
+// the response is back, which keeps its responses in order.
+public class NioServer {
+
+    private int portNo;
+    private RequestProcessor requestProcessor;
+    private BinaryProtocol binaryProtocol;
+    private ServerMetrics serverMetrics;
+    private long idleTimeoutNanos;
+    private EventLoop[] eventLoops;
+    private ThreadPoolExecutor workers; // Runs the requests that may block, at most one per connection at a time
+    private ServerSocketChannel serverChannel;
+    private volatile boolean isRunning;
+
+    private final int ACCEPT_BACKLOG = 1024;
+    private final int READ_BUFFER_SIZE = 64 * 1024;
+    private final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private final int MAX_REQUEST_SIZE = 4 * 1024 * 1024; // Longest request line or frame accepted
+    private final int MAX_PENDING_OUTPUT = 4 * 1024 * 1024; // Stop reading from clients that do not read responses
+    private final long SELECT_TIMEOUT_MS = 1000; // Also how often idle connections are looked for
+    private final long WORKER_KEEP_ALIVE_SECONDS = 60;
+    private final byte STRING_SEPARATOR = ':';
+    private final byte LINE_SEPARATOR = '\n';
+    private final byte CARRIAGE_RETURN = '\r';
+    private final byte PLUS_SIGN = '+';
+    private final byte MINUS_SIGN = '-';
+    private final byte[] ERROR_RESPONSE = (RequestProcessor.REQUEST_ERROR + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private final String ERROR_STREAM = "Unable to maintain input/output streams from/to client socket.";
+    private final String ERROR_SELECTOR = "Unable to open a selector for the event loop.";
+
+    public NioServer(int portNo, RequestProcessor requestProcessor, ServerMetrics serverMetrics, int eventLoopNo,
+                     int idleTimeoutMs, int workerNo, int workerQueueSize) {
+        this.portNo = portNo;
+        this.requestProcessor = requestProcessor;
+        this.binaryProtocol = new BinaryProtocol(requestProcessor);
+        this.serverMetrics = serverMetrics;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        this.eventLoops = new EventLoop[eventLoopNo];
+        // Bounded like the blocking engine's pool, so a burst of writes cannot start a thread per connection
+        this.workers = new ThreadPoolExecutor(workerNo, workerNo, WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(workerQueueSize), task -> {
+                    Thread worker = new Thread(task, "nio-worker");
+                    worker.setDaemon(true);
+                    return worker;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    // Accepts connections on the calling thread and hands them to the event loops in turn
+    public void listen() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(portNo), ACCEPT_BACKLOG);
+        isRunning = true;
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(i);
+            eventLoops[i].start();
+        }
+        int nextEventLoop = 0;
+        while (isRunning) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            eventLoops[nextEventLoop].register(channel);
+            nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+            serverMetrics.connectionAccepted();
+        }
+    }
+
+    public void close() {
+        isRunning = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            System.out.println(ERROR_STREAM);
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.selector.wakeup();
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    // Per-connection state, only bytes that could not be handled yet are kept
+    private static class Connection {
+        private ByteBuffer pendingInput;  // Start of a request line or frame that has not fully arrived
+        private Boolean isBinary;         // Null until the first bytes tell the protocol apart
+        private ByteBuffer pendingOutput; // Responses the client has not been able to receive yet
+        private long lastActivity;
+        private int subscriptionCode;     // Action code of the subscription the connection is handed over for
+        private boolean isBusy;           // A worker is running one of its requests, it is not read from meanwhile
+    }
+
+    // Response of a request a worker ran, null if it failed unexpectedly
+    private static class Completion {
+        private final SelectionKey key;
+        private final byte[] response;
+
+        private Completion(SelectionKey key, byte[] response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+
+    private class EventLoop extends Thread {
+
+        private Selector selector;
+        private ConcurrentLinkedQueue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        // Shared by every connection of this loop, so idle connections hold no buffers
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private long lastIdleCheck = System.nanoTime();
+        // Action code of a subscription request, the lines after it are not processed
+        private int subscriptionCode = RequestProcessor.INVALID_CODE;
+        private ArrayList<SelectionKey> subscriptions = new ArrayList<>(); // Handed over once the keys are processed
+        // Set by a request that may block, the requests after it wait until a worker has run it
+        private Supplier<byte[]> blockingRequest;
+        private ConcurrentLinkedQueue<Completion> completions = new ConcurrentLinkedQueue<>();
+
+        private EventLoop(int eventLoopIndex) throws IOException {
+            super("nio-event-loop-" + eventLoopIndex);
+            setDaemon(true);
+            try {
+                selector = Selector.open();
+            } catch (IOException e) {
+                System.out.println(ERROR_SELECTOR);
+                throw e;
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            newChannels.add(channel);
+            selector.wakeup();
+        }
+
+        public void run() {
+            while (isRunning) {
+                try {
+                    selector.select(SELECT_TIMEOUT_MS);
+                } catch (IOException e) {
+                    System.out.println(ERROR_STREAM);
+                    continue;
+                }
+                registerNewChannels();
+                completeRequests();
+                processSelectedKeys();
+                handOverSubscriptions();
+                closeIdleConnections();
+            }
+        }
+
+        private void processSelectedKeys() {
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        read(key);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(key);
+                    }
+                } catch (IOException | CancelledKeyException e) {
+                    closeConnection(key);
+                }
+            }
+        }
+
+        // A channel can only be made blocking once its cancelled key has left the selector, which takes a select.
+        // The keys that select finds ready are processed right away, which may subscribe more connections.
+        private void handOverSubscriptions() {
+            while (!subscriptions.isEmpty()) {
+                handOverSubscribedKeys();
+            }
+        }
+
+        private void handOverSubscribedKeys() {
+            for (SelectionKey key : subscriptions) {
+                key.cancel();
+                serverMetrics.connectionClosed();
+            }
+            try {
+                selector.selectNow();
+            } catch (IOException e) {
+                System.out.println(ERROR_STREAM);
+            }
+            for (SelectionKey key : subscriptions) {
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    channel.configureBlocking(true);
+                    Connection connection = (Connection) key.attachment();
+                    requestProcessor.handOver(connection.subscriptionCode, channel.socket(), connection.pendingOutput);
+                } catch (IOException e) {
+                    closeChannel(channel);
+                }
+            }
+            subscriptions.clear();
+            processSelectedKeys();
+        }
+
+        private void registerNewChannels() {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                Connection connection = new Connection();
+                connection.lastActivity = System.nanoTime();
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, connection);
+                    serverMetrics.connectionOpened();
+                } catch (IOException e) {
+                    System.out.println(ERROR_STREAM);
+                }
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            readBuffer.clear();
+            if (connection.pendingInput != null) {
+                readBuffer.put(connection.pendingInput);
+                connection.pendingInput = null;
+            }
+            int bytesRead = channel.read(readBuffer);
+            connection.lastActivity = System.nanoTime();
+            readBuffer.flip();
+            writeBuffer.clear();
+            processInput(key, connection, bytesRead == -1);
+        }
+
+        // Handles the requests in the read buffer, up to one that has to run on a worker
+        private void processInput(SelectionKey key, Connection connection, boolean isEndOfStream) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            if (connection.isBinary == null) {
+                negotiateProtocol(connection);
+            }
+            if (connection.isBinary == Boolean.TRUE) {
+                processFrames(key, connection);
+            } else if (connection.isBinary == Boolean.FALSE) {
+                processLines(readBuffer);
+            }
+            if (subscriptionCode != RequestProcessor.INVALID_CODE) {
+                connection.subscriptionCode = subscriptionCode;
+                subscriptionCode = RequestProcessor.INVALID_CODE;
+                queueOutput(connection);
+                subscriptions.add(key);
+                key.interestOps(0);
+                return;
+            }
+            if (isEndOfStream && blockingRequest == null) {
+                // Like BufferedReader.readLine, an unterminated last line is still a request
+                if (connection.isBinary == Boolean.FALSE && readBuffer.hasRemaining()) {
+                    processLine(readBuffer.array(), readBuffer.position(), readBuffer.limit());
+                    readBuffer.position(readBuffer.limit());
+                    // Not with a connection the client has already closed
+                    subscriptionCode = RequestProcessor.INVALID_CODE;
+                }
+                if (blockingRequest == null) {
+                    queueOutput(connection);
+                    writeOutput(channel, connection);
+                    closeConnection(key);
+                    return;
+                }
+                // Closed once the worker's response is queued, reading again finds the end of the stream
+            }
+            if (blockingRequest != null) {
+                runOnWorker(key, connection);
+                if (readBuffer.hasRemaining()) {
+                    keepInput(connection);
+                }
+            } else if (readBuffer.hasRemaining()) {
+                keepPartialRequest(key, connection);
+            }
+            queueOutput(connection);
+            flush(key);
+        }
+
+        private void runOnWorker(SelectionKey key, Connection connection) {
+            Supplier<byte[]> request = blockingRequest;
+            blockingRequest = null;
+            connection.isBusy = true;
+            try {
+                workers.execute(() -> {
+                    byte[] response = null;
+                    try {
+                        response = request.get();
+                    } finally {
+                        completions.add(new Completion(key, response));
+                        selector.wakeup();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Workers and queue are full, the request is answered with an error on the loop's next pass
+                completions.add(new Completion(key, connection.isBinary == Boolean.TRUE
+                        ? binaryProtocol.encodeError() : ERROR_RESPONSE));
+                selector.wakeup();
+            }
+        }
+
+        // Queues the responses of the requests workers ran and carries on with the input that waited for them
+        private void completeRequests() {
+            Completion completion;
+            while ((completion = completions.poll()) != null) {
+                SelectionKey key = completion.key;
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (completion.response == null) {
+                    closeConnection(key);
+                    continue;
+                }
+                Connection connection = (Connection) key.attachment();
+                connection.isBusy = false;
+                connection.lastActivity = System.nanoTime();
+                readBuffer.clear();
+                if (connection.pendingInput != null) {
+                    readBuffer.put(connection.pendingInput);
+                    connection.pendingInput = null;
+                }
+                readBuffer.flip();
+                writeBuffer.clear();
+                appendBytes(completion.response);
+                try {
+                    processInput(key, connection, false);
+                } catch (IOException | CancelledKeyException e) {
+                    closeConnection(key);
+                }
+            }
+        }
+
+        // Keeps the requests following one a worker runs, they are handled once its response is back
+        private void keepInput(Connection connection) {
+            connection.pendingInput = ByteBuffer.allocate(readBuffer.remaining());
+            connection.pendingInput.put(readBuffer);
+            connection.pendingInput.flip();
+        }
+
+        // A client asks for the binary protocol by starting the connection with the handshake, which is acknowledged
+        private void negotiateProtocol(Connection connection) {
+            if (!readBuffer.hasRemaining()) {
+                return;
+            }
+            int start = readBuffer.position();
+            if (readBuffer.get(start) != BinaryProtocol.HANDSHAKE[0]) {
+                connection.isBinary = false;
+            } else if (readBuffer.remaining() >= BinaryProtocol.HANDSHAKE.length) {
+                // Anything else after the first byte is left to the text protocol to reject
+                connection.isBinary = readBuffer.get(start + 1) == BinaryProtocol.HANDSHAKE[1];
+                if (connection.isBinary) {
+                    readBuffer.position(start + BinaryProtocol.HANDSHAKE.length);
+                    writeBuffer.put(BinaryProtocol.HANDSHAKE_ACK);
+                }
+            }
+        }
+
+        // Handles every complete frame in the read buffer, leaving its position at the first incomplete one
+        private void processFrames(SelectionKey key, Connection connection) throws IOException {
+            while (readBuffer.remaining() >= BinaryProtocol.FRAME_LENGTH_BYTES && blockingRequest == null) {
+                int frameLength = readBuffer.getInt(readBuffer.position());
+                if (frameLength < 0 || frameLength > MAX_REQUEST_SIZE - BinaryProtocol.FRAME_LENGTH_BYTES) {
+                    rejectRequest(key, connection);
+                }
+                if (readBuffer.remaining() - BinaryProtocol.FRAME_LENGTH_BYTES < frameLength) {
+                    return;
+                }
+                int frameStart = readBuffer.position() + BinaryProtocol.FRAME_LENGTH_BYTES;
+                if (frameLength > 0 && requestProcessor.isBlocking(readBuffer.get(frameStart) & 0xFF)) {
+                    // The read buffer is reused before the worker gets to it
+                    ByteBuffer frame = ByteBuffer.wrap(Arrays.copyOfRange(readBuffer.array(), frameStart,
+                            frameStart + frameLength));
+                    blockingRequest = () -> binaryProtocol.process(frame);
+                } else {
+                    appendBytes(binaryProtocol.process(ByteBuffer.wrap(readBuffer.array(), frameStart, frameLength)));
+                }
+                readBuffer.position(frameStart + frameLength);
+            }
+        }
+
+        // Handles every complete line in the buffer, leaving its position at the first unterminated byte
+        private void processLines(ByteBuffer buffer) {
+            byte[] bytes = buffer.array();
+            int lineStart = buffer.position();
+            for (int i = lineStart; i < buffer.limit() && subscriptionCode == RequestProcessor.INVALID_CODE
+                    && blockingRequest == null; i++) {
+                if (bytes[i] == LINE_SEPARATOR) {
+                    processLine(bytes, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            buffer.position(lineStart);
+        }
+
+        private void keepPartialRequest(SelectionKey key, Connection connection) throws IOException {
+            if (readBuffer.remaining() == readBuffer.capacity()) {
+                // The partial request fills the whole buffer, grow it unless the request is too long
+                if (readBuffer.capacity() >= MAX_REQUEST_SIZE) {
+                    rejectRequest(key, connection);
+                }
+                ByteBuffer grownBuffer = ByteBuffer.allocate(readBuffer.capacity() * 2);
+                grownBuffer.put(readBuffer);
+                readBuffer = grownBuffer;
+                readBuffer.flip();
+            }
+            connection.pendingInput = ByteBuffer.allocate(readBuffer.remaining());
+            connection.pendingInput.put(readBuffer);
+            connection.pendingInput.flip();
+        }
+
+        // Answers an oversized request with an error and gives up on the connection
+        private void rejectRequest(SelectionKey key, Connection connection) throws IOException {
+            if (connection.isBinary == Boolean.TRUE) {
+                appendBytes(binaryProtocol.encodeError());
+            } else {
+                appendResponse(RequestProcessor.REQUEST_ERROR);
+            }
+            queueOutput(connection);
+            writeOutput((SocketChannel) key.channel(), connection);
+            throw new IOException(ERROR_STREAM);
+        }
+
+        // Parses actionCode:word:definition straight from the bytes, with the same results as String.split(":")
+        private void processLine(byte[] line, int start, int end) {
+            long startTime = System.nanoTime();
+            if (end > start && line[end - 1] == CARRIAGE_RETURN) {
+                end--;
+            }
+            while (end > start && line[end - 1] == STRING_SEPARATOR) {
+                end--; // Trailing empty fields are dropped, as split does
+            }
+            // Action code, accepting what Integer.parseInt accepts
+            int i = start;
+            int sign = 1;
+            if (i < end && (line[i] == PLUS_SIGN || line[i] == MINUS_SIGN)) {
+                sign = line[i] == MINUS_SIGN ? -1 : 1;
+                i++;
+            }
+            int digitStart = i;
+            long actionCode = 0;
+            while (i < end && line[i] != STRING_SEPARATOR) {
+                int digit = line[i] - '0';
+                actionCode = actionCode * 10 + digit;
+                if (digit < 0 || digit > 9 || actionCode > Integer.MAX_VALUE) {
+                    appendBytes(requestProcessor.invalidRequest(startTime));
+                    return;
+                }
+                i++;
+            }
+            if (i == digitStart) {
+                appendBytes(requestProcessor.invalidRequest(startTime));
+                return;
+            }
+            if (requestProcessor.isSubscription((int) (sign * actionCode))) {
+                subscriptionCode = (int) (sign * actionCode);
+                return;
+            }
+            int requestCode = (int) (sign * actionCode);
+            String[] fields = splitFields(line, i, end);
+            if (requestProcessor.isBlocking(requestCode)) {
+                blockingRequest = () -> requestProcessor.process(requestCode, fields);
+                return;
+            }
+            appendBytes(requestProcessor.process(requestCode, fields));
+        }
+
+        // Decodes the separator-delimited fields that follow the action code
+        private String[] splitFields(byte[] line, int separator, int end) {
+            int fieldNo = 0;
+            for (int i = separator; i < end; i++) {
+                if (line[i] == STRING_SEPARATOR) {
+                    fieldNo++;
+                }
+            }
+            String[] fields = new String[fieldNo];
+            for (int field = 0; field < fieldNo; field++) {
+                int fieldStart = separator + 1;
+                separator = indexOfSeparator(line, fieldStart, end);
+                fields[field] = new String(line, fieldStart, separator - fieldStart, StandardCharsets.UTF_8);
+            }
+            return fields;
+        }
+
+        private int indexOfSeparator(byte[] line, int from, int end) {
+            for (int i = from; i < end; i++) {
+                if (line[i] == STRING_SEPARATOR) {
+                    return i;
+                }
+            }
+            return end;
+        }
+
+        private void appendResponse(String response) {
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            reserveOutput(bytes.length + 1);
+            writeBuffer.put(bytes);
+            writeBuffer.put(LINE_SEPARATOR);
+        }
+
+        private void appendBytes(byte[] bytes) {
+            reserveOutput(bytes.length);
+            writeBuffer.put(bytes);
+        }
+
+        private void reserveOutput(int length) {
+            if (writeBuffer.remaining() < length) {
+                ByteBuffer grownBuffer = ByteBuffer.allocate(Math.max(writeBuffer.capacity() * 2,
+                        writeBuffer.position() + length));
+                writeBuffer.flip();
+                grownBuffer.put(writeBuffer);
+                writeBuffer = grownBuffer;
+            }
+        }
+
+        // Moves the responses of this read behind anything the connection still has to send
+        private void queueOutput(Connection connection) {
+            writeBuffer.flip();
+            if (!writeBuffer.hasRemaining()) {
+                return;
+            }
+            int pendingBytes = connection.pendingOutput == null ? 0 : connection.pendingOutput.remaining();
+            ByteBuffer output = ByteBuffer.allocate(pendingBytes + writeBuffer.remaining());
+            if (connection.pendingOutput != null) {
+                output.put(connection.pendingOutput);
+            }
+            output.put(writeBuffer);
+            output.flip();
+            connection.pendingOutput = output;
+        }
+
+        private void writeOutput(SocketChannel channel, Connection connection) throws IOException {
+            if (connection.pendingOutput != null) {
+                channel.write(connection.pendingOutput);
+                if (!connection.pendingOutput.hasRemaining()) {
+                    connection.pendingOutput = null;
+                }
+            }
+        }
+
+        private void flush(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            writeOutput((SocketChannel) key.channel(), connection);
+            // A busy connection is read from again once its worker is done
+            int readOps = connection.isBusy ? 0 : SelectionKey.OP_READ;
+            if (connection.pendingOutput == null) {
+                key.interestOps(readOps);
+            } else if (connection.pendingOutput.remaining() > MAX_PENDING_OUTPUT) {
+                // Client is not reading its responses, stop reading its requests until it catches up
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                key.interestOps(readOps | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void closeIdleConnections() {
+            long now = System.nanoTime();
+            // Walking every key is only worth it once per select timeout
+            if (now - lastIdleCheck < TimeUnit.MILLISECONDS.toNanos(SELECT_TIMEOUT_MS)) {
+                return;
+            }
+            lastIdleCheck = now;
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection != null && !connection.isBusy && now - connection.lastActivity > idleTimeoutNanos) {
+                    closeConnection(key);
+                }
+            }
+        }
+
+        private void closeConnection(SelectionKey key) {
+            if (key.isValid()) {
+                serverMetrics.connectionClosed(); // Counted once, a cancelled key stays in the key set for a while
+            }
+            key.cancel();
+            closeChannel(key.channel());
+        }
+
+        private void closeChannel(Channel channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.out.println(ERROR_STREAM);
+            }
+        }
+    }
+}
@@ -0,0 +1,383 @@
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+
+// Append-only log of dictionary mutations, one JSON record per line, replayed on top of the last snapshot
+public class OperationLog {
+
+    public enum SyncPolicy {
+        ALWAYS, // fsync before every append returns
+        GROUP,  // appends wait for a shared fsync issued every sync interval
+        NONE    // never wait, the log is fsynced in the background every sync interval
+    }
+
+    private Path logPath;
+    private SyncPolicy syncPolicy;
+    private long syncIntervalMs;
+    private ServerMetrics serverMetrics;
+    private FileChannel channel;
+    private long appendedSeq; // Number of records written to the channel
+    private long syncedSeq;   // Number of records known to be on disk
+    private boolean isOpen;
+    // An fsync failed, the kernel may have dropped the records it covered, so a later fsync proves nothing about them.
+    // Appends are refused until a compaction has rewritten the log from a snapshot.
+    private boolean isFailed;
+
+    // Record Fields
+    private static final String OPERATION_FIELD = "op";
+    private static final String WORD_FIELD = "word";
+    private static final String DEFINITIONS_FIELD = "definitions";
+    private static final String PUT_OPERATION = "put";
+    private static final String REMOVE_OPERATION = "remove";
+    private static final String BATCH_OPERATION = "batch";
+    private static final String OPERATIONS_FIELD = "operations";
+    private static final String RECORD_SEPARATOR = "\n";
+    private static final String ERROR_PARSE_RECORD = "Unable to parse the operation record: ";
+
+    private final String LOG_SUFFIX = ".log";
+    private final String TEMP_SUFFIX = ".tmp";
+
+    // Error Messages
+    private final String ERROR_OPEN_LOG = "Unable to open the operation log: ";
+    private final String ERROR_APPEND_LOG = "Unable to append to the operation log: ";
+    private final String ERROR_SYNC_LOG = "Unable to fsync the operation log: ";
+    private final String ERROR_READ_LOG = "Unable to read the operation log: ";
+    private final String ERROR_TRUNCATE_LOG = "Unable to truncate the operation log: ";
+    private final String TORN_RECORD = "Ignoring incomplete record at the end of the operation log: ";
+
+    public OperationLog(String dictionaryFilePath, SyncPolicy syncPolicy, long syncIntervalMs,
+                        ServerMetrics serverMetrics) {
+        this.logPath = Paths.get(dictionaryFilePath + LOG_SUFFIX);
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMs = syncIntervalMs;
+        this.serverMetrics = serverMetrics;
+    }
+
+    public synchronized void open() throws IOHandlerException {
+        try {
+            channel = openChannel();
+            discardTornRecord();
+            isOpen = true;
+        } catch (IOException e) {
+            throw new IOHandlerException(ERROR_OPEN_LOG + logPath);
+        }
+        if (syncPolicy != SyncPolicy.ALWAYS) {
+            Thread syncer = new Thread(this::runSyncer, "operation-log-syncer");
+            syncer.setDaemon(true);
+            syncer.start();
+        }
+    }
+
+    // Appends are written at the end, the channel is also read to check for a torn record
+    private FileChannel openChannel() throws IOException {
+        FileChannel logChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        logChannel.position(logChannel.size());
+        return logChannel;
+    }
+
+    // Cuts off a partial record left by a crash so that new records do not get appended to it
+    private void discardTornRecord() throws IOException {
+        long position = channel.size();
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        while (position > 0) {
+            lastByte.clear();
+            channel.read(lastByte, position - 1);
+            if (lastByte.get(0) == RECORD_SEPARATOR.charAt(0)) {
+                break;
+            }
+            position--;
+        }
+        if (position < channel.size()) {
+            System.out.println(TORN_RECORD + logPath);
+            channel.truncate(position);
+        }
+    }
+
+    @SuppressWarnings("unchecked") // json-simple only has raw collection types
+    public static String putRecord(String word, List<String> definitions) {
+        JSONObject record = new JSONObject();
+        JSONArray definitionArray = new JSONArray();
+        definitionArray.addAll(definitions);
+        record.put(OPERATION_FIELD, PUT_OPERATION);
+        record.put(WORD_FIELD, word);
+        record.put(DEFINITIONS_FIELD, definitionArray);
+        return record.toJSONString();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static String removeRecord(String word) {
+        JSONObject record = new JSONObject();
+        record.put(OPERATION_FIELD, REMOVE_OPERATION);
+        record.put(WORD_FIELD, word);
+        return record.toJSONString();
+    }
+
+    // The word of a put or remove record and its definitions, null for a remove. Replicas receive their primary's
+    // changes as records.
+    public static Map.Entry<String, List<String>> parseRecord(String record) throws IOHandlerException {
+        try {
+            JSONObject parsedRecord = (JSONObject) new JSONParser().parse(record);
+            String word = (String) parsedRecord.get(WORD_FIELD);
+            Object operation = parsedRecord.get(OPERATION_FIELD);
+            if (word != null && PUT_OPERATION.equals(operation)) {
+                JSONArray definitions = (JSONArray) parsedRecord.get(DEFINITIONS_FIELD);
+                return new AbstractMap.SimpleImmutableEntry<>(word, new IOHandler().convertJSONArray(definitions));
+            }
+            if (word != null && REMOVE_OPERATION.equals(operation)) {
+                return new AbstractMap.SimpleImmutableEntry<>(word, null);
+            }
+        } catch (Exception e) {
+            // Malformed JSON or fields of the wrong type, reported below
+        }
+        throw new IOHandlerException(ERROR_PARSE_RECORD + record);
+    }
+
+    // Wraps several records into one, so that a bulk request is replayed completely or not at all
+    public static String batchRecord(List<String> records) {
+        return "{\"" + OPERATION_FIELD + "\":\"" + BATCH_OPERATION + "\",\"" + OPERATIONS_FIELD + "\":["
+                + String.join(",", records) + "]}";
+    }
+
+    // Writes a record to the log and returns its sequence number, pass it to awaitDurable before acknowledging
+    public long append(String record) throws IOHandlerException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + RECORD_SEPARATOR).getBytes(StandardCharsets.UTF_8));
+        synchronized (this) {
+            if (isFailed) {
+                throw new IOHandlerException(ERROR_SYNC_LOG + logPath);
+            }
+            try {
+                long startTime = System.nanoTime();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                serverMetrics.recordLogAppend(buffer.limit(), System.nanoTime() - startTime);
+                appendedSeq++;
+                if (syncPolicy == SyncPolicy.ALWAYS) {
+                    try {
+                        force();
+                    } catch (IOException e) {
+                        isFailed = true;
+                        throw e;
+                    }
+                    syncedSeq = appendedSeq;
+                }
+                return appendedSeq;
+            } catch (IOException e) {
+                throw new IOHandlerException(ERROR_APPEND_LOG + logPath);
+            }
+        }
+    }
+
+    // Blocks until the record with the given sequence number has been fsynced, according to the sync policy
+    public synchronized void awaitDurable(long seq) throws IOHandlerException {
+        if (syncPolicy != SyncPolicy.GROUP) {
+            return;
+        }
+        try {
+            while (syncedSeq < seq && isOpen) {
+                if (isFailed) {
+                    throw new IOHandlerException(ERROR_SYNC_LOG + logPath);
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOHandlerException(ERROR_SYNC_LOG + logPath);
+        }
+    }
+
+    // Group commit, one fsync covers every record appended since the last one
+    private void runSyncer() {
+        try {
+            while (true) {
+                Thread.sleep(syncIntervalMs);
+                sync();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void force() throws IOException {
+        force(channel);
+    }
+
+    private void force(FileChannel logChannel) throws IOException {
+        long startTime = System.nanoTime();
+        logChannel.force(false);
+        serverMetrics.recordFsync(System.nanoTime() - startTime);
+    }
+
+    // The fsync runs without the monitor, so appends, and the dictionary's writers behind them, carry on meanwhile.
+    // It covers the records appended before it started, later ones wait for the next sync.
+    private void sync() {
+        FileChannel logChannel;
+        long seq;
+        synchronized (this) {
+            if (!isOpen || isFailed || syncedSeq == appendedSeq) {
+                return;
+            }
+            logChannel = channel;
+            seq = appendedSeq;
+        }
+        try {
+            force(logChannel);
+        } catch (ClosedChannelException e) {
+            return; // Replaced by truncateBefore or closed, both fsync the records first
+        } catch (IOException e) {
+            System.out.println(ERROR_SYNC_LOG + logPath);
+            synchronized (this) {
+                // Unless the log was replaced meanwhile, its waiting writers are told their records may be lost
+                if (channel == logChannel) {
+                    isFailed = true;
+                    notifyAll();
+                }
+            }
+            return;
+        }
+        synchronized (this) {
+            syncedSeq = Math.max(syncedSeq, seq);
+            notifyAll();
+        }
+    }
+
+    // Applies every complete record in the log to the dictionary, replaying a record more than once is harmless
+    public void replay(DictionaryStore dictionary) throws IOHandlerException {
+        if (!Files.exists(logPath)) {
+            return;
+        }
+        JSONParser parser = new JSONParser();
+        try (BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject record;
+                try {
+                    record = (JSONObject) parser.parse(line);
+                } catch (Exception e) {
+                    // A crash in the middle of an append leaves a partial last record behind, a bad record followed
+                    // by others is corruption, and skipping it would lose every committed write after it
+                    if (hasRecordAfter(reader)) {
+                        System.out.println(ERROR_PARSE_RECORD + line);
+                        throw new IOHandlerException(ERROR_READ_LOG + logPath);
+                    }
+                    System.out.println(TORN_RECORD + logPath);
+                    break;
+                }
+                if (BATCH_OPERATION.equals(record.get(OPERATION_FIELD))) {
+                    for (Object operation : (JSONArray) record.get(OPERATIONS_FIELD)) {
+                        apply((JSONObject) operation, dictionary);
+                    }
+                } else {
+                    apply(record, dictionary);
+                }
+            }
+        } catch (IOException e) {
+            throw new IOHandlerException(ERROR_READ_LOG + logPath);
+        }
+    }
+
+    private boolean hasRecordAfter(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void apply(JSONObject record, DictionaryStore dictionary) {
+        String word = (String) record.get(WORD_FIELD);
+        if (PUT_OPERATION.equals(record.get(OPERATION_FIELD))) {
+            dictionary.put(word, new IOHandler().convertJSONArray((JSONArray) record.get(DEFINITIONS_FIELD)));
+        } else {
+            dictionary.remove(word);
+        }
+    }
+
+    // Position to pass to truncateBefore once a snapshot containing everything logged so far is on disk
+    public synchronized long position() throws IOHandlerException {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new IOHandlerException(ERROR_READ_LOG + logPath);
+        }
+    }
+
+    public synchronized boolean isFailed() {
+        return isFailed;
+    }
+
+    public synchronized long size() {
+        try {
+            return isOpen ? channel.size() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Drops the records before the given position by atomically replacing the log with its tail
+    public synchronized void truncateBefore(long position) throws IOHandlerException {
+        Path tempPath = Paths.get(logPath + TEMP_SUFFIX);
+        try {
+            channel.force(false);
+            try (FileChannel tail = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long remaining = channel.size() - position;
+                long copied = 0;
+                while (copied < remaining) {
+                    copied += channel.transferTo(position + copied, remaining - copied, tail);
+                }
+                tail.force(true);
+            }
+            channel.close();
+            Files.move(tempPath, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            IOHandler.syncDirectory(logPath);
+            channel = openChannel();
+            syncedSeq = appendedSeq;
+            isFailed = false; // The records before the position are in the snapshot, the tail has been fsynced
+            notifyAll();
+        } catch (IOException e) {
+            reopen();
+            throw new IOHandlerException(ERROR_TRUNCATE_LOG + logPath);
+        }
+    }
+
+    // Keeps appending to the existing log if it could not be replaced
+    private void reopen() {
+        if (!channel.isOpen()) {
+            try {
+                channel = openChannel();
+            } catch (IOException e) {
+                System.out.println(ERROR_OPEN_LOG + logPath);
+            }
+        }
+    }
+
+    public synchronized void close() {
+        if (!isOpen) {
+            return;
+        }
+        isOpen = false;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            System.out.println(ERROR_SYNC_LOG + logPath);
+        }
+        notifyAll();
+    }
+}
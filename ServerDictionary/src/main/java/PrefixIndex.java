@@ -0,0 +1,306 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Trie over the dictionary's words for prefix and fuzzy queries. Characters are folded the way String.CASE_INSENSITIVE_ORDER
+// compares them, so completions come back in the dictionary's order and with the casing the words were added with.
+// Queries walk it without locking: writers are serialised by the dictionary's write lock and never modify a child
+// array once it is published, they replace it with a copy.
+public class PrefixIndex {
+
+    private final static Node[] NO_CHILDREN = new Node[0];
+    private final static int MAX_FUZZY_LENGTH = 64; // Longer words get no suggestions, the search grows with length
+
+    private final Node root = new Node('\0');
+
+    private static class Node {
+        final char key;
+        volatile Node[] children = NO_CHILDREN; // Sorted by key
+        volatile String word;                   // Set if a word ends at this node
+
+        Node(char key) {
+            this.key = key;
+        }
+    }
+
+    public PrefixIndex() {
+    }
+
+    // Builds the trie of a store's words on a fork-join pool. The words are split at the first character they do not
+    // all share, the first one in a real dictionary, and the subtree under every value of it is built on its own.
+    // The words must differ ignoring case, as a store's do, so the order they are added in does not matter.
+    public static PrefixIndex build(DictionaryStore.Snapshot entries, ForkJoinPool pool) {
+        PrefixIndex index = new PrefixIndex();
+        ArrayList<String> words = new ArrayList<>();
+        entries.forEach((word, definitions) -> words.add(word));
+        if (words.isEmpty()) {
+            return index;
+        }
+        String firstWord = words.get(0);
+        int sharedLength = firstWord.length();
+        for (String word : words) {
+            int i = 0;
+            while (i < sharedLength && i < word.length() && fold(word.charAt(i)) == fold(firstWord.charAt(i))) {
+                i++;
+            }
+            sharedLength = i;
+        }
+        Node node = index.root;
+        for (int i = 0; i < sharedLength; i++) {
+            Node child = new Node(fold(firstWord.charAt(i)));
+            node.children = new Node[]{child};
+            node = child;
+        }
+        TreeMap<Character, ArrayList<String>> wordsByKey = new TreeMap<>();
+        for (String word : words) {
+            if (word.length() == sharedLength) {
+                node.word = word;
+            } else {
+                wordsByKey.computeIfAbsent(fold(word.charAt(sharedLength)), key -> new ArrayList<>()).add(word);
+            }
+        }
+        int depth = sharedLength + 1;
+        List<ForkJoinTask<Node>> subtrees = new ArrayList<>();
+        for (ArrayList<String> subtreeWords : wordsByKey.values()) {
+            subtrees.add(pool.submit(() -> {
+                PrefixIndex subtree = new PrefixIndex();
+                subtreeWords.forEach(subtree::add);
+                return subtree.nodeAt(subtreeWords.get(0), depth);
+            }));
+        }
+        Node[] children = new Node[subtrees.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = subtrees.get(i).join();
+        }
+        node.children = children;
+        return index;
+    }
+
+    // Called with the write lock held, a word that is already indexed keeps its casing as the dictionary does
+    public void add(String word) {
+        Node node = root;
+        for (int i = 0; i < word.length(); i++) {
+            char key = fold(word.charAt(i));
+            Node[] children = node.children;
+            int index = indexOf(children, key);
+            if (index >= 0) {
+                node = children[index];
+                continue;
+            }
+            Node child = new Node(key);
+            int insertAt = -index - 1;
+            Node[] copy = new Node[children.length + 1];
+            System.arraycopy(children, 0, copy, 0, insertAt);
+            copy[insertAt] = child;
+            System.arraycopy(children, insertAt, copy, insertAt + 1, children.length - insertAt);
+            node.children = copy;
+            node = child;
+        }
+        if (node.word == null) {
+            node.word = word;
+        }
+    }
+
+    // Called with the write lock held, nodes left without a word below them are unlinked
+    public void remove(String word) {
+        Node[] path = new Node[word.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < word.length(); i++) {
+            Node[] children = path[i].children;
+            int index = indexOf(children, fold(word.charAt(i)));
+            if (index < 0) {
+                return;
+            }
+            path[i + 1] = children[index];
+        }
+        path[word.length()].word = null;
+        for (int i = word.length(); i > 0; i--) {
+            Node node = path[i];
+            if (node.word != null || node.children.length > 0) {
+                break;
+            }
+            Node parent = path[i - 1];
+            Node[] children = parent.children;
+            int index = indexOf(children, node.key);
+            Node[] copy = new Node[children.length - 1];
+            System.arraycopy(children, 0, copy, 0, index);
+            System.arraycopy(children, index + 1, copy, index, children.length - index - 1);
+            parent.children = copy;
+        }
+    }
+
+    // Up to limit words starting with the prefix, in dictionary order. Only the matching part of the trie is visited.
+    public ArrayList<String> complete(String prefix, int limit) {
+        ArrayList<String> words = new ArrayList<>();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            Node[] children = node.children;
+            int index = indexOf(children, fold(prefix.charAt(i)));
+            node = index >= 0 ? children[index] : null;
+        }
+        if (node == null) {
+            return words;
+        }
+        // Depth-first in key order, without recursion so that long words cannot overflow the stack
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty() && words.size() < limit) {
+            Node next = pending.pop();
+            String word = next.word;
+            if (word != null) {
+                words.add(word);
+            }
+            Node[] children = next.children;
+            for (int i = children.length - 1; i >= 0; i--) {
+                pending.push(children[i]);
+            }
+        }
+        return words;
+    }
+
+    // Up to limit words following the given one in dictionary order, which need not be indexed itself. An empty word
+    // starts from the first word, so the whole index can be paged through by passing the last word of each page.
+    public ArrayList<String> after(String word, int limit) {
+        ArrayList<String> words = new ArrayList<>();
+        // The subtrees to visit are pushed in reverse: siblings following the word's path from the root down, then the
+        // words extending it, which come first
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        Node node = root;
+        for (int i = 0; i < word.length() && node != null; i++) {
+            Node[] children = node.children;
+            int index = indexOf(children, fold(word.charAt(i)));
+            int firstFollowing = index >= 0 ? index + 1 : -index - 1;
+            for (int j = children.length - 1; j >= firstFollowing; j--) {
+                pending.push(children[j]);
+            }
+            node = index >= 0 ? children[index] : null;
+        }
+        if (node != null) {
+            Node[] children = node.children;
+            for (int i = children.length - 1; i >= 0; i--) {
+                pending.push(children[i]);
+            }
+        }
+        while (!pending.isEmpty() && words.size() < limit) {
+            Node next = pending.pop();
+            String nextWord = next.word;
+            if (nextWord != null) {
+                words.add(nextWord);
+            }
+            Node[] children = next.children;
+            for (int i = children.length - 1; i >= 0; i--) {
+                pending.push(children[i]);
+            }
+        }
+        return words;
+    }
+
+    public boolean isEmpty() {
+        return root.children.length == 0;
+    }
+
+    // Up to limit words within maxDistance edits (insertions, deletions, substitutions and transpositions of adjacent
+    // characters) of the word, closest first and in dictionary order within a distance. Walks the trie keeping one row
+    // of the edit distance table per level, and stops descending once a row has no entry within maxDistance.
+    public ArrayList<String> suggest(String word, int maxDistance, int limit) {
+        ArrayList<String> suggestions = new ArrayList<>();
+        if (word.length() > MAX_FUZZY_LENGTH) {
+            return suggestions;
+        }
+        char[] target = new char[word.length()];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = fold(word.charAt(i));
+        }
+        // A path can only be within maxDistance while it is at most maxDistance characters longer than the word
+        int maxDepth = target.length + maxDistance;
+        int[][] rows = new int[maxDepth + 1][target.length + 1];
+        for (int j = 0; j <= target.length; j++) {
+            rows[0][j] = j;
+        }
+        ArrayList<ArrayList<String>> matchesByDistance = new ArrayList<>();
+        for (int distance = 0; distance <= maxDistance; distance++) {
+            matchesByDistance.add(new ArrayList<>());
+        }
+        search(root, 0, target, new char[maxDepth], rows, maxDistance, matchesByDistance);
+        for (ArrayList<String> matches : matchesByDistance) {
+            for (int i = 0; i < matches.size() && suggestions.size() < limit; i++) {
+                suggestions.add(matches.get(i));
+            }
+        }
+        return suggestions;
+    }
+
+    // Children are visited in key order, so the matches of every distance are collected in dictionary order
+    private void search(Node node, int depth, char[] target, char[] path, int[][] rows, int maxDistance,
+                        ArrayList<ArrayList<String>> matchesByDistance) {
+        if (depth == path.length) {
+            return;
+        }
+        int[] previous = rows[depth];
+        int[] current = rows[depth + 1];
+        // Only entries within maxDistance of the diagonal can lead to a match, the ones just outside are capped
+        int first = Math.max(1, depth + 1 - maxDistance);
+        int last = Math.min(target.length, depth + 1 + maxDistance);
+        int outOfReach = maxDistance + 1;
+        for (Node child : node.children) {
+            char key = child.key;
+            path[depth] = key;
+            current[first - 1] = first == 1 ? depth + 1 : outOfReach;
+            if (last < target.length) {
+                current[last + 1] = outOfReach;
+            }
+            int rowMinimum = current[first - 1];
+            for (int j = first; j <= last; j++) {
+                int cost = target[j - 1] == key ? 0 : 1;
+                int distance = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (depth > 0 && j > 1 && target[j - 1] == path[depth - 1] && target[j - 2] == key) {
+                    distance = Math.min(distance, rows[depth - 1][j - 2] + 1);
+                }
+                current[j] = distance;
+                rowMinimum = Math.min(rowMinimum, distance);
+            }
+            String word = child.word;
+            if (word != null && last == target.length && current[target.length] <= maxDistance) {
+                matchesByDistance.get(current[target.length]).add(word);
+            }
+            if (rowMinimum <= maxDistance) {
+                search(child, depth + 1, target, path, rows, maxDistance, matchesByDistance);
+            }
+        }
+    }
+
+    // The node reached by the first depth characters of an indexed word
+    private Node nodeAt(String word, int depth) {
+        Node node = root;
+        for (int i = 0; i < depth; i++) {
+            Node[] children = node.children;
+            node = children[indexOf(children, fold(word.charAt(i)))];
+        }
+        return node;
+    }
+
+    private static int indexOf(Node[] children, char key) {
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleKey = children[middle].key;
+            if (middleKey < key) {
+                low = middle + 1;
+            } else if (middleKey > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Same folding as String.CASE_INSENSITIVE_ORDER
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
@@ -0,0 +1,230 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Passes the writes a replica receives on to its primary over the binary protocol and answers with the primary's
+// response, so that any word or definition the primary accepts is forwarded unchanged. The change reaches the
+// replica's own copy through the replication stream, shortly after the response. Writes while the primary is
+// unreachable are answered with an error instead.
+public class PrimaryForwarder {
+
+    private String primaryHost;
+    private int primaryPortNo;
+    private final ConcurrentLinkedQueue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+
+    private final int MAX_IDLE_CONNECTIONS = 8;
+    private final int CONNECT_TIMEOUT_MS = 2000;
+    private final int RESPONSE_TIMEOUT_MS = 10000;
+    private final int MAX_WORD_BYTES = 0xFFFF; // Length prefix of a word in a frame
+
+    // Response Status, indexed by the status byte
+    private final String[] REQUEST_STATUSES = {RequestProcessor.REQUEST_SUCCESS, RequestProcessor.REQUEST_FAILURE,
+            RequestProcessor.REQUEST_ERROR};
+
+    private static class Connection {
+        private SocketChannel channel;
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+    }
+
+    // Writes the fields of a request frame that follow its action code
+    private interface FrameWriter {
+        void write(DataOutputStream frame) throws IOException;
+    }
+
+    public PrimaryForwarder(String primaryHost, int primaryPortNo) {
+        this.primaryHost = primaryHost;
+        this.primaryPortNo = primaryPortNo;
+    }
+
+    // Add, remove and update
+    public Response execute(int actionCode, String word, String[] definitions) {
+        List<String> definitionList = definitions == null ? new ArrayList<>() : Arrays.asList(definitions);
+        return forward(actionCode, frame -> {
+            writeWord(frame, word);
+            writeStrings(frame, definitionList);
+        });
+    }
+
+    public Response bulkPut(int actionCode, Map<String, String[]> entries) {
+        return forward(actionCode, frame -> {
+            writeWord(frame, "");
+            frame.writeInt(entries.size());
+            for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+                writeWord(frame, entry.getKey());
+                writeStrings(frame, Arrays.asList(entry.getValue()));
+            }
+        });
+    }
+
+    // The words are carried as the definitions of an empty word
+    public Response bulkRemove(Collection<String> words) {
+        return forward(RequestProcessor.BULK_REMOVE_CODE, frame -> {
+            writeWord(frame, "");
+            writeStrings(frame, words);
+        });
+    }
+
+    // Returns the request frame with its length prefix, or null if a word is too long for the frame
+    private byte[] encodeFrame(int actionCode, FrameWriter frameWriter) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream frame = new DataOutputStream(body);
+        try {
+            frame.writeByte(actionCode);
+            frameWriter.write(frame);
+            ByteArrayOutputStream request = new ByteArrayOutputStream(BinaryProtocol.FRAME_LENGTH_BYTES + body.size());
+            new DataOutputStream(request).writeInt(body.size());
+            body.writeTo(request);
+            return request.toByteArray();
+        } catch (IOException e) {
+            return null; // Writing to memory only fails on a word that is too long
+        }
+    }
+
+    private void writeWord(DataOutputStream frame, String word) throws IOException {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_WORD_BYTES) {
+            throw new IOException();
+        }
+        frame.writeShort(bytes.length);
+        frame.write(bytes);
+    }
+
+    private void writeStrings(DataOutputStream frame, Collection<String> strings) throws IOException {
+        frame.writeInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            frame.writeInt(bytes.length);
+            frame.write(bytes);
+        }
+    }
+
+    // A request is only sent once more when it cannot have reached the primary: the idle connection it was meant for
+    // turned out to be closed, or writing it failed. Once it is written a lost or late response is answered with an
+    // error, as the primary may have applied the write and sending it again could apply it twice.
+    private Response forward(int actionCode, FrameWriter frameWriter) {
+        byte[] request = encodeFrame(actionCode, frameWriter);
+        if (request == null) {
+            return new Response(RequestProcessor.REQUEST_ERROR);
+        }
+        Connection connection = pollIdleConnection();
+        try {
+            if (connection == null || !send(connection, request)) {
+                if (connection != null) {
+                    close(connection);
+                }
+                connection = connect();
+                if (!send(connection, request)) {
+                    close(connection);
+                    return new Response(RequestProcessor.REQUEST_ERROR);
+                }
+            }
+        } catch (IOException e) {
+            return new Response(RequestProcessor.REQUEST_ERROR);
+        }
+        try {
+            return receive(connection);
+        } catch (IOException e) {
+            close(connection);
+            return new Response(RequestProcessor.REQUEST_ERROR);
+        }
+    }
+
+    // Skips the idle connections the primary has closed in the meantime, or that hold bytes no request asked for
+    private Connection pollIdleConnection() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            try {
+                connection.channel.configureBlocking(false);
+                int bytesRead = connection.in.available() > 0 ? 1 : connection.channel.read(ByteBuffer.allocate(1));
+                connection.channel.configureBlocking(true);
+                if (bytesRead == 0) {
+                    return connection;
+                }
+            } catch (IOException e) {
+                // Unusable
+            }
+            close(connection);
+        }
+        return null;
+    }
+
+    // Returns false if the request could not be written
+    private boolean send(Connection connection, byte[] request) {
+        try {
+            connection.out.write(request);
+            connection.out.flush();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Response receive(Connection connection) throws IOException {
+        connection.in.readInt(); // Frame length, the fields are read as they come
+        int statusByte = connection.in.readUnsignedByte();
+        String status = statusByte < REQUEST_STATUSES.length ? REQUEST_STATUSES[statusByte]
+                : RequestProcessor.REQUEST_ERROR;
+        // The words that failed a bulk request
+        int valueCount = connection.in.readInt();
+        ArrayList<String> values = new ArrayList<>();
+        for (int i = 0; i < valueCount; i++) {
+            byte[] bytes = new byte[connection.in.readInt()];
+            connection.in.readFully(bytes);
+            values.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        if (idleConnections.size() < MAX_IDLE_CONNECTIONS) {
+            idleConnections.add(connection);
+        } else {
+            close(connection);
+        }
+        return new Response(status, values);
+    }
+
+    private Connection connect() throws IOException {
+        Connection connection = new Connection();
+        connection.channel = SocketChannel.open();
+        connection.socket = connection.channel.socket();
+        try {
+            connection.socket.connect(new InetSocketAddress(primaryHost, primaryPortNo), CONNECT_TIMEOUT_MS);
+            connection.socket.setSoTimeout(RESPONSE_TIMEOUT_MS);
+            connection.socket.setTcpNoDelay(true);
+            connection.in = new DataInputStream(new BufferedInputStream(connection.socket.getInputStream()));
+            connection.out = new DataOutputStream(new BufferedOutputStream(connection.socket.getOutputStream()));
+            connection.out.write(BinaryProtocol.HANDSHAKE);
+            connection.out.flush();
+            if (connection.in.readByte() != BinaryProtocol.HANDSHAKE_ACK) {
+                throw new IOException();
+            }
+            return connection;
+        } catch (IOException e) {
+            connection.socket.close();
+            throw e;
+        }
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.socket.close();
+        } catch (IOException e) {
+            // Already unusable
+        }
+    }
+
+    public void close() {
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            close(connection);
+        }
+    }
+}
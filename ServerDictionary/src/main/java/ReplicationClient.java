@@ -0,0 +1,204 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// Keeps the dictionary of a replica a copy of its primary's. Connects with a replication request, loads the snapshot
+// the primary streams first and then applies every change it makes, in order. Whenever the stream breaks off, the
+// replica connects again and loads a new snapshot, serving the copy it has meanwhile. See ReplicationPublisher.
+public class ReplicationClient extends Thread {
+
+    private Dictionary dictionary;
+    private String primaryHost;
+    private int primaryPortNo;
+    private volatile Socket socket;
+    private volatile boolean isRunning = true;
+    private volatile boolean isConnected; // Set once the snapshot is loaded
+    private volatile long appliedSeq;     // The primary's last change applied here
+    private volatile long latestSeq;      // The primary's last change as of the last line received
+    private volatile long appliedTimeMs;  // When the last applied change was made on the primary
+    private volatile long lastContactMs;  // When the last line was received
+    private String lastError;             // Reported once until replication succeeds again
+
+    private final int CONNECT_TIMEOUT_MS = 2000;
+    private final long RECONNECT_DELAY_MS = 1000;
+    private final int MISSED_HEARTBEATS = 3; // Before the primary is taken to be gone
+
+    // Streamed Lines
+    private final String SEPARATOR = RequestProcessor.STRING_SEPARATOR;
+    private final String ACCEPTED = RequestProcessor.REQUEST_SUCCESS + SEPARATOR;
+    private final String ENTRY = "Entry" + SEPARATOR;
+    private final String SNAPSHOT_END = "Snapshot" + SEPARATOR;
+    private final String OPERATION = "Operation" + SEPARATOR;
+    private final String HEARTBEAT = "Heartbeat" + SEPARATOR;
+    private final int OPERATION_FIELDS = 5; // Operation:seq:latestSeq:timeMs:record
+    private final int HEARTBEAT_FIELDS = 3; // Heartbeat:latestSeq:timeMs
+
+    // Gauges
+    private final String CONNECTED_GAUGE = "replication_connected";
+    private final String LAG_OPERATIONS_GAUGE = "replication_lag_operations";
+    private final String LAG_MS_GAUGE = "replication_lag_ms";
+    private final String LAST_CONTACT_GAUGE = "replication_last_contact_ms";
+
+    // Error Messages
+    private final String ERROR_REFUSED = "The primary refused to replicate: ";
+    private final String ERROR_STREAM = "Unexpected line in the replication stream: ";
+    private final String ERROR_GAP = "Changes missing from the replication stream, expected %d but received %d";
+    private final String ERROR_REPLICATE = "Unable to replicate from %s:%d, retrying: %s%n";
+
+    // Status Messages
+    private final String REPLICATING = "Replicating the dictionary of the primary at %s:%d%n";
+    private final String SNAPSHOT_LOADED = "Loaded the primary's snapshot up to change %d in %d ms%n";
+
+    public ReplicationClient(Dictionary dictionary, String primaryHost, int primaryPortNo,
+                             ServerMetrics serverMetrics) {
+        super("replication-client");
+        setDaemon(true);
+        this.dictionary = dictionary;
+        this.primaryHost = primaryHost;
+        this.primaryPortNo = primaryPortNo;
+        serverMetrics.registerGauge(CONNECTED_GAUGE, () -> isConnected ? 1 : 0);
+        serverMetrics.registerGauge(LAG_OPERATIONS_GAUGE, () -> Math.max(0, latestSeq - appliedSeq));
+        serverMetrics.registerGauge(LAG_MS_GAUGE, this::lagMs);
+        serverMetrics.registerGauge(LAST_CONTACT_GAUGE,
+                () -> lastContactMs == 0 ? -1 : System.currentTimeMillis() - lastContactMs);
+    }
+
+    // How long ago the oldest change not applied yet was made, as far as the replica knows. Measured with the
+    // primary's clock, so replicas on other machines need synchronised clocks.
+    private long lagMs() {
+        if (appliedSeq >= latestSeq) {
+            return 0;
+        }
+        return Math.max(0, System.currentTimeMillis() - appliedTimeMs);
+    }
+
+    public void run() {
+        System.out.printf(REPLICATING, primaryHost, primaryPortNo);
+        while (isRunning) {
+            try {
+                replicate();
+            } catch (IOException | IOHandlerException e) {
+                String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                if (isRunning && !Objects.equals(error, lastError)) {
+                    System.out.printf(ERROR_REPLICATE, primaryHost, primaryPortNo, error);
+                }
+                lastError = error;
+            } finally {
+                isConnected = false;
+                closeSocket();
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void replicate() throws IOException, IOHandlerException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(primaryHost, primaryPortNo), CONNECT_TIMEOUT_MS);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        out.write(RequestProcessor.REPLICATE_CODE + "\n");
+        out.flush();
+        String line = readLine(in);
+        if (!line.startsWith(ACCEPTED)) {
+            throw new IOException(ERROR_REFUSED + line);
+        }
+        socket.setSoTimeout((int) (parseNumber(line.substring(ACCEPTED.length())) * MISSED_HEARTBEATS));
+        loadSnapshot(in);
+        while (true) {
+            line = readLine(in);
+            if (line.startsWith(OPERATION)) {
+                String[] fields = line.split(SEPARATOR, OPERATION_FIELDS);
+                if (fields.length < OPERATION_FIELDS) {
+                    throw new IOException(ERROR_STREAM + line);
+                }
+                long seq = parseNumber(fields[1]);
+                if (seq != appliedSeq + 1) {
+                    throw new IOException(String.format(ERROR_GAP, appliedSeq + 1, seq));
+                }
+                Map.Entry<String, List<String>> change = OperationLog.parseRecord(fields[4]);
+                dictionary.applyReplicated(change.getKey(), change.getValue());
+                appliedTimeMs = parseNumber(fields[3]);
+                latestSeq = Math.max(parseNumber(fields[2]), seq);
+                appliedSeq = seq;
+            } else if (line.startsWith(HEARTBEAT)) {
+                String[] fields = line.split(SEPARATOR, HEARTBEAT_FIELDS);
+                if (fields.length < HEARTBEAT_FIELDS) {
+                    throw new IOException(ERROR_STREAM + line);
+                }
+                latestSeq = parseNumber(fields[1]);
+            } else {
+                throw new IOException(ERROR_STREAM + line);
+            }
+        }
+    }
+
+    // Streams the entries into the dictionary file, which is then loaded in place of the current copy
+    private void loadSnapshot(BufferedReader in) throws IOException, IOHandlerException {
+        long startTime = System.nanoTime();
+        long[] snapshotSeq = {-1};
+        dictionary.loadReplicaSnapshot(entries -> {
+            try {
+                String line;
+                while ((line = readLine(in)).startsWith(ENTRY)) {
+                    Map.Entry<String, List<String>> entry =
+                            OperationLog.parseRecord(line.substring(ENTRY.length()));
+                    entries.accept(entry.getKey(), entry.getValue());
+                }
+                if (!line.startsWith(SNAPSHOT_END)) {
+                    throw new IOException(ERROR_STREAM + line);
+                }
+                snapshotSeq[0] = parseNumber(line.substring(SNAPSHOT_END.length()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (IOHandlerException e) {
+                throw new UncheckedIOException(new IOException(e.getMessage()));
+            }
+        });
+        appliedSeq = snapshotSeq[0];
+        latestSeq = snapshotSeq[0];
+        isConnected = true;
+        lastError = null;
+        System.out.printf(SNAPSHOT_LOADED, snapshotSeq[0], (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private String readLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null) {
+            throw new EOFException();
+        }
+        lastContactMs = System.currentTimeMillis();
+        return line;
+    }
+
+    private long parseNumber(String field) throws IOException {
+        try {
+            return Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            throw new IOException(ERROR_STREAM + field);
+        }
+    }
+
+    public void close() {
+        isRunning = false;
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        Socket currentSocket = socket;
+        if (currentSocket != null) {
+            try {
+                currentSocket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
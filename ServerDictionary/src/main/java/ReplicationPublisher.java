@@ -0,0 +1,210 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Streams the dictionary to replicas, servers started with --replica-of that serve queries from their own copy.
+// A text connection asks for the stream with a request of action code 14 and from then on is only written to:
+//     Success:heartbeatMs                               once it is accepted
+//     Entry:record                                      for every entry of a snapshot of the dictionary
+//     Snapshot:seq                                      after the snapshot, which holds the changes up to seq
+//     Operation:seq:latestSeq:timeMs:record             for every word added, updated or removed after it, in order
+//     Heartbeat:latestSeq:timeMs                        after heartbeatMs without changes
+// Records are the operation log's put and remove records, latestSeq the last change made on this server when the
+// line was written and timeMs when the change was made, from which the replica tells how far it lags behind. After a
+// reload, or when a replica falls too far behind, its connection is closed and it loads a new snapshot. The changes
+// made while a snapshot is streamed queue up behind it, so until the replica has caught up with them it may fall
+// behind by as many more changes as the snapshot has entries.
+public class ReplicationPublisher implements DictionaryListener {
+
+    private Dictionary dictionary;
+    private ServerMetrics serverMetrics;
+    private final List<Replica> replicas = new CopyOnWriteArrayList<>();
+    private volatile long changeSeq; // Changes made since startup, counted with the write lock held
+
+    private final static int QUEUE_SIZE = 65536; // Changes waiting to be written to a replica
+    private final static long HEARTBEAT_INTERVAL_MS = 1000;
+    private final static Operation RESYNC = new Operation(0, 0, null); // Ends a replica's stream
+
+    // Streamed Lines
+    private final static String SEPARATOR = RequestProcessor.STRING_SEPARATOR;
+    private final static String ACCEPTED = RequestProcessor.REQUEST_SUCCESS + SEPARATOR + HEARTBEAT_INTERVAL_MS;
+    private final static String ENTRY = "Entry" + SEPARATOR;
+    private final static String SNAPSHOT_END = "Snapshot" + SEPARATOR;
+    private final static String OPERATION = "Operation" + SEPARATOR;
+    private final static String HEARTBEAT = "Heartbeat" + SEPARATOR;
+    private final static byte LINE_SEPARATOR = '\n';
+
+    // Gauges
+    private final static String REPLICAS_GAUGE = "replication_replicas";
+
+    // Error Messages
+    private final String ERROR_CLOSE_SOCKET = "Unable to close the replica socket.";
+
+    private static class Operation {
+        final long seq;
+        final long timeMs;
+        final String record;
+
+        Operation(long seq, long timeMs, String record) {
+            this.seq = seq;
+            this.timeMs = timeMs;
+            this.record = record;
+        }
+    }
+
+    public ReplicationPublisher(Dictionary dictionary, ServerMetrics serverMetrics) {
+        this.dictionary = dictionary;
+        this.serverMetrics = serverMetrics;
+        serverMetrics.registerGauge(REPLICAS_GAUGE, () -> replicas.size());
+    }
+
+    // Takes over a connection that asked for the replication stream, in blocking mode. Responses to the requests that
+    // came before it and have not been sent yet are passed along and written first.
+    public void subscribe(Socket socket, ByteBuffer pendingOutput) {
+        long startTime = System.nanoTime();
+        new Replica(socket, pendingOutput).start();
+        serverMetrics.recordRequest(RequestProcessor.REPLICATE_CODE, RequestProcessor.REQUEST_SUCCESS,
+                System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void wordChanged(String word) {
+        long seq = ++changeSeq;
+        if (replicas.isEmpty()) {
+            return;
+        }
+        // Called with the write lock held, the store already holds the change
+        String record;
+        try {
+            record = OperationLog.putRecord(word, dictionary.query(word));
+        } catch (InvalidRequestException e) {
+            record = OperationLog.removeRecord(word);
+        }
+        Operation operation = new Operation(seq, System.currentTimeMillis(), record);
+        for (Replica replica : replicas) {
+            replica.push(operation);
+        }
+    }
+
+    @Override
+    public void dictionaryReplaced() {
+        changeSeq++;
+        for (Replica replica : replicas) {
+            replica.resync();
+        }
+    }
+
+    private class Replica extends Thread {
+
+        private Socket socket;
+        private ByteBuffer pendingOutput;
+        private long snapshotSeq;
+        private final LinkedBlockingQueue<Operation> operations = new LinkedBlockingQueue<>();
+        private volatile int queueLimit = QUEUE_SIZE;
+
+        private Replica(Socket socket, ByteBuffer pendingOutput) {
+            super("replication-stream");
+            setDaemon(true);
+            this.socket = socket;
+            this.pendingOutput = pendingOutput;
+        }
+
+        // Called by the dictionary's writers one at a time
+        private void push(Operation operation) {
+            if (operations.size() >= queueLimit) {
+                resync();
+            } else {
+                operations.offer(operation);
+            }
+        }
+
+        // Stops the stream, the replica connects again and starts over from a new snapshot
+        private void resync() {
+            replicas.remove(this);
+            operations.clear();
+            operations.offer(RESYNC);
+        }
+
+        public void run() {
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                if (pendingOutput != null) {
+                    out.write(pendingOutput.array(), pendingOutput.position(), pendingOutput.remaining());
+                }
+                writeLine(out, ACCEPTED);
+                out.flush();
+                // Every change after the snapshot is queued, the ones in it are not
+                DictionaryStore.Snapshot snapshot = dictionary.snapshot(() -> {
+                    snapshotSeq = changeSeq;
+                    queueLimit = QUEUE_SIZE + dictionary.size();
+                    replicas.add(this);
+                });
+                try {
+                    snapshot.forEach((word, definitions) -> {
+                        try {
+                            writeLine(out, ENTRY + OperationLog.putRecord(word, definitions));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writeLine(out, SNAPSHOT_END + snapshotSeq);
+                out.flush();
+                streamOperations(out);
+            } catch (IOException | InterruptedException e) {
+                // The replica went away or has to start over, it connects again
+            } finally {
+                replicas.remove(this);
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    System.out.println(ERROR_CLOSE_SOCKET);
+                }
+            }
+        }
+
+        private void streamOperations(OutputStream out) throws IOException, InterruptedException {
+            ArrayList<Operation> batch = new ArrayList<>();
+            while (true) {
+                Operation operation = operations.poll(HEARTBEAT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (operation == null) {
+                    writeLine(out, HEARTBEAT + changeSeq + SEPARATOR + System.currentTimeMillis());
+                    out.flush();
+                    continue;
+                }
+                // Changes queued meanwhile go out in the same write
+                batch.add(operation);
+                operations.drainTo(batch);
+                long latestSeq = changeSeq;
+                for (Operation next : batch) {
+                    if (next == RESYNC) {
+                        return;
+                    }
+                    writeLine(out, OPERATION + next.seq + SEPARATOR + latestSeq + SEPARATOR + next.timeMs
+                            + SEPARATOR + next.record);
+                }
+                batch.clear();
+                out.flush();
+                if (queueLimit > QUEUE_SIZE && operations.size() < QUEUE_SIZE) {
+                    queueLimit = QUEUE_SIZE; // Caught up with the changes made during the snapshot
+                }
+            }
+        }
+
+        private void writeLine(OutputStream out, String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.write(LINE_SEPARATOR);
+        }
+    }
+}
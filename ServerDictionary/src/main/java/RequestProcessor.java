@@ -0,0 +1,378 @@
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+// Executes a single request against the dictionary, shared by the blocking and NIO server engines
+public class RequestProcessor {
+
+    private Dictionary dictionary;
+    private ServerMetrics serverMetrics;
+    private ResponseCache responseCache; // Null when responses are not cached
+    private InvalidationPublisher invalidationPublisher;
+    private ReplicationPublisher replicationPublisher;
+    private PrimaryForwarder primaryForwarder; // Set on a replica, which passes writes on to its primary
+
+    // Request Status
+    public final static String REQUEST_SUCCESS = "Success";
+    public final static String REQUEST_FAILURE = "Failure";
+    public final static String REQUEST_ERROR = "Error";
+
+    // Action Codes
+    public final static int QUERY_CODE = 1;
+    public final static int ADD_CODE = 2;
+    public final static int REMOVE_CODE = 3;
+    public final static int UPDATE_CODE = 4;
+    public final static int MULTI_QUERY_CODE = 5;  // 5:word:word...
+    public final static int BULK_ADD_CODE = 6;     // 6:word:definition:word:definition...
+    public final static int BULK_UPDATE_CODE = 7;  // 7:word:definition:word:definition...
+    public final static int BULK_REMOVE_CODE = 8;  // 8:word:word...
+    public final static int PREFIX_CODE = 9;       // 9:prefix or 9:prefix:limit
+    public final static int SUGGEST_CODE = 10;     // 10:word, a query that answers a miss with similar words
+    public final static int SEARCH_CODE = 11;      // 11:terms or 11:terms:offset:limit, searches the definitions
+    public final static int SUBSCRIBE_CODE = 12;   // 12, turns a text connection into a stream of changed words
+    public final static int SCAN_CODE = 13;        // 13:limit or 13:limit:afterWord, pages through every entry
+    public final static int REPLICATE_CODE = 14;   // 14, turns a text connection into a replica's operation stream
+    public final static int INVALID_CODE = -1;     // Requests whose action code could not be read
+
+    // Client Request Indexes
+    private final int ACTION_CODE_INDEX = 0;
+    private final int WORD_INDEX = 0; // Within the fields following the action code
+    private final int DEFINITION_INDEX = 1;
+
+    private final int DEFAULT_PREFIX_LIMIT = 10;
+    private final int MAX_PREFIX_LIMIT = 1000;
+    private final int SUGGESTION_LIMIT = 5;
+    private final int DEFAULT_SEARCH_LIMIT = 10;
+    private final int MAX_SEARCH_LIMIT = 100;
+    private final int MAX_SCAN_LIMIT = 1000;
+    private final int SHORT_WORD_LENGTH = 4; // Words up to this length get suggestions within one edit, others two
+
+    private final String DEFINITION_SEPARATOR = "\\*"; // Handles word with multiple meanings
+    public final static String STRING_SEPARATOR = ":";
+    private final String LINE_SEPARATOR = "\n";
+
+    public RequestProcessor(Dictionary dictionary, ServerMetrics serverMetrics, ResponseCache responseCache) {
+        this.dictionary = dictionary;
+        this.serverMetrics = serverMetrics;
+        this.responseCache = responseCache;
+    }
+
+    // Request format => actionCode:word:definition, response format => requestStatus:definitions.
+    // The response is returned as its UTF-8 line, newline included, ready to be written to the socket.
+    public byte[] process(String request) {
+        long startTime = System.nanoTime();
+        String[] processedLine = request.split(STRING_SEPARATOR);
+        if (processedLine.length == 0) {
+            return invalidRequest(startTime);
+        }
+        int actionCode;
+        try {
+            actionCode = Integer.parseInt(processedLine[ACTION_CODE_INDEX]);
+        } catch (NumberFormatException e) {
+            return invalidRequest(startTime);
+        }
+        return process(actionCode, Arrays.copyOfRange(processedLine, ACTION_CODE_INDEX + 1, processedLine.length));
+    }
+
+    // Subscriptions are not answered here, the server engine hands the connection over with handOver.
+    // Returns the action code of a subscribing request, INVALID_CODE for every other request.
+    public int subscriptionCode(String request) {
+        int separator = request.indexOf(STRING_SEPARATOR);
+        try {
+            int actionCode = Integer.parseInt(request, 0, separator == -1 ? request.length() : separator, 10);
+            return isSubscription(actionCode) ? actionCode : INVALID_CODE;
+        } catch (NumberFormatException e) {
+            return INVALID_CODE;
+        }
+    }
+
+    // Writes wait until they are durable and, on a replica, for the primary, so non-blocking engines run them apart
+    public boolean isBlocking(int actionCode) {
+        switch (actionCode) {
+            case ADD_CODE:
+            case REMOVE_CODE:
+            case UPDATE_CODE:
+            case BULK_ADD_CODE:
+            case BULK_UPDATE_CODE:
+            case BULK_REMOVE_CODE:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    public boolean isSubscription(int actionCode) {
+        return actionCode == SUBSCRIBE_CODE || actionCode == REPLICATE_CODE;
+    }
+
+    // Passes a connection that subscribed to the publisher of its action code, which writes to it from then on
+    public void handOver(int actionCode, Socket socket, ByteBuffer pendingOutput) {
+        if (actionCode == REPLICATE_CODE) {
+            replicationPublisher.subscribe(socket, pendingOutput);
+        } else {
+            invalidationPublisher.subscribe(socket, pendingOutput);
+        }
+    }
+
+    public void setInvalidationPublisher(InvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    public void setReplicationPublisher(ReplicationPublisher replicationPublisher) {
+        this.replicationPublisher = replicationPublisher;
+    }
+
+    public void setPrimaryForwarder(PrimaryForwarder primaryForwarder) {
+        this.primaryForwarder = primaryForwarder;
+    }
+
+    // Fields are the parts of a text request following the action code, without trailing empty fields
+    public byte[] process(int actionCode, String[] fields) {
+        long startTime = System.nanoTime();
+        if (actionCode == QUERY_CODE && fields.length > WORD_INDEX && isCaching()) {
+            return cachedQuery(fields[WORD_INDEX], ResponseCache.TEXT, this::encodeText, startTime);
+        }
+        Response response = processFields(actionCode, fields);
+        record(actionCode, startTime, response);
+        return encodeText(response);
+    }
+
+    // Missing or malformed action code, counted as an error of the invalid action by either engine
+    public byte[] invalidRequest(long startTime) {
+        Response response = new Response(REQUEST_ERROR);
+        record(INVALID_CODE, startTime, response);
+        return encodeText(response);
+    }
+
+    private byte[] encodeText(Response response) {
+        return (response.toText() + LINE_SEPARATOR).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isCaching() {
+        return responseCache != null;
+    }
+
+    // A query answered with the encoded response of the protocol asking, from the response cache if it holds it.
+    // Otherwise the dictionary answers and the response is cached if the word was found, misses are not cached.
+    public byte[] cachedQuery(String word, int encoding, Function<Response, byte[]> encoder, long startTime) {
+        byte[] cachedResponse = responseCache.get(word, encoding);
+        if (cachedResponse != null) {
+            serverMetrics.recordRequest(QUERY_CODE, REQUEST_SUCCESS, System.nanoTime() - startTime);
+            return cachedResponse;
+        }
+        long cacheVersion = responseCache.version();
+        Response response = execute(QUERY_CODE, word, null);
+        record(QUERY_CODE, startTime, response);
+        byte[] encodedResponse = encoder.apply(response);
+        if (response.getStatus().equals(REQUEST_SUCCESS)) {
+            responseCache.put(word, encoding, cacheVersion, encodedResponse);
+        }
+        return encodedResponse;
+    }
+
+    private Response processFields(int actionCode, String[] fields) {
+        switch (actionCode) {
+            case MULTI_QUERY_CODE:
+                return multiQuery(fields);
+
+            case BULK_ADD_CODE:
+            case BULK_UPDATE_CODE:
+                if (fields.length % 2 != 0) {
+                    return new Response(REQUEST_ERROR);
+                }
+                // Repeated words collapse into their last entry
+                TreeMap<String, String[]> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 0; i < fields.length; i += 2) {
+                    entries.put(fields[i], processDefinitions(fields[i + 1]));
+                }
+                return bulkPut(actionCode, entries);
+
+            case BULK_REMOVE_CODE:
+                return bulkRemove(Arrays.asList(fields));
+
+            case SEARCH_CODE:
+                // The fields after the terms are the page, passed in place of the definitions
+                String terms = fields.length > WORD_INDEX ? fields[WORD_INDEX] : null;
+                return execute(actionCode, terms, fields.length > DEFINITION_INDEX
+                        ? Arrays.copyOfRange(fields, DEFINITION_INDEX, fields.length) : null);
+
+            default:
+                String word = fields.length > WORD_INDEX ? fields[WORD_INDEX] : null;
+                String definitions = fields.length > DEFINITION_INDEX ? fields[DEFINITION_INDEX] : null;
+                return execute(actionCode, word, definitions == null ? null : processDefinitions(definitions));
+        }
+    }
+
+    // Counts a handled request and its latency, for requests from either protocol
+    public void record(int actionCode, long startTime, Response response) {
+        serverMetrics.recordRequest(actionCode, response.getStatus(), System.nanoTime() - startTime);
+    }
+
+    // Single word requests, fields that are missing from the request are passed as null
+    public Response execute(int actionCode, String word, String[] definitions) {
+        if (word == null || (definitions == null && (actionCode == ADD_CODE || actionCode == UPDATE_CODE))) {
+            // Malformed request
+            return new Response(REQUEST_ERROR);
+        }
+        try {
+            switch (actionCode) {
+                case QUERY_CODE:
+                    // Retrieves the list of definition if word is present
+                    return new Response(REQUEST_SUCCESS, dictionary.query(word));
+
+                case PREFIX_CODE:
+                    // Words starting with the prefix, the definitions field carries the limit
+                    int limit = prefixLimit(definitions);
+                    if (limit == -1) {
+                        return new Response(REQUEST_ERROR);
+                    }
+                    return new Response(REQUEST_SUCCESS, dictionary.complete(word, limit));
+
+                case SUGGEST_CODE:
+                    try {
+                        return new Response(REQUEST_SUCCESS, dictionary.query(word));
+                    } catch (InvalidRequestException e) {
+                        // Failure:suggestion:suggestion..., closest first
+                        int maxDistance = word.length() <= SHORT_WORD_LENGTH ? 1 : 2;
+                        return new Response(REQUEST_FAILURE, dictionary.suggest(word, maxDistance, SUGGESTION_LIMIT));
+                    }
+
+                case SEARCH_CODE:
+                    // Success:totalHits:word:word..., best match first
+                    int offset = definitions == null ? 0 : parseBounded(definitions[0], 0, Integer.MAX_VALUE);
+                    int pageSize = definitions == null ? DEFAULT_SEARCH_LIMIT
+                            : definitions.length == 2 ? parseBounded(definitions[1], 1, MAX_SEARCH_LIMIT) : -1;
+                    if (offset == -1 || pageSize == -1) {
+                        return new Response(REQUEST_ERROR);
+                    }
+                    DefinitionIndex.SearchResult result = dictionary.search(word, offset, pageSize);
+                    ArrayList<String> values = new ArrayList<>();
+                    values.add(Integer.toString(result.getTotalHits()));
+                    values.addAll(result.getWords());
+                    return new Response(REQUEST_SUCCESS, values);
+
+                case SCAN_CODE:
+                    // The word field carries the limit and the definitions the word to continue after.
+                    // Success:word:definitionCount:definitions... for every entry, in dictionary order.
+                    int scanLimit = parseBounded(word, 1, MAX_SCAN_LIMIT);
+                    if (scanLimit == -1 || (definitions != null && definitions.length != 1)) {
+                        return new Response(REQUEST_ERROR);
+                    }
+                    String afterWord = definitions == null ? "" : definitions[0];
+                    ArrayList<String> entries = new ArrayList<>();
+                    dictionary.scan(afterWord, scanLimit).forEach((entryWord, entryDefinitions) -> {
+                        entries.add(entryWord);
+                        entries.add(Integer.toString(entryDefinitions.size()));
+                        entries.addAll(entryDefinitions);
+                    });
+                    return new Response(REQUEST_SUCCESS, entries);
+
+                case SUBSCRIBE_CODE:
+                case REPLICATE_CODE:
+                    // Only text connections can subscribe, and only the engine can hand them over
+                    return new Response(REQUEST_ERROR);
+            }
+            if (primaryForwarder != null && (actionCode == ADD_CODE || actionCode == REMOVE_CODE
+                    || actionCode == UPDATE_CODE)) {
+                // A replica only changes its copy with the operations its primary streams to it
+                return primaryForwarder.execute(actionCode, word, definitions);
+            }
+            switch (actionCode) {
+                case ADD_CODE:
+                    dictionary.add(word, definitions);
+                    break;
+
+                case REMOVE_CODE:
+                    dictionary.remove(word);
+                    break;
+
+                case UPDATE_CODE:
+                    dictionary.update(word, definitions);
+                    break;
+            }
+            return new Response(REQUEST_SUCCESS);
+        } catch (InvalidRequestException e) {
+            return new Response(REQUEST_FAILURE);
+        } catch (IOHandlerException e) {
+            return new Response(REQUEST_ERROR);
+        }
+    }
+
+    public Response multiQuery(String[] words) {
+        if (words.length == 0) {
+            return new Response(REQUEST_ERROR);
+        }
+        ArrayList<Response> results = new ArrayList<>(words.length);
+        for (String word : words) {
+            results.add(execute(QUERY_CODE, word, null));
+        }
+        return Response.multiple(results);
+    }
+
+    // All or nothing, a failure lists the words that do not meet the precondition
+    public Response bulkPut(int actionCode, Map<String, String[]> entries) {
+        if (entries.isEmpty()) {
+            return new Response(REQUEST_ERROR);
+        }
+        if (primaryForwarder != null) {
+            return primaryForwarder.bulkPut(actionCode, entries);
+        }
+        try {
+            if (actionCode == BULK_ADD_CODE) {
+                dictionary.addAll(entries);
+            } else {
+                dictionary.updateAll(entries);
+            }
+            return new Response(REQUEST_SUCCESS);
+        } catch (InvalidRequestException e) {
+            return new Response(REQUEST_FAILURE, e.getInvalidWords());
+        } catch (IOHandlerException e) {
+            return new Response(REQUEST_ERROR);
+        }
+    }
+
+    public Response bulkRemove(Collection<String> words) {
+        if (words.isEmpty()) {
+            return new Response(REQUEST_ERROR);
+        }
+        TreeSet<String> uniqueWords = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        uniqueWords.addAll(words);
+        if (primaryForwarder != null) {
+            return primaryForwarder.bulkRemove(uniqueWords);
+        }
+        try {
+            dictionary.removeAll(uniqueWords);
+            return new Response(REQUEST_SUCCESS);
+        } catch (InvalidRequestException e) {
+            return new Response(REQUEST_FAILURE, e.getInvalidWords());
+        } catch (IOHandlerException e) {
+            return new Response(REQUEST_ERROR);
+        }
+    }
+
+    // Returns -1 if the limit is not a number between 1 and MAX_PREFIX_LIMIT
+    private int prefixLimit(String[] definitions) {
+        if (definitions == null) {
+            return DEFAULT_PREFIX_LIMIT;
+        }
+        return definitions.length == 1 ? parseBounded(definitions[0], 1, MAX_PREFIX_LIMIT) : -1;
+    }
+
+    // Returns -1 if the field is not a number between min and max
+    private int parseBounded(String field, int min, int max) {
+        try {
+            int number = Integer.parseInt(field);
+            return number >= min && number <= max ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Process a word with more than one definition
+    private String[] processDefinitions(String definitions) {
+        return definitions.split(DEFINITION_SEPARATOR);
+    }
+}
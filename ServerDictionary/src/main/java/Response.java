@@ -0,0 +1,56 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a request, encoded by the text or the binary protocol
+public class Response {
+
+    private String status;
+    private List<String> values;    // Definitions, or the offending words of a failed bulk request
+    private List<Response> results; // One per word of a multi-query, null otherwise
+
+    private static final String STRING_SEPARATOR = ":";
+
+    public Response(String status) {
+        this(status, new ArrayList<>());
+    }
+
+    public Response(String status, List<String> values) {
+        this.status = status;
+        this.values = values;
+    }
+
+    public static Response multiple(List<Response> results) {
+        Response response = new Response(RequestProcessor.REQUEST_SUCCESS);
+        response.results = results;
+        return response;
+    }
+
+    public String getStatus() {return status;}
+
+    public List<String> getValues() {return values;}
+
+    public List<Response> getResults() {return results;}
+
+    // Text format => requestStatus:values, a multi-query is Success:wordCount followed by
+    // requestStatus:definitionCount:definitions for every word
+    public String toText() {
+        StringBuilder text = new StringBuilder(status);
+        if (results == null) {
+            appendValues(text, values);
+        } else {
+            text.append(STRING_SEPARATOR).append(results.size());
+            for (Response result : results) {
+                text.append(STRING_SEPARATOR).append(result.status)
+                        .append(STRING_SEPARATOR).append(result.values.size());
+                appendValues(text, result.values);
+            }
+        }
+        return text.toString();
+    }
+
+    private void appendValues(StringBuilder text, List<String> values) {
+        for (String value : values) {
+            text.append(STRING_SEPARATOR).append(value);
+        }
+    }
+}
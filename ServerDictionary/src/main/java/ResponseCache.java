@@ -0,0 +1,119 @@
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Encoded responses to queries of frequently asked words, so that a hit is a lookup and a copy into the socket's
+// buffer. Bounded by the bytes it holds rather than its entries, since definition lists vary a lot in length, and
+// Caffeine's W-TinyLFU admission keeps a burst of words asked once from evicting the hot ones. Responses are keyed by
+// the word folded the way String.CASE_INSENSITIVE_ORDER compares it, as queries ignore case, and by protocol.
+public class ResponseCache implements DictionaryListener {
+
+    // The protocol a response is encoded for
+    public final static int TEXT = 0;
+    public final static int BINARY = 1;
+
+    private final static int ENTRY_OVERHEAD = 96; // Key, node and array headers, roughly
+
+    // Gauges
+    private final static String HITS_GAUGE = "response_cache_hits";
+    private final static String MISSES_GAUGE = "response_cache_misses";
+    private final static String HIT_PERCENT_GAUGE = "response_cache_hit_percent";
+    private final static String EVICTIONS_GAUGE = "response_cache_evictions";
+    private final static String ENTRIES_GAUGE = "response_cache_entries";
+    private final static String BYTES_GAUGE = "response_cache_bytes";
+
+    private static class Key {
+        final String word;
+        final int encoding;
+
+        Key(String word, int encoding) {
+            this.word = word;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).encoding == encoding && ((Key) other).word.equals(word);
+        }
+
+        @Override
+        public int hashCode() {
+            return word.hashCode() * 31 + encoding;
+        }
+    }
+
+    private final Cache<Key, byte[]> responses;
+    // Bumped by every change before the responses it affects are dropped, see put
+    private final AtomicLong version = new AtomicLong();
+
+    public ResponseCache(long maxBytes) {
+        this.responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, byte[] response) -> key.word.length() * 2 + response.length + ENTRY_OVERHEAD)
+                .recordStats()
+                .build();
+    }
+
+    // Returns null if the response is not cached
+    public byte[] get(String word, int encoding) {
+        return responses.getIfPresent(new Key(fold(word), encoding));
+    }
+
+    // Read before the dictionary is queried for a response that will be cached
+    public long version() {
+        return version.get();
+    }
+
+    // Caches the response unless the dictionary changed since the version was read, as the response may predate the
+    // change. The check is atomic with the insert and a change bumps the version before dropping its word's responses,
+    // so a stale response is either not inserted or dropped afterwards.
+    public void put(String word, int encoding, long readVersion, byte[] response) {
+        responses.asMap().compute(new Key(fold(word), encoding),
+                (key, cached) -> version.get() == readVersion ? response : cached);
+    }
+
+    @Override
+    public void wordChanged(String word) {
+        version.incrementAndGet();
+        String foldedWord = fold(word);
+        responses.invalidate(new Key(foldedWord, TEXT));
+        responses.invalidate(new Key(foldedWord, BINARY));
+    }
+
+    @Override
+    public void dictionaryReplaced() {
+        version.incrementAndGet();
+        responses.invalidateAll();
+    }
+
+    // Hit rates and size, shown by the status command and /metrics
+    public void registerGauges(ServerMetrics serverMetrics) {
+        serverMetrics.registerGauge(HITS_GAUGE, () -> responses.stats().hitCount());
+        serverMetrics.registerGauge(MISSES_GAUGE, () -> responses.stats().missCount());
+        serverMetrics.registerGauge(HIT_PERCENT_GAUGE, () -> Math.round(responses.stats().hitRate() * 100));
+        serverMetrics.registerGauge(EVICTIONS_GAUGE, () -> responses.stats().evictionCount());
+        serverMetrics.registerGauge(ENTRIES_GAUGE, responses::estimatedSize);
+        serverMetrics.registerGauge(BYTES_GAUGE, () -> responses.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+    }
+
+    // Lower case words, the usual spelling, are returned as they are
+    private static String fold(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (fold(c) != c) {
+                char[] folded = word.toCharArray();
+                for (int j = i; j < folded.length; j++) {
+                    folded[j] = fold(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return word;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
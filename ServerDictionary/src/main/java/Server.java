@@ -2,6 +2,9 @@ import java.io.*;
 import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class Server {
 
@@ -10,21 +13,76 @@ public class Server {
     private ServerSocket serverSocket;
     private Dictionary dictionary;
     private String dictionaryFilePath;
+    private ExecutorService requestExecutor;
+    private NioServer nioServer;
+    private ServerMetrics serverMetrics = new ServerMetrics();
+    private MetricsEndpoint metricsEndpoint;
+    private InvalidationPublisher invalidationPublisher; // Pushes changed words to subscribed client near caches
+    private ReplicationClient replicationClient; // Keeps a replica's dictionary a copy of its primary's
+    private PrimaryForwarder primaryForwarder;
 
     // Server Status
     private boolean hasValidPort;
     private boolean isRunning;
-    private int requestNo;
+    private boolean watchDictionary;
+    private OperationLog.SyncPolicy syncPolicy = OperationLog.SyncPolicy.GROUP;
+    private long syncIntervalMs = 10;
+    private long compactThreshold = 16 * 1024 * 1024;
+    private ExecutionMode executionMode = ExecutionMode.THREAD;
+    private int poolSize = Runtime.getRuntime().availableProcessors() * 8;
+    private int queueSize = 1024;
+    private int idleTimeoutMs = 30000;
+    private String engine = BLOCKING_ENGINE;
+    private int eventLoopNo = Runtime.getRuntime().availableProcessors();
+    private int metricsPortNo; // No metrics endpoint unless set
+    private StorageEngine storageEngine = StorageEngine.SKIPLIST;
+    private int loadThreadNo = Runtime.getRuntime().availableProcessors();
+    private Durability durability = Durability.LOGGED;
+    private long flushIntervalMs = 1000;
+    private long responseCacheBytes = 64 * 1024 * 1024;
+    private String primaryHost; // Set on a replica
+    private int primaryPortNo;
 
     // Argument Indexes
     private final int PORT_NO_INDEX = 0;
     private final int DICT_INDEX = 1;
+    private final int OPTIONS_INDEX = 2;
+
+    // Optional Flags
+    private final String WATCH_FLAG = "--watch"; // Reload the dictionary when the file is edited externally
+    private final String FSYNC_FLAG = "--fsync"; // always, group or none
+    private final String FSYNC_INTERVAL_FLAG = "--fsync-interval"; // Milliseconds between group fsyncs
+    private final String COMPACT_THRESHOLD_FLAG = "--compact-threshold"; // Log size in bytes that triggers compaction
+    private final String EXECUTOR_FLAG = "--executor"; // thread, pool or virtual
+    private final String POOL_SIZE_FLAG = "--pool-size"; // Worker threads in pool mode and for nio writes
+    private final String QUEUE_SIZE_FLAG = "--queue-size"; // Connections or nio writes waiting for a worker
+    private final String IDLE_TIMEOUT_FLAG = "--idle-timeout"; // Milliseconds before an idle connection is closed
+    private final String ENGINE_FLAG = "--engine"; // blocking or nio
+    private final String EVENT_LOOPS_FLAG = "--event-loops"; // Selector threads of the nio engine
+    private final String METRICS_PORT_FLAG = "--metrics-port"; // Serves /metrics over HTTP on the loopback interface
+    private final String STORAGE_FLAG = "--storage"; // skiplist, arena or mapped
+    private final String LOAD_THREADS_FLAG = "--load-threads"; // Threads that parse the dictionary file, 1 for none
+    private final String DURABILITY_FLAG = "--durability"; // memory, logged or flushed
+    private final String FLUSH_INTERVAL_FLAG = "--flush-interval"; // Milliseconds between background flushes
+    private final String RESPONSE_CACHE_FLAG = "--response-cache"; // Bytes of cached query responses, 0 for none
+    private final String REPLICA_OF_FLAG = "--replica-of"; // host:port of the primary this server is a replica of
+    private final String PORT_SEPARATOR = ":";
+    private final String FLAG_VALUE_SEPARATOR = "=";
+
+    // Server Engines
+    private static final String BLOCKING_ENGINE = "blocking";
+    private static final String NIO_ENGINE = "nio";
 
     // Validity Constraints
     private final int PORT_NO_LOWER_LIMIT = 1024;
     private final int PORT_NO_UPPER_LIMIT = 65335;
     private final int REQUIRED_ARGS = 2;
 
+    // Gauges
+    private final String LOG_SIZE_GAUGE = "log_size_bytes";
+    private final String EXECUTOR_QUEUE_GAUGE = "executor_queue_depth";
+    private final String EXECUTOR_ACTIVE_GAUGE = "executor_active_threads";
+
     // Default Filepath
     private final String DEFAULT_DICTIONARY_FILE_PATH = "dictionary.json";
 
@@ -32,11 +90,21 @@ public class Server {
     private final String INVALID_PORT_NO = "Invalid port number entered. " +
             "Please input a port number between 1024 and 65335.";
     private final String INVALID_ARG_NO = "Insufficient arguments entered.\n" +
-            "Usage: java -jar ServerDictionary.jar <port> <dictionary-file-path>";
+            "Usage: java -jar ServerDictionary.jar <port> <dictionary-file-path> [options]\n" +
+            "Options: --watch --fsync=<always|group|none> --fsync-interval=<ms> --compact-threshold=<bytes>\n" +
+            "         --executor=<thread|pool|virtual> --pool-size=<threads> --queue-size=<connections>\n" +
+            "         --idle-timeout=<ms> --engine=<blocking|nio> --event-loops=<threads> --metrics-port=<port>\n" +
+            "         --storage=<skiplist|arena|mapped> --load-threads=<threads>\n" +
+            "         --durability=<memory|logged|flushed> --flush-interval=<ms> --response-cache=<bytes>\n" +
+            "         --replica-of=<host:port>";
     private final String ERROR_BIND = "Server port number is in use, please try another.";
+    private final String ERROR_METRICS_BIND = "Unable to serve metrics on port ";
     private final String ERROR_CREATE_SOCKET = "Unable to create a server socket.";
     private final String ERROR_CLOSE_SOCKET = "Unable to close the server socket.";
     private final String ERROR_LOCATE_FILE = "Unable to locate the file: ";
+    private final String ERROR_LOAD_FILE = "Unable to load the dictionary file: ";
+    private final String UNKNOWN_OPTION = "Ignoring unknown option: ";
+    private final String INVALID_OPTION = "Invalid value for option: ";
 
     // Status Messages
     private final String PROGRAM_RUNNING = "Server application is running...";
@@ -44,7 +112,12 @@ public class Server {
     private final String SERVER_TERMINATING = "Server application is terminating...";
     private final String SOCKET_CLOSING = "Server socket is closing...";
     private final String SERVER_LISTENING = "Server listening for connections on port ";
+    private final String EXECUTION_MODE = "Handling connections in execution mode: ";
+    private final String NIO_EVENT_LOOPS = "Handling connections with nio event loops: ";
+    private final String METRICS_LISTENING = "Serving metrics on http://localhost:";
     private final String DEFAULT_FILE_CREATED = "Default file created at: ";
+    private final String DICTIONARY_LOADED = "Dictionary loaded into memory from: ";
+    private final String DICTIONARY_RELOADED = "Dictionary reloaded from: ";
 
     public static void main(String[] args) {
         Server server = new Server();
@@ -59,6 +132,7 @@ public class Server {
         scanCommandArguments(args);
         if (hasValidPort) {
             System.out.println(PROGRAM_RUNNING);
+            loadDictionary();
             listen();
         } else {
             exitProgram();
@@ -67,8 +141,9 @@ public class Server {
 
     private void scanCommandArguments(String[] args) {
         System.out.println(ARG_VERIFY);
-        if (args.length == REQUIRED_ARGS) {
+        if (args.length >= REQUIRED_ARGS) {
             validatePort(Integer.parseInt(args[PORT_NO_INDEX]));
+            scanOptionalArguments(args);
             validateDictionary(args[DICT_INDEX]);
         } else {
             System.out.println(INVALID_ARG_NO);
@@ -76,6 +151,106 @@ public class Server {
         }
     }
 
+    private void scanOptionalArguments(String[] args) {
+        for (int i = OPTIONS_INDEX; i < args.length; i++) {
+            // Options are either a plain flag or flag=value
+            String[] option = args[i].split(FLAG_VALUE_SEPARATOR, 2);
+            String value = option.length > 1 ? option[1] : "";
+            try {
+                switch (option[0]) {
+                    case WATCH_FLAG:
+                        watchDictionary = true;
+                        break;
+
+                    case FSYNC_FLAG:
+                        syncPolicy = OperationLog.SyncPolicy.valueOf(value.toUpperCase());
+                        break;
+
+                    case FSYNC_INTERVAL_FLAG:
+                        syncIntervalMs = Long.parseLong(value);
+                        break;
+
+                    case COMPACT_THRESHOLD_FLAG:
+                        compactThreshold = Long.parseLong(value);
+                        break;
+
+                    case EXECUTOR_FLAG:
+                        executionMode = ExecutionMode.valueOf(value.toUpperCase());
+                        break;
+
+                    case POOL_SIZE_FLAG:
+                        poolSize = Integer.parseInt(value);
+                        break;
+
+                    case QUEUE_SIZE_FLAG:
+                        queueSize = Integer.parseInt(value);
+                        break;
+
+                    case IDLE_TIMEOUT_FLAG:
+                        idleTimeoutMs = Integer.parseInt(value);
+                        break;
+
+                    case ENGINE_FLAG:
+                        if (!value.equals(BLOCKING_ENGINE) && !value.equals(NIO_ENGINE)) {
+                            throw new IllegalArgumentException();
+                        }
+                        engine = value;
+                        break;
+
+                    case EVENT_LOOPS_FLAG:
+                        eventLoopNo = Integer.parseInt(value);
+                        break;
+
+                    case METRICS_PORT_FLAG:
+                        metricsPortNo = Integer.parseInt(value);
+                        break;
+
+                    case STORAGE_FLAG:
+                        storageEngine = StorageEngine.valueOf(value.toUpperCase());
+                        break;
+
+                    case LOAD_THREADS_FLAG:
+                        loadThreadNo = Integer.parseInt(value);
+                        if (loadThreadNo < 1) {
+                            throw new IllegalArgumentException();
+                        }
+                        break;
+
+                    case DURABILITY_FLAG:
+                        durability = Durability.valueOf(value.toUpperCase());
+                        break;
+
+                    case FLUSH_INTERVAL_FLAG:
+                        flushIntervalMs = Long.parseLong(value);
+                        break;
+
+                    case RESPONSE_CACHE_FLAG:
+                        responseCacheBytes = Long.parseLong(value);
+                        if (responseCacheBytes < 0) {
+                            throw new IllegalArgumentException();
+                        }
+                        break;
+
+                    case REPLICA_OF_FLAG:
+                        int separator = value.lastIndexOf(PORT_SEPARATOR);
+                        if (separator < 1) {
+                            throw new IllegalArgumentException();
+                        }
+                        primaryHost = value.substring(0, separator);
+                        primaryPortNo = Integer.parseInt(value.substring(separator + 1));
+                        break;
+
+                    default:
+                        System.out.println(UNKNOWN_OPTION + args[i]);
+                        break;
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(INVALID_OPTION + args[i]);
+                exitProgram();
+            }
+        }
+    }
+
     private void validatePort(int portNo) {
         if (portNo >= PORT_NO_LOWER_LIMIT && portNo <= PORT_NO_UPPER_LIMIT) {
             hasValidPort = true;
@@ -92,14 +267,14 @@ public class Server {
         IOHandler ioHandler = new IOHandler();
         if (ioHandler.fileExists(dictionaryFilePath)) {
             this.dictionaryFilePath = dictionaryFilePath;
-            this.dictionary = new Dictionary(dictionaryFilePath);
+            this.dictionary = createDictionary(dictionaryFilePath);
         } else {
             System.out.println(ERROR_LOCATE_FILE + dictionaryFilePath);
             // If provided filepath does not exist, create a default one
             try {
                 ioHandler.createFile(DEFAULT_DICTIONARY_FILE_PATH);
-                this.dictionary = new Dictionary(DEFAULT_DICTIONARY_FILE_PATH);
-                this.dictionaryFilePath = dictionaryFilePath;
+                this.dictionary = createDictionary(DEFAULT_DICTIONARY_FILE_PATH);
+                this.dictionaryFilePath = DEFAULT_DICTIONARY_FILE_PATH;
                 System.out.println(DEFAULT_FILE_CREATED + DEFAULT_DICTIONARY_FILE_PATH);
             } catch (IOHandlerException e) {
                 System.out.println(e.getMessage());
@@ -108,36 +283,166 @@ public class Server {
         }
     }
 
+    private Dictionary createDictionary(String dictionaryFilePath) {
+        return new Dictionary(dictionaryFilePath,
+                new OperationLog(dictionaryFilePath, syncPolicy, syncIntervalMs, serverMetrics), serverMetrics,
+                storageEngine, loadThreadNo, durability);
+    }
+
+    // Parses the dictionary file and replays the operation log once at startup, requests are then served from memory
+    private void loadDictionary() {
+        try {
+            dictionary.parseDictionary();
+            dictionary.openLog();
+            System.out.println(DICTIONARY_LOADED + dictionaryFilePath);
+        } catch (IOHandlerException e) {
+            System.out.println(ERROR_LOAD_FILE + dictionaryFilePath);
+            exitProgram();
+        }
+        if (durability == Durability.LOGGED) {
+            new DictionaryCompactor(dictionary, compactThreshold).start();
+        } else {
+            new DictionaryFlusher(dictionary, flushIntervalMs).start();
+        }
+        if (watchDictionary) {
+            new DictionaryWatcher(dictionary).start();
+        }
+    }
+
+    // Picks up external edits to the dictionary file on demand
+    public void reloadDictionary() {
+        try {
+            dictionary.parseDictionary();
+            System.out.println(DICTIONARY_RELOADED + dictionaryFilePath);
+        } catch (IOHandlerException e) {
+            System.out.println(ERROR_LOAD_FILE + dictionaryFilePath);
+        }
+    }
+
     private void listen() {
+        RequestProcessor requestProcessor = new RequestProcessor(dictionary, serverMetrics, createResponseCache());
+        invalidationPublisher = new InvalidationPublisher(serverMetrics);
+        dictionary.addListener(invalidationPublisher);
+        requestProcessor.setInvalidationPublisher(invalidationPublisher);
+        // Replicas can be replicated from as well
+        ReplicationPublisher replicationPublisher = new ReplicationPublisher(dictionary, serverMetrics);
+        dictionary.addListener(replicationPublisher);
+        requestProcessor.setReplicationPublisher(replicationPublisher);
+        startReplication(requestProcessor);
+        serverMetrics.registerGauge(LOG_SIZE_GAUGE, dictionary::getLogSize);
+        startMetricsEndpoint();
         try {
-            serverSocket = new ServerSocket(portNo);
-            System.out.println(SERVER_LISTENING + portNo + "...");
-            Thread serverController = new Thread(new ServerController(this));
-            serverController.start();
-            while (isRunning) {
-                Socket clientSocket = serverSocket.accept();
-                // Creates a thread for each request received
-                Thread t = new Thread((new ServerRequestHandler(clientSocket,dictionary)));
-                t.start();
-                requestNo++;
+            if (engine.equals(NIO_ENGINE)) {
+                listenNonBlocking(requestProcessor);
+            } else {
+                listenBlocking(requestProcessor);
             }
         } catch (BindException e) {
             System.out.println(ERROR_BIND);
             exitProgram();
         } catch (IOException e) {
-            System.out.println(ERROR_CREATE_SOCKET);
+            if (isRunning) {
+                System.out.println(ERROR_CREATE_SOCKET);
+                exitProgram();
+            }
+        }
+    }
+
+    // A replica serves queries from its copy of the primary's dictionary and passes writes on to the primary
+    private void startReplication(RequestProcessor requestProcessor) {
+        if (primaryHost == null) {
+            return;
+        }
+        primaryForwarder = new PrimaryForwarder(primaryHost, primaryPortNo);
+        requestProcessor.setPrimaryForwarder(primaryForwarder);
+        replicationClient = new ReplicationClient(dictionary, primaryHost, primaryPortNo, serverMetrics);
+        replicationClient.start();
+    }
+
+    // Null when disabled, the dictionary drops the cached responses of the words it changes
+    private ResponseCache createResponseCache() {
+        if (responseCacheBytes == 0) {
+            return null;
+        }
+        ResponseCache responseCache = new ResponseCache(responseCacheBytes);
+        dictionary.addListener(responseCache);
+        responseCache.registerGauges(serverMetrics);
+        return responseCache;
+    }
+
+    private void startMetricsEndpoint() {
+        if (metricsPortNo == 0) {
+            return;
+        }
+        metricsEndpoint = new MetricsEndpoint(metricsPortNo, serverMetrics);
+        try {
+            metricsEndpoint.start();
+            System.out.println(METRICS_LISTENING + metricsPortNo);
+        } catch (IOException e) {
+            System.out.println(ERROR_METRICS_BIND + metricsPortNo);
             exitProgram();
         }
     }
 
-    public int getRequestNo() {
-        return requestNo;
+    private void listenNonBlocking(RequestProcessor requestProcessor) throws IOException {
+        nioServer = new NioServer(portNo, requestProcessor, serverMetrics, eventLoopNo, idleTimeoutMs, poolSize,
+                queueSize);
+        System.out.println(SERVER_LISTENING + portNo + "...");
+        System.out.println(NIO_EVENT_LOOPS + eventLoopNo);
+        new Thread(new ServerController(this)).start();
+        nioServer.listen();
     }
 
+    private void listenBlocking(RequestProcessor requestProcessor) throws IOException {
+        try {
+            requestExecutor = executionMode.createExecutor(poolSize, queueSize);
+        } catch (UnsupportedOperationException e) {
+            System.out.println(e.getMessage());
+            exitProgram();
+        }
+        if (requestExecutor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor threadPool = (ThreadPoolExecutor) requestExecutor;
+            serverMetrics.registerGauge(EXECUTOR_QUEUE_GAUGE, () -> threadPool.getQueue().size());
+            serverMetrics.registerGauge(EXECUTOR_ACTIVE_GAUGE, threadPool::getActiveCount);
+        }
+        serverSocket = new ServerSocket(portNo);
+        System.out.println(SERVER_LISTENING + portNo + "...");
+        System.out.println(EXECUTION_MODE + executionMode.name().toLowerCase());
+        Thread serverController = new Thread(new ServerController(this));
+        serverController.start();
+        while (isRunning) {
+            Socket clientSocket = serverSocket.accept();
+            serverMetrics.connectionAccepted();
+            ServerRequestHandler requestHandler = new ServerRequestHandler(clientSocket, requestProcessor,
+                    serverMetrics, idleTimeoutMs);
+            try {
+                requestExecutor.execute(requestHandler);
+            } catch (RejectedExecutionException e) {
+                // Pool and queue are full, answer with an error instead of queueing without bound
+                requestHandler.reject();
+            }
+        }
+    }
+
+    public long getRequestNo() {
+        return serverMetrics.getRequestNo();
+    }
+
+    public ServerMetrics getServerMetrics() {return serverMetrics;}
+
     public String getDictionaryFilePath() {return dictionaryFilePath;}
 
     public void exitProgram() {
         isRunning = false;
+        if (replicationClient != null) {
+            replicationClient.close();
+        }
+        if (primaryForwarder != null) {
+            primaryForwarder.close();
+        }
+        if (dictionary != null) {
+            dictionary.close(); // Flushes the operation log
+        }
         if (serverSocket != null) {
             try {
                 serverSocket.close();
@@ -146,6 +451,15 @@ public class Server {
                 System.out.println(ERROR_CLOSE_SOCKET);
             }
         }
+        if (requestExecutor != null) {
+            requestExecutor.shutdownNow();
+        }
+        if (nioServer != null) {
+            nioServer.close();
+        }
+        if (metricsEndpoint != null) {
+            metricsEndpoint.close();
+        }
         System.out.println(SERVER_TERMINATING);
         System.exit(0);
     }
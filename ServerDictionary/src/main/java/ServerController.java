@@ -14,6 +14,7 @@ public class ServerController extends Thread{
     private final String STATUS_COMMAND = "status";
     private final String HELP_COMMAND = "help";
     private final String LOCATE_COMMAND = "locate";
+    private final String RELOAD_COMMAND = "reload";
 
     public ServerController(Server server) {
         this.server = server;
@@ -35,12 +36,17 @@ public class ServerController extends Thread{
                         displayCurrentTime();
                         displayUpTime();
                         displayRequestNo();
+                        displayMetrics();
                         break;
 
                     case LOCATE_COMMAND:
                         displayPath();
                         break;
 
+                    case RELOAD_COMMAND:
+                        server.reloadDictionary();
+                        break;
+
                     case HELP_COMMAND:
                         displayHelp();
                         break;
@@ -73,12 +79,17 @@ public class ServerController extends Thread{
         System.out.printf("Number of Requests: %d\n",server.getRequestNo());
     }
 
+    private void displayMetrics() {
+        System.out.print(server.getServerMetrics().toText());
+    }
+
     private void displayHelp(){
         System.out.println("\nDictionary Server\n" +
                 "\nCommands:\n" +
                 "    help            print Help (this message) and exit\n" +
                 "    status          print server status\n" +
                 "    locate          print the absolute path of dictionary file\n" +
+                "    reload          reload the dictionary file into memory\n" +
                 "    exit            close and exit the server\n");
     }
 }
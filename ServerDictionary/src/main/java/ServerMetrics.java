@@ -0,0 +1,221 @@
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Counters and latency histograms of the hot paths, shown by the status command and served by MetricsEndpoint.
+// Recording never blocks, latencies are kept in microseconds.
+public class ServerMetrics {
+
+    // Indexed by action code, requests without a valid action code are counted as invalid
+    private final static String[] ACTION_NAMES = {"invalid", "query", "add", "remove", "update", "multi_query",
+            "bulk_add", "bulk_update", "bulk_remove", "prefix",
+            "suggest", "search", "subscribe", "scan", "replicate"};
+    private final static String[] STATUS_NAMES = {RequestProcessor.REQUEST_SUCCESS, RequestProcessor.REQUEST_FAILURE,
+            RequestProcessor.REQUEST_ERROR};
+    private final static int INVALID_ACTION = 0;
+    private final static int SIGNIFICANT_DIGITS = 2;
+
+    private LongAdder[][] requestCounts = new LongAdder[ACTION_NAMES.length][STATUS_NAMES.length];
+    private Histogram[] requestLatencies = new Histogram[ACTION_NAMES.length];
+    private Histogram lockWaits = newHistogram();
+    private LongAdder logAppends = new LongAdder();
+    private LongAdder logBytes = new LongAdder();
+    private LongAdder logWriteNanos = new LongAdder();
+    private Histogram fsyncLatencies = newHistogram();
+    private LongAdder snapshots = new LongAdder();
+    private LongAdder snapshotBytes = new LongAdder();
+    private LongAdder snapshotNanos = new LongAdder();
+    private LongAdder activeConnections = new LongAdder();
+    private LongAdder acceptedConnections = new LongAdder();
+    private LongAdder rejectedConnections = new LongAdder();
+    private Map<String, LongSupplier> gauges = new LinkedHashMap<>(); // Sampled when the metrics are read
+
+    private final String METRIC_PREFIX = "dictionary_";
+    private final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    public ServerMetrics() {
+        for (int i = 0; i < ACTION_NAMES.length; i++) {
+            for (int j = 0; j < STATUS_NAMES.length; j++) {
+                requestCounts[i][j] = new LongAdder();
+            }
+            requestLatencies[i] = newHistogram();
+        }
+    }
+
+    private static Histogram newHistogram() {
+        return new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    }
+
+    public void recordRequest(int actionCode, String status, long nanos) {
+        int action = actionCode > INVALID_ACTION && actionCode < ACTION_NAMES.length ? actionCode : INVALID_ACTION;
+        requestCounts[action][statusIndex(status)].increment();
+        requestLatencies[action].recordValue(toMicros(nanos));
+    }
+
+    public void recordLockWait(long nanos) {
+        lockWaits.recordValue(toMicros(nanos));
+    }
+
+    public void recordLogAppend(int bytes, long nanos) {
+        logAppends.increment();
+        logBytes.add(bytes);
+        logWriteNanos.add(nanos);
+    }
+
+    public void recordFsync(long nanos) {
+        fsyncLatencies.recordValue(toMicros(nanos));
+    }
+
+    public void recordSnapshot(long bytes, long nanos) {
+        snapshots.increment();
+        snapshotBytes.add(bytes);
+        snapshotNanos.add(nanos);
+    }
+
+    public void connectionAccepted() {
+        acceptedConnections.increment();
+    }
+
+    public void connectionRejected() {
+        rejectedConnections.increment();
+    }
+
+    public void connectionOpened() {
+        activeConnections.increment();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrement();
+    }
+
+    public synchronized void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public long getRequestNo() {
+        long requestNo = 0;
+        for (LongAdder[] actionCounts : requestCounts) {
+            for (LongAdder count : actionCounts) {
+                requestNo += count.sum();
+            }
+        }
+        return requestNo;
+    }
+
+    // Human-readable summary for the status command
+    public synchronized String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Connections: %d active, %d accepted, %d rejected%n", activeConnections.sum(),
+                acceptedConnections.sum(), rejectedConnections.sum()));
+        text.append(String.format("%-12s %10s %10s %10s %10s %10s %10s %10s%n", "Requests", "success", "failure",
+                "error", "p50 us", "p99 us", "p99.9 us", "max us"));
+        for (int i = 0; i < ACTION_NAMES.length; i++) {
+            Histogram latencies = requestLatencies[i];
+            if (latencies.getTotalCount() == 0) {
+                continue;
+            }
+            text.append(String.format("%-12s %10d %10d %10d %10d %10d %10d %10d%n", ACTION_NAMES[i],
+                    requestCounts[i][0].sum(), requestCounts[i][1].sum(), requestCounts[i][2].sum(),
+                    latencies.getValueAtPercentile(50), latencies.getValueAtPercentile(99),
+                    latencies.getValueAtPercentile(99.9), latencies.getMaxValue()));
+        }
+        text.append(String.format("Write lock waits: %d, p50 %d us, p99 %d us, max %d us%n", lockWaits.getTotalCount(),
+                lockWaits.getValueAtPercentile(50), lockWaits.getValueAtPercentile(99), lockWaits.getMaxValue()));
+        text.append(String.format("Operation log: %d appends, %d bytes, %d ms writing%n", logAppends.sum(),
+                logBytes.sum(), TimeUnit.NANOSECONDS.toMillis(logWriteNanos.sum())));
+        text.append(String.format("Fsyncs: %d, p50 %d us, p99 %d us, max %d us%n", fsyncLatencies.getTotalCount(),
+                fsyncLatencies.getValueAtPercentile(50), fsyncLatencies.getValueAtPercentile(99),
+                fsyncLatencies.getMaxValue()));
+        text.append(String.format("Snapshots: %d, %d bytes, %d ms writing%n", snapshots.sum(), snapshotBytes.sum(),
+                TimeUnit.NANOSECONDS.toMillis(snapshotNanos.sum())));
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            text.append(String.format("%s: %d%n", gauge.getKey(), gauge.getValue().getAsLong()));
+        }
+        return text.toString();
+    }
+
+    // Prometheus text exposition format
+    public synchronized String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        appendType(text, "requests_total", "counter");
+        for (int i = 0; i < ACTION_NAMES.length; i++) {
+            for (int j = 0; j < STATUS_NAMES.length; j++) {
+                appendSample(text, "requests_total", "action=\"" + ACTION_NAMES[i] + "\",status=\""
+                        + STATUS_NAMES[j].toLowerCase() + "\"", requestCounts[i][j].sum());
+            }
+        }
+        appendType(text, "request_latency_seconds", "summary");
+        for (int i = 0; i < ACTION_NAMES.length; i++) {
+            appendSummary(text, "request_latency_seconds", "action=\"" + ACTION_NAMES[i] + "\",", requestLatencies[i]);
+        }
+        appendType(text, "write_lock_wait_seconds", "summary");
+        appendSummary(text, "write_lock_wait_seconds", "", lockWaits);
+        appendType(text, "log_appends_total", "counter");
+        appendSample(text, "log_appends_total", "", logAppends.sum());
+        appendType(text, "log_written_bytes_total", "counter");
+        appendSample(text, "log_written_bytes_total", "", logBytes.sum());
+        appendType(text, "log_write_seconds_total", "counter");
+        appendSample(text, "log_write_seconds_total", "", logWriteNanos.sum() / 1e9);
+        appendType(text, "fsync_seconds", "summary");
+        appendSummary(text, "fsync_seconds", "", fsyncLatencies);
+        appendType(text, "snapshots_total", "counter");
+        appendSample(text, "snapshots_total", "", snapshots.sum());
+        appendType(text, "snapshot_written_bytes_total", "counter");
+        appendSample(text, "snapshot_written_bytes_total", "", snapshotBytes.sum());
+        appendType(text, "snapshot_write_seconds_total", "counter");
+        appendSample(text, "snapshot_write_seconds_total", "", snapshotNanos.sum() / 1e9);
+        appendType(text, "connections_active", "gauge");
+        appendSample(text, "connections_active", "", activeConnections.sum());
+        appendType(text, "connections_accepted_total", "counter");
+        appendSample(text, "connections_accepted_total", "", acceptedConnections.sum());
+        appendType(text, "connections_rejected_total", "counter");
+        appendSample(text, "connections_rejected_total", "", rejectedConnections.sum());
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            appendType(text, gauge.getKey(), "gauge");
+            appendSample(text, gauge.getKey(), "", gauge.getValue().getAsLong());
+        }
+        return text.toString();
+    }
+
+    private void appendType(StringBuilder text, String name, String type) {
+        text.append("# TYPE ").append(METRIC_PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private void appendSample(StringBuilder text, String name, String labels, Number value) {
+        text.append(METRIC_PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            text.append('{').append(labels).append('}');
+        }
+        text.append(' ').append(value).append('\n');
+    }
+
+    // Labels are prefixed to the quantile label, so they end with a comma when given
+    private void appendSummary(StringBuilder text, String name, String labels, Histogram micros) {
+        for (double quantile : QUANTILES) {
+            appendSample(text, name, labels + "quantile=\"" + quantile + "\"",
+                    micros.getValueAtPercentile(quantile * 100) / 1e6);
+        }
+        String totalLabels = labels.isEmpty() ? "" : labels.substring(0, labels.length() - 1);
+        appendSample(text, name + "_sum", totalLabels, micros.getMean() * micros.getTotalCount() / 1e6);
+        appendSample(text, name + "_count", totalLabels, micros.getTotalCount());
+    }
+
+    private int statusIndex(String status) {
+        for (int i = 0; i < STATUS_NAMES.length; i++) {
+            if (STATUS_NAMES[i].equals(status)) {
+                return i;
+            }
+        }
+        return STATUS_NAMES.length - 1;
+    }
+
+    // Sub-microsecond latencies are recorded as 1 us
+    private static long toMicros(long nanos) {
+        return Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 1);
+    }
+}
@@ -1,96 +1,127 @@
 import java.io.*;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 
 public class ServerRequestHandler extends Thread{
 
     private Socket clientSocket;
-    private Dictionary dictionary;
-    private ArrayList<String> response;
+    private RequestProcessor requestProcessor;
+    private ServerMetrics serverMetrics;
+    private int idleTimeoutMs;
+    private boolean isSubscribed; // The socket was handed to a publisher, which closes it
 
-    // Request Status
-    private final String REQUEST_SUCCESS = "Success";
-    private final String REQUEST_FAILURE = "Failure";
-    private final String REQUEST_ERROR = "Error";
-    private final int REQUEST_STATUS_INDEX = 0;
-
-    // Action Codes
-    private final int QUERY_CODE = 1;
-    private final int ADD_CODE = 2;
-    private final int REMOVE_CODE = 3;
-    private final int UPDATE_CODE = 4;
-
-    // Client Request Indexes
-    private final int ACTION_CODE_INDEX = 0;
-    private final int WORD_INDEX = 1;
-    private final int DEFINITION_INDEX = 2;
+    private final int MAX_FRAME_SIZE = 4 * 1024 * 1024; // Largest binary request accepted
 
     private final String ERROR_STREAM = "Unable to maintain input/output streams from/to client socket.";
-    private final String DEFINITION_SEPARATOR = "\\*"; // Handles word with multiple meanings
-    private final String STRING_SEPARATOR = ":";
+    private final String ERROR_CLOSE_SOCKET = "Unable to close the client socket.";
 
-    public ServerRequestHandler(Socket clientSocket, Dictionary dictionary) {
+    public ServerRequestHandler(Socket clientSocket, RequestProcessor requestProcessor, ServerMetrics serverMetrics,
+                                int idleTimeoutMs) {
         this.clientSocket = clientSocket;
-        this.dictionary = dictionary;
-        this.response = new ArrayList<>();
+        this.requestProcessor = requestProcessor;
+        this.serverMetrics = serverMetrics;
+        this.idleTimeoutMs = idleTimeoutMs;
     }
 
-    // Start of thread (per-request)
+    // Start of thread (per-connection), requests are served until the client closes the connection or it stays
+    // idle for longer than the idle timeout
     public void run() {
+        serverMetrics.connectionOpened();
         try {
-            BufferedReader in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream(), StandardCharsets.UTF_8));
-            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream(), StandardCharsets.UTF_8));
-            String request;
-            if ((request = in.readLine()) != null) {
-                execute(request);
-                // Response format -> requestStatus:definitions
-                out.write(convertToString(response) + "\n");
-                out.flush();
+            clientSocket.setSoTimeout(idleTimeoutMs);
+            BufferedInputStream input = new BufferedInputStream(clientSocket.getInputStream());
+            BufferedOutputStream output = new BufferedOutputStream(clientSocket.getOutputStream());
+            // A client asks for the binary protocol by starting the connection with the handshake
+            input.mark(BinaryProtocol.HANDSHAKE.length);
+            if (input.read() == (BinaryProtocol.HANDSHAKE[0] & 0xFF)
+                    && input.read() == BinaryProtocol.HANDSHAKE[1]) {
+                output.write(BinaryProtocol.HANDSHAKE_ACK);
+                output.flush();
+                serveBinary(new DataInputStream(input), output);
+            } else {
+                input.reset();
+                serveText(input, output);
             }
+        } catch (SocketTimeoutException e) {
+            // Idle connection, closed below
         } catch (IOException e) {
             System.out.println(ERROR_STREAM);
+        } finally {
+            if (!isSubscribed) {
+                closeSocket();
+            }
+            serverMetrics.connectionClosed();
         }
     }
 
-    private void execute(String request) {
-        // Request format => actionCode:word:definition
-        String[] processedLine = request.split(STRING_SEPARATOR);
-        int actionCode = Integer.parseInt(processedLine[ACTION_CODE_INDEX]);
-        String word = processedLine[WORD_INDEX];
-        try {
-            switch (actionCode) {
-                case QUERY_CODE:
-                    response = dictionary.query(word); // Retrieves the list of definition if word is present
-                    break;
-
-                case ADD_CODE:
-                    dictionary.add(word, processDefinitions(processedLine[DEFINITION_INDEX]));
-                    break;
-
-                case REMOVE_CODE:
-                    dictionary.remove(word);
-                    break;
-
-                case UPDATE_CODE:
-                    dictionary.update(word, processDefinitions(processedLine[DEFINITION_INDEX]));
-                    break;
+    // Newline-framed requests, response format -> requestStatus:definitions
+    private void serveText(InputStream input, OutputStream output) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String request;
+        while ((request = in.readLine()) != null) {
+            int subscriptionCode = requestProcessor.subscriptionCode(request);
+            if (subscriptionCode != RequestProcessor.INVALID_CODE) {
+                // Anything the client sent after subscribing is ignored, the connection is only written to now
+                output.flush();
+                clientSocket.setSoTimeout(0);
+                requestProcessor.handOver(subscriptionCode, clientSocket, null);
+                isSubscribed = true;
+                return;
             }
+            output.write(requestProcessor.process(request));
+            // Pipelined requests are answered in order, responses are flushed together once none are left
+            if (!in.ready()) {
+                output.flush();
+            }
+        }
+        output.flush();
+    }
 
-            response.add(REQUEST_STATUS_INDEX,REQUEST_SUCCESS);
-        } catch (InvalidRequestException e) {
-            response.add(REQUEST_STATUS_INDEX,REQUEST_FAILURE);
-            } catch (IOHandlerException e) {
-            response.add(REQUEST_STATUS_INDEX,REQUEST_ERROR);
+    // Length-prefixed frames, see BinaryProtocol
+    private void serveBinary(DataInputStream in, OutputStream out) throws IOException {
+        BinaryProtocol binaryProtocol = new BinaryProtocol(requestProcessor);
+        while (true) {
+            int frameLength;
+            try {
+                frameLength = in.readInt();
+            } catch (EOFException e) {
+                break;
+            }
+            if (frameLength < 0 || frameLength > MAX_FRAME_SIZE) {
+                out.write(binaryProtocol.encodeError());
+                break;
+            }
+            byte[] frame = new byte[frameLength];
+            in.readFully(frame);
+            out.write(binaryProtocol.process(ByteBuffer.wrap(frame)));
+            if (in.available() == 0) {
+                out.flush();
+            }
         }
+        out.flush();
     }
 
-    // Process a word with more than one definition
-    private String[] processDefinitions(String definitions) {
-        return definitions.split(DEFINITION_SEPARATOR);
+    // Turns the connection away when the server is at capacity
+    public void reject() {
+        serverMetrics.connectionRejected();
+        try {
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(clientSocket.getOutputStream(), StandardCharsets.UTF_8));
+            out.write(RequestProcessor.REQUEST_ERROR + "\n");
+            out.flush();
+        } catch (IOException e) {
+            System.out.println(ERROR_STREAM);
+        } finally {
+            closeSocket();
+        }
     }
 
-    private String convertToString(ArrayList<String> arrayList) {
-        return String.join(STRING_SEPARATOR, arrayList);
+    private void closeSocket() {
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            System.out.println(ERROR_CLOSE_SOCKET);
+        }
     }
 }
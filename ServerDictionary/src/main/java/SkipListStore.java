@@ -0,0 +1,53 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+
+// One map node per word, with the word and its definitions as Strings. Fast, but every entry carries several object
+// headers and references.
+public class SkipListStore implements DictionaryStore {
+
+    private final ConcurrentSkipListMap<String, List<String>> dictionary =
+            new ConcurrentSkipListMap<>(String.CASE_INSENSITIVE_ORDER); // Ignore capitalization of words(key)
+
+    @Override
+    public List<String> get(String word) {
+        return dictionary.get(word);
+    }
+
+    @Override
+    public boolean containsKey(String word) {
+        return dictionary.containsKey(word);
+    }
+
+    @Override
+    public String storedWord(String word) {
+        String storedWord = dictionary.ceilingKey(word);
+        return storedWord != null && String.CASE_INSENSITIVE_ORDER.compare(storedWord, word) == 0 ? storedWord : null;
+    }
+
+    @Override
+    public List<String> put(String word, List<String> definitions) {
+        return dictionary.put(word, definitions);
+    }
+
+    @Override
+    public List<String> remove(String word) {
+        return dictionary.remove(word);
+    }
+
+    @Override
+    public int size() {
+        return dictionary.size();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, List<String>> action) {
+        dictionary.forEach(action);
+    }
+
+    // Definition lists are never modified once stored, so a shallow copy is enough
+    @Override
+    public Snapshot snapshot() {
+        return dictionary.clone()::forEach;
+    }
+}
@@ -0,0 +1,20 @@
+// How the dictionary is held in memory, selected with --storage
+public enum StorageEngine {
+
+    SKIPLIST, // a concurrent skip list of Strings, the fastest to update
+    ARENA,    // UTF-8 records in large byte arrays behind a hash table, a fraction of the heap for large dictionaries
+    MAPPED;   // a memory-mapped binary snapshot of the dictionary file with the changes on the heap, starts instantly
+
+    public DictionaryStore createStore() {
+        switch (this) {
+            case ARENA:
+                return new ArenaStore();
+
+            case MAPPED:
+                return new MappedStore(); // Dictionary opens the snapshot when it parses the dictionary file
+
+            default:
+                return new SkipListStore();
+        }
+    }
+}